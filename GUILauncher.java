@@ -1,7 +1,12 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.*;
+import engine.ShopEngine;
 import model.*;
+import patterns.behavioral.*;
 import patterns.creational.*;
 import patterns.structural.*;
+import persistence.*;
 import ui.*;
 
 /**
@@ -25,39 +30,37 @@ public class GUILauncher {
         ShopManager shop = ShopManager.getInstance();
         System.out.println("Shop initialized with " + shop.getAvailableItems().size() + " items");
         
-        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Iron Sword", 600, 15));
-        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Steel Longsword", 1200, 30));
-        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Dragon Blade", 2500, 60));
-        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Infinity Edge", 3400, 85));
-        
-        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Leather Vest", 400, 10));
-        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Chain Mail", 800, 25));
-        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Plate Armor", 1800, 50));
-        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Thornmail", 2900, 80));
-        
-        shop.addItemToShop(ItemFactory.createItem("POTION", "Health Potion", 150, 100));
-        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Ruby Crystal", 400, 50));
-        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Amplifying Tome", 900, 100));
-        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Rabadon's Deathcap", 3800, 200));
-        
-        Item legendaryItem = new ItemBuilder()
-            .setName("Infinity Stone")
-            .setPrice(99999)
-            .setRarity("Legendary")
-            .addStat("Attack", 150)
-            .addStat("Critical Chance", 100)
-            .addStat("Attack Speed", 50)
-            .build();
-        shop.addItemToShop(legendaryItem);
+        ShopEngine.addDefaultCatalog(shop);
         
         System.out.println("Shop now has " + shop.getAvailableItems().size() + " items available");
         
         ShoppingFacade facade = new ShoppingFacade(player);
+        CommandHistory cmdHistory = new CommandHistory(shop);
+        
+        // Restore the player from the latest snapshot plus the journal tail, then keep journaling
+        try {
+            CommandJournal journal = CommandJournal.open(Paths.get("data", "journal"), shop);
+            SnapshotManager snapshots = new SnapshotManager(Paths.get("data", "snapshots"), journal, shop, 50, 60);
+            snapshots.restoreShop();
+            snapshots.restore(player);
+            cmdHistory.setCommandLog(journal);
+            snapshots.track(player, cmdHistory);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    snapshots.close();
+                    journal.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing persistence: " + e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            System.out.println("Warning: command journal unavailable, changes will not persist: " + e.getMessage());
+        }
         
         System.out.println("\nLaunching GUI...\n");
         
         SwingUtilities.invokeLater(() -> {
-            new MainFrame(player, facade);
+            new MainFrame(player, facade, cmdHistory);
         });
     }
 }
@@ -0,0 +1,104 @@
+import engine.OperationResult;
+import engine.ShopEngine;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import patterns.behavioral.ShopObservable;
+import patterns.behavioral.SynchronousDispatcher;
+import patterns.creational.ShopManager;
+import persistence.PlayerStore;
+
+/**
+ * Headless launcher: runs scripted shop operations without loading any UI.
+ *
+ * Usage: {@code java HeadlessLauncher [--quiet] [--store DIR] [--dispatcher sync|ring] [script ...]}
+ *
+ * Reads operations (see ShopEngine) from each script file in turn, or from
+ * stdin when no file is given or a file is "-". Every operation produces
+ * one JSON line on stdout, numbered by its line within its own script,
+ * followed by a summary line. The shop's own console chatter goes to
+ * stderr, or nowhere with --quiet. With --store,
+ * players are loaded from and autosaved to a PlayerStore in DIR.
+ * --dispatcher overrides the shop.dispatcher system property.
+ */
+public class HeadlessLauncher {
+    public static void main(String[] args) throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        
+        boolean quiet = false;
+        Path storeDirectory = null;
+        String dispatchMode = System.getProperty(ShopObservable.DISPATCHER_PROPERTY);
+        int firstScript = 0;
+        while (firstScript < args.length && args[firstScript].startsWith("--")) {
+            if (args[firstScript].equals("--quiet")) {
+                quiet = true;
+                firstScript++;
+            } else if (args[firstScript].equals("--store") && firstScript + 1 < args.length) {
+                storeDirectory = Paths.get(args[firstScript + 1]);
+                firstScript += 2;
+            } else if (args[firstScript].equals("--dispatcher") && firstScript + 1 < args.length) {
+                dispatchMode = args[firstScript + 1];
+                firstScript += 2;
+            } else {
+                break;
+            }
+        }
+        // Keep stdout for results only
+        System.setOut(quiet ? new PrintStream(OutputStream.nullOutputStream()) : System.err);
+        
+        long start = System.nanoTime();
+        int operations = 0;
+        int failures = 0;
+        
+        ShopEngine.addDefaultCatalog(ShopManager.getInstance());
+        try (PlayerStore store = storeDirectory != null
+                 ? PlayerStore.open(storeDirectory, ShopManager.getInstance()) : null;
+             ShopEngine engine = new ShopEngine(
+                 ShopObservable.createDispatcher(dispatchMode, SynchronousDispatcher::new))) {
+            if (store != null) {
+                engine.attachStore(store);
+            }
+            List<String> scripts = new ArrayList<>(Arrays.asList(args).subList(firstScript, args.length));
+            if (scripts.isEmpty()) {
+                scripts.add("-");
+            }
+            for (String script : scripts) {
+                engine.beginScript();
+                try (BufferedReader reader = script.equals("-")
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        OperationResult result = engine.execute(line);
+                        if (result == null) {
+                            continue;
+                        }
+                        operations++;
+                        if (!result.isOk()) {
+                            failures++;
+                        }
+                        out.println(result.toJson());
+                    }
+                }
+            }
+        }
+        
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        out.println("{\"summary\":true,\"operations\":" + operations + ",\"failed\":" + failures
+                    + ",\"millis\":" + millis + "}");
+        out.flush();
+    }
+}
@@ -0,0 +1,165 @@
+package engine;
+
+/**
+ * Outcome of one scripted shop operation, with the player's state after it.
+ */
+public class OperationResult {
+    private final int lineNumber;
+    private final String op;
+    private final boolean ok;
+    private final String message;
+    private final String playerName;
+    private final double gold;
+    private final int backpackSize;
+    private final int equippedCount;
+    
+    /**
+     * Creates a result.
+     * @param lineNumber script line the operation came from (1-based)
+     * @param op the operation keyword
+     * @param ok true if the operation was applied
+     * @param message human-readable detail
+     * @param playerName the current player, or null if none is open
+     * @param gold the player's gold afterwards
+     * @param backpackSize the player's backpack size afterwards
+     * @param equippedCount the player's equipped item count afterwards
+     */
+    public OperationResult(int lineNumber, String op, boolean ok, String message,
+                           String playerName, double gold, int backpackSize, int equippedCount) {
+        this.lineNumber = lineNumber;
+        this.op = op;
+        this.ok = ok;
+        this.message = message;
+        this.playerName = playerName;
+        this.gold = gold;
+        this.backpackSize = backpackSize;
+        this.equippedCount = equippedCount;
+    }
+    
+    /**
+     * Formats this result as a single-line JSON object.
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"line\":").append(lineNumber);
+        sb.append(",\"op\":");
+        appendString(sb, op);
+        sb.append(",\"ok\":").append(ok);
+        sb.append(",\"player\":");
+        appendString(sb, playerName);
+        sb.append(",\"gold\":").append(gold);
+        sb.append(",\"backpack\":").append(backpackSize);
+        sb.append(",\"equipped\":").append(equippedCount);
+        sb.append(",\"message\":");
+        appendString(sb, message);
+        return sb.append('}').toString();
+    }
+    
+    /**
+     * Appends a JSON string literal, or null.
+     */
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+    
+    /**
+     * Returns the script line the operation came from.
+     * @return 1-based line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+    
+    /**
+     * Returns the operation keyword.
+     * @return the op
+     */
+    public String getOp() {
+        return op;
+    }
+    
+    /**
+     * Returns whether the operation was applied.
+     * @return true on success
+     */
+    public boolean isOk() {
+        return ok;
+    }
+    
+    /**
+     * Returns the human-readable detail.
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    /**
+     * Returns the player the operation ran against.
+     * @return the player name, or null if none was open
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+    
+    /**
+     * Returns the player's gold after the operation.
+     * @return gold
+     */
+    public double getGold() {
+        return gold;
+    }
+    
+    /**
+     * Returns the player's backpack size after the operation.
+     * @return backpack item count
+     */
+    public int getBackpackSize() {
+        return backpackSize;
+    }
+    
+    /**
+     * Returns the player's equipped item count after the operation.
+     * @return equipped item count
+     */
+    public int getEquippedCount() {
+        return equippedCount;
+    }
+    
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
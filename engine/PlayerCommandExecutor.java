@@ -0,0 +1,334 @@
+package engine;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Player;
+import patterns.behavioral.Command;
+import patterns.behavioral.CommandHistory;
+
+/**
+ * Executes commands with a single writer per player.
+ *
+ * Every player gets a bounded mailbox. Whenever a mailbox has work, one
+ * thread drains it, so tasks for the same player run strictly one after
+ * another while different players run fully in parallel. Idle players hold
+ * no thread at all. On Java 21+ the drains run on virtual threads, which
+ * keeps thousands of busy players cheap; older JVMs fall back to a cached
+ * pool of daemon platform threads.
+ *
+ * When a mailbox is full, submitters block for up to the configured
+ * timeout and then get a RejectedExecutionException, pushing back on
+ * whoever produces commands faster than the player can apply them.
+ *
+ * Only the player's own state is serialized. Shared collaborators are
+ * reached from several drain threads at once: ShopManager guards its stock
+ * and catalog with its own lock, and ShopObservable observers must be
+ * thread-safe or registered through a dispatcher that hands events off.
+ */
+public class PlayerCommandExecutor implements AutoCloseable {
+    public static final int DEFAULT_MAILBOX_CAPACITY = 256;
+    public static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 1000;
+    
+    private final int mailboxCapacity;
+    private final long offerTimeoutMillis;
+    private final Map<Player, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService drainers = newDrainExecutor();
+    private final Object idleLock = new Object();
+    private volatile boolean shutdown;
+    private int activeMailboxes; // Guarded by idleLock
+    
+    /**
+     * Creates an executor with the default mailbox capacity and timeout.
+     */
+    public PlayerCommandExecutor() {
+        this(DEFAULT_MAILBOX_CAPACITY, DEFAULT_OFFER_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Creates an executor.
+     * @param mailboxCapacity maximum queued tasks per player
+     * @param offerTimeoutMillis how long a submitter waits for mailbox space
+     */
+    public PlayerCommandExecutor(int mailboxCapacity, long offerTimeoutMillis) {
+        if (mailboxCapacity < 1) {
+            throw new IllegalArgumentException("Mailbox capacity must be at least 1");
+        }
+        this.mailboxCapacity = mailboxCapacity;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+    
+    /**
+     * Queues a command to be executed through the player's history.
+     * @param player the player the command acts on
+     * @param history the player's command history
+     * @param command the command to execute
+     * @return a future completed once the command has run
+     */
+    public CompletableFuture<Void> execute(Player player, CommandHistory history, Command command) {
+        return submit(player, () -> {
+            history.executeCommand(command);
+            return null;
+        });
+    }
+    
+    /**
+     * Queues an undo of the player's most recent command.
+     * @param player the player
+     * @param history the player's command history
+     * @return a future completed once the undo has run
+     */
+    public CompletableFuture<Void> undo(Player player, CommandHistory history) {
+        return submit(player, () -> {
+            history.undo();
+            return null;
+        });
+    }
+    
+    /**
+     * Queues a redo of the player's most recently undone command.
+     * @param player the player
+     * @param history the player's command history
+     * @return a future completed once the redo has run
+     */
+    public CompletableFuture<Void> redo(Player player, CommandHistory history) {
+        return submit(player, () -> {
+            history.redo();
+            return null;
+        });
+    }
+    
+    /**
+     * Queues an arbitrary task on the player's mailbox.
+     * @param player the player whose state the task touches
+     * @param task the task to run
+     * @param <T> the task result type
+     * @return a future completed with the task's result or failure
+     * @throws RejectedExecutionException if the executor is shut down or
+     *         the mailbox stays full for longer than the offer timeout
+     */
+    public <T> CompletableFuture<T> submit(Player player, Callable<T> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        Task<T> queued = new Task<>(task);
+        
+        // Pin the mailbox so it cannot be retired between lookup and enqueue
+        Mailbox mailbox = mailboxes.compute(player, (p, existing) -> {
+            Mailbox pinned = existing != null ? existing : new Mailbox(p);
+            pinned.users.incrementAndGet();
+            pinned.released = false;
+            return pinned;
+        });
+        try {
+            mailbox.enqueue(queued);
+        } finally {
+            mailbox.users.decrementAndGet();
+            mailbox.retireIfReleased();
+        }
+        return queued.future;
+    }
+    
+    /**
+     * Forgets a player's mailbox, e.g. when the player logs off.
+     * Tasks already queued still run; the mailbox is dropped only once it
+     * is idle, so a later submit never starts a second consumer for the
+     * same player while the old one is still draining.
+     * @param player the player to release
+     */
+    public void release(Player player) {
+        Mailbox mailbox = mailboxes.get(player);
+        if (mailbox != null) {
+            mailbox.released = true;
+            mailbox.retireIfReleased();
+        }
+    }
+    
+    /**
+     * Returns the number of players with a mailbox.
+     * @return mailbox count
+     */
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+    
+    /**
+     * Returns the number of tasks waiting for a player.
+     * @param player the player
+     * @return queued task count, 0 if the player has no mailbox
+     */
+    public int getQueuedCount(Player player) {
+        Mailbox mailbox = mailboxes.get(player);
+        return mailbox != null ? mailbox.queue.size() : 0;
+    }
+    
+    /**
+     * Stops accepting tasks and waits until every queued task has run.
+     */
+    @Override
+    public void close() {
+        synchronized (idleLock) {
+            // Under the lock, so no drain can be scheduled after the wait below ends
+            shutdown = true;
+            while (activeMailboxes > 0) {
+                try {
+                    idleLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        drainers.shutdown();
+    }
+    
+    /**
+     * Creates the executor mailbox drains run on: one virtual thread per
+     * drain where the JVM supports it (Java 21+), otherwise a cached pool
+     * of daemon threads. Looked up reflectively so the class still
+     * compiles and runs on Java 17.
+     * @return the drain executor
+     */
+    private static ExecutorService newDrainExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "player-drain-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /**
+     * A queued task and the future its caller holds.
+     */
+    private static class Task<T> implements Runnable {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        
+        Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+    
+    /**
+     * Bounded task queue for one player, drained by at most one thread.
+     */
+    private class Mailbox {
+        private final Player player;
+        private final String playerName;
+        private final BlockingQueue<Task<?>> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicInteger users = new AtomicInteger(); // Submitters between lookup and enqueue
+        private volatile boolean released;
+        
+        Mailbox(Player player) {
+            this.player = player;
+            this.playerName = player.getName();
+            this.queue = new ArrayBlockingQueue<>(mailboxCapacity);
+        }
+        
+        /**
+         * Adds a task, blocking while the mailbox is full, and starts a
+         * consumer if none is running.
+         * @param task the task to add
+         */
+        void enqueue(Task<?> task) {
+            try {
+                if (!queue.offer(task, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new RejectedExecutionException("Mailbox full for player " + playerName);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for mailbox space", e);
+            }
+            schedule();
+        }
+        
+        /**
+         * Starts a consumer thread unless one is already draining this mailbox.
+         * @throws RejectedExecutionException if the executor has shut down,
+         *         after failing every task left in the mailbox
+         */
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                synchronized (idleLock) {
+                    if (!shutdown) {
+                        activeMailboxes++;
+                        try {
+                            drainers.execute(this::drain);
+                            return;
+                        } catch (RejectedExecutionException e) {
+                            activeMailboxes--;
+                            idleLock.notifyAll();
+                        }
+                    }
+                }
+                // No drain will run, so fail what is queued rather than strand it
+                RejectedExecutionException rejected = new RejectedExecutionException("Executor is shut down");
+                do {
+                    Task<?> task;
+                    while ((task = queue.poll()) != null) {
+                        task.future.completeExceptionally(rejected);
+                    }
+                    scheduled.set(false);
+                } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+                throw rejected;
+            }
+        }
+        
+        /**
+         * Runs queued tasks in order until the mailbox is empty.
+         */
+        private void drain() {
+            do {
+                Task<?> task;
+                while ((task = queue.poll()) != null) {
+                    task.run();
+                }
+                scheduled.set(false);
+                // A task may have arrived after the last poll but before the flag was cleared
+            } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+            
+            retireIfReleased();
+            synchronized (idleLock) {
+                activeMailboxes--;
+                idleLock.notifyAll();
+            }
+        }
+        
+        /**
+         * Removes a released mailbox from the map once nothing is queued,
+         * draining or about to be enqueued. Runs inside the map's per-key
+         * lock, so it cannot race a submitter pinning the same mailbox.
+         */
+        void retireIfReleased() {
+            if (released) {
+                mailboxes.computeIfPresent(player, (p, current) ->
+                    current == this && released && users.get() == 0 && !scheduled.get() && queue.isEmpty()
+                        ? null : current);
+            }
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import model.Item;
+import model.Player;
+import patterns.behavioral.BulkUpgradeCommand;
+import patterns.behavioral.BuyCommand;
+import patterns.behavioral.CommandHistory;
+import patterns.behavioral.EquipCommand;
+import patterns.behavioral.EventDispatcher;
+import patterns.behavioral.SellCommand;
+import patterns.behavioral.ShopObservable;
+import patterns.behavioral.SynchronousDispatcher;
+import patterns.behavioral.UnequipCommand;
+import patterns.behavioral.UpgradeCommand;
+import patterns.behavioral.ValidationChain;
+import patterns.creational.ItemBuilder;
+import patterns.creational.ItemFactory;
+import patterns.creational.ShopManager;
+import patterns.structural.ItemDecorator;
+import patterns.structural.ShoppingFacade;
+import patterns.structural.UpgradeCatalog;
+import patterns.structural.UpgradePreviewEngine;
+import persistence.PlayerSaveFile;
+import persistence.PlayerStore;
+
+/**
+ * The shop core without a user interface.
+ *
+ * Wires ShopManager, the validation chain and a synchronous ShopObservable
+ * together with one ShoppingFacade and CommandHistory per player, and
+ * runs text operations against them. Nothing here touches AWT or Swing,
+ * so the engine starts fast and runs in batch jobs and services.
+ *
+ * Operations, one per line ({@code #} starts a comment):
+ * <pre>
+ *   player NAME [LEVEL] [GOLD]       open or switch to a player
+ *   buy ITEM | sell ITEM | equip ITEM | unequip ITEM
+ *   upgrade ID[,ID...] ITEM          upgrade catalog ids, e.g. attack,fire
+ *   upgrade-all ID[,ID...]           upgrade every backpack item that can take them
+ *   undo | redo | status
+ *   save FILE | load FILE            save or restore every open player
+ * </pre>
+ * Item names are matched case-insensitively and may contain spaces.
+ */
+public class ShopEngine implements AutoCloseable {
+    public static final int DEFAULT_LEVEL = 18;
+    public static final double DEFAULT_GOLD = 10000;
+    
+    private final ShopManager shop;
+    private final ShopObservable observable;
+    private final ValidationChain validation;
+    private final UpgradePreviewEngine previews = new UpgradePreviewEngine();
+    private final Map<String, PlayerSession> sessions = new LinkedHashMap<>();
+    private PlayerStore store;
+    private PlayerSession current;
+    private int lineNumber;
+    
+    /**
+     * A player together with the facade and history its operations go through.
+     */
+    public static class PlayerSession {
+        private final Player player;
+        private final ShoppingFacade facade;
+        private final CommandHistory history;
+        
+        PlayerSession(Player player, ShopManager shop) {
+            this.player = player;
+            this.facade = new ShoppingFacade(player);
+            this.history = new CommandHistory(shop);
+        }
+        
+        /**
+         * Returns the session's player.
+         * @return the player
+         */
+        public Player getPlayer() {
+            return player;
+        }
+        
+        /**
+         * Returns the facade for this player.
+         * @return the facade
+         */
+        public ShoppingFacade getFacade() {
+            return facade;
+        }
+        
+        /**
+         * Returns the player's command history.
+         * @return the history
+         */
+        public CommandHistory getHistory() {
+            return history;
+        }
+    }
+    
+    /**
+     * Creates an engine over the shared shop, dispatching events in the
+     * mode named by the shop.dispatcher system property.
+     */
+    public ShopEngine() {
+        this(ShopObservable.configuredDispatcher(SynchronousDispatcher::new));
+    }
+    
+    /**
+     * Creates an engine over the shared shop.
+     * @param dispatcher delivers the engine's events to observers; closed with the engine
+     */
+    public ShopEngine(EventDispatcher dispatcher) {
+        this.shop = ShopManager.getInstance();
+        this.observable = new ShopObservable(dispatcher);
+        this.validation = new ValidationChain();
+        shop.addStockListener(observable);
+    }
+    
+    /**
+     * Adds the standard catalog on top of the shop's built-in items.
+     * @param shop the shop to stock
+     */
+    public static void addDefaultCatalog(ShopManager shop) {
+        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Iron Sword", 600, 15));
+        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Steel Longsword", 1200, 30));
+        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Dragon Blade", 2500, 60));
+        shop.addItemToShop(ItemFactory.createItem("WEAPON", "Infinity Edge", 3400, 85));
+        
+        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Leather Vest", 400, 10));
+        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Chain Mail", 800, 25));
+        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Plate Armor", 1800, 50));
+        shop.addItemToShop(ItemFactory.createItem("ARMOR", "Thornmail", 2900, 80));
+        
+        shop.addItemToShop(ItemFactory.createItem("POTION", "Health Potion", 150, 100));
+        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Ruby Crystal", 400, 50));
+        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Amplifying Tome", 900, 100));
+        shop.addItemToShop(ItemFactory.createItem("TRINKET", "Rabadon's Deathcap", 3800, 200));
+        
+        Item legendaryItem = new ItemBuilder()
+            .setName("Infinity Stone")
+            .setPrice(99999)
+            .setRarity("Legendary")
+            .addStat("Attack", 150)
+            .addStat("Critical Chance", 100)
+            .addStat("Attack Speed", 50)
+            .build();
+        shop.addItemToShop(legendaryItem);
+    }
+    
+    /**
+     * Opens a player session, or switches to it if it is already open.
+     * @param name the player name
+     * @param level the level for a new player
+     * @param gold the starting gold for a new player
+     * @return the session, now current
+     */
+    public PlayerSession openPlayer(String name, int level, double gold) {
+        current = sessions.computeIfAbsent(name, n -> {
+            Player player = new Player(n, level, gold);
+            if (store != null) {
+                restoreFromStore(player);
+            }
+            return new PlayerSession(player, shop);
+        });
+        return current;
+    }
+    
+    /**
+     * Autosaves players to a store: sessions opened from now on start from
+     * the stored state when there is one, and every open player is tracked
+     * so its changes are written in the store's next batch. Players stop
+     * being tracked by a store attached before.
+     * @param store the store, owned and closed by the caller
+     */
+    public void attachStore(PlayerStore store) {
+        PlayerStore previous = this.store;
+        this.store = store;
+        for (PlayerSession session : sessions.values()) {
+            if (previous != null && previous != store) {
+                previous.untrack(session.player);
+            }
+            store.track(session.player);
+        }
+    }
+    
+    private void restoreFromStore(Player player) {
+        try {
+            store.load(player);
+        } catch (IOException e) {
+            System.out.println("[Store] Could not load " + player.getName() + ": " + e.getMessage());
+        }
+        store.track(player);
+    }
+    
+    /**
+     * Starts a new script, so result line numbers count from 1 again.
+     * Players and their histories carry over.
+     */
+    public void beginScript() {
+        lineNumber = 0;
+    }
+    
+    /**
+     * Runs one operation line. Blank and comment lines are skipped.
+     * @param line the operation text
+     * @return the result, or null for blank and comment lines
+     */
+    public OperationResult execute(String line) {
+        lineNumber++;
+        int hash = line.indexOf('#');
+        String text = (hash >= 0 ? line.substring(0, hash) : line).trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        
+        int space = text.indexOf(' ');
+        String op = (space < 0 ? text : text.substring(0, space)).toLowerCase(Locale.ROOT);
+        String arg = space < 0 ? "" : text.substring(space + 1).trim();
+        
+        try {
+            return run(op, arg);
+        } catch (RuntimeException e) {
+            return result(op, false, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+    
+    private OperationResult run(String op, String arg) {
+        if (op.equals("player")) {
+            return openPlayer(arg);
+        }
+        if (current == null) {
+            return result(op, false, "No player open; start with 'player NAME'");
+        }
+        Player player = current.player;
+        
+        switch (op) {
+            case "buy": {
+                Item item = shop.findItemByName(arg);
+                if (item == null) {
+                    return result(op, false, "Not in shop: " + arg);
+                }
+                if (!validation.validate(player, item)) {
+                    return result(op, false, "Purchase rejected: " + item.getName());
+                }
+                current.history.executeCommand(new BuyCommand(player, item, observable));
+                return result(op, true, "Bought " + item.getName());
+            }
+            case "sell": {
+                Item item = findOwned(arg, false);
+                if (item == null) {
+                    return result(op, false, "Not in backpack: " + arg);
+                }
+                current.history.executeCommand(new SellCommand(player, item, observable));
+                return result(op, true, "Sold " + item.getName());
+            }
+            case "equip": {
+                Item item = findOwned(arg, false);
+                if (item == null) {
+                    return result(op, false, "Not in backpack: " + arg);
+                }
+                current.history.executeCommand(new EquipCommand(player, item, observable));
+                return result(op, true, "Equipped " + item.getName());
+            }
+            case "unequip": {
+                Item item = findOwned(arg, true);
+                if (item == null) {
+                    return result(op, false, "Not equipped: " + arg);
+                }
+                if (!player.getInventory().hasSpace()) {
+                    return result(op, false, "Backpack is full");
+                }
+                current.history.executeCommand(new UnequipCommand(player, item, observable));
+                return result(op, true, "Unequipped " + item.getName());
+            }
+            case "upgrade":
+                return upgrade(arg);
+            case "upgrade-all":
+                return upgradeAll(arg);
+            case "save":
+                return save(arg);
+            case "load":
+                return load(arg);
+            case "undo":
+                if (!current.history.canUndo()) {
+                    return result(op, false, "Nothing to undo");
+                }
+                current.history.undo();
+                return result(op, true, "Undone");
+            case "redo":
+                if (!current.history.canRedo()) {
+                    return result(op, false, "Nothing to redo");
+                }
+                current.history.redo();
+                return result(op, true, "Redone");
+            case "status":
+                return result(op, true, "Backpack: " + names(current.facade.getPlayerInventory())
+                              + ", Equipped: " + names(current.facade.getEquippedItems()));
+            default:
+                return result(op, false, "Unknown operation: " + op);
+        }
+    }
+    
+    /**
+     * Handles "player NAME [LEVEL] [GOLD]".
+     */
+    private OperationResult openPlayer(String arg) {
+        String[] parts = arg.split("\\s+");
+        if (arg.isEmpty() || parts.length > 3) {
+            return result("player", false, "Usage: player NAME [LEVEL] [GOLD]");
+        }
+        int level = parts.length > 1 ? Integer.parseInt(parts[1]) : DEFAULT_LEVEL;
+        double gold = parts.length > 2 ? Double.parseDouble(parts[2]) : DEFAULT_GOLD;
+        boolean existing = sessions.containsKey(parts[0]);
+        openPlayer(parts[0], level, gold);
+        return result("player", true, (existing ? "Switched to " : "Created ") + parts[0]);
+    }
+    
+    /**
+     * Handles "upgrade UPGRADE[,UPGRADE...] ITEM" with the upgrade catalog
+     * the upgrades screen uses. Upgrades stack in catalog order.
+     */
+    private OperationResult upgrade(String arg) {
+        int space = arg.indexOf(' ');
+        if (space < 0) {
+            return result("upgrade", false, "Usage: upgrade UPGRADE[,UPGRADE...] ITEM");
+        }
+        Item base = findOwned(arg.substring(space + 1).trim(), false);
+        if (base == null) {
+            base = findOwned(arg.substring(space + 1).trim(), true);
+        }
+        if (base == null) {
+            return result("upgrade", false, "Not owned: " + arg.substring(space + 1).trim());
+        }
+        
+        UpgradeCatalog catalog = previews.getCatalog();
+        int upgrades = 0;
+        for (String id : arg.substring(0, space).split(",")) {
+            int upgrade = catalog.indexOf(id.trim());
+            if (upgrade < 0) {
+                return result("upgrade", false, "Unknown upgrade: " + id.trim());
+            }
+            upgrades |= 1 << upgrade;
+        }
+        if (!previews.isAllowed(base, upgrades)) {
+            return result("upgrade", false, "Upgrades cannot be combined on " + base.getName() + ": "
+                                            + arg.substring(0, space));
+        }
+        ItemDecorator upgraded = previews.build(base, upgrades);
+        if (upgraded == null) {
+            return result("upgrade", false, "Usage: upgrade UPGRADE[,UPGRADE...] ITEM");
+        }
+        double cost = previews.preview(base, upgrades).getUpgradeCost();
+        if (cost > current.player.getGold()) {
+            return result("upgrade", false, "Insufficient gold for upgrade");
+        }
+        
+        current.history.executeCommand(new UpgradeCommand(current.player, base, upgraded, cost, observable));
+        return result("upgrade", true, "Upgraded to " + upgraded.getName());
+    }
+    
+    /**
+     * Handles "upgrade-all UPGRADE[,UPGRADE...]": one bulk command over
+     * every backpack item the upgrades can be applied to, charged and
+     * undone as a whole.
+     */
+    private OperationResult upgradeAll(String arg) {
+        if (arg.isEmpty()) {
+            return result("upgrade-all", false, "Usage: upgrade-all UPGRADE[,UPGRADE...]");
+        }
+        UpgradeCatalog catalog = previews.getCatalog();
+        int upgrades = 0;
+        for (String id : arg.split(",")) {
+            int upgrade = catalog.indexOf(id.trim());
+            if (upgrade < 0) {
+                return result("upgrade-all", false, "Unknown upgrade: " + id.trim());
+            }
+            upgrades |= 1 << upgrade;
+        }
+        
+        BulkUpgradeCommand bulk = BulkUpgradeCommand.plan(current.player,
+            current.player.getInventory().getBackpackItems(), upgrades, previews, observable);
+        if (bulk == null) {
+            return result("upgrade-all", false, "No backpack item can take: " + arg);
+        }
+        String problem = bulk.validate();
+        if (problem != null) {
+            return result("upgrade-all", false, problem);
+        }
+        
+        current.history.executeCommand(bulk);
+        return result("upgrade-all", true, "Upgraded " + bulk.getBaseItems().size() + " items for "
+                                           + bulk.getTotalCost() + " gold");
+    }
+    
+    /**
+     * Handles "save FILE": writes every open player to one save file.
+     */
+    private OperationResult save(String arg) {
+        if (arg.isEmpty()) {
+            return result("save", false, "Usage: save FILE");
+        }
+        List<Player> players = new ArrayList<>(sessions.size());
+        for (PlayerSession session : sessions.values()) {
+            players.add(session.player);
+        }
+        try {
+            long bytes = PlayerSaveFile.save(Paths.get(arg), players, shop);
+            return result("save", true, "Saved " + players.size() + " player(s), " + bytes + " bytes");
+        } catch (IOException e) {
+            return result("save", false, "Save failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Handles "load FILE": restores every player in a save file, opening
+     * sessions as needed. Restored players start with an empty history.
+     */
+    private OperationResult load(String arg) {
+        if (arg.isEmpty()) {
+            return result("load", false, "Usage: load FILE");
+        }
+        PlayerSession previous = current;
+        int restored;
+        try {
+            restored = PlayerSaveFile.load(Paths.get(arg), shop, name -> {
+                PlayerSession session = openPlayer(name, DEFAULT_LEVEL, DEFAULT_GOLD);
+                session.history.clear();
+                return session.player;
+            });
+        } catch (IOException e) {
+            return result("load", false, "Load failed: " + e.getMessage());
+        } finally {
+            current = previous; // Loading must not switch players
+        }
+        return result("load", true, "Loaded " + restored + " player(s)");
+    }
+    
+    /**
+     * Finds an item the current player owns by name.
+     * @param name the item name
+     * @param equipped true to search equipped items, false for the backpack
+     * @return the item, or null if not found
+     */
+    private Item findOwned(String name, boolean equipped) {
+        Iterable<Item> items = equipped ? current.player.getInventory().getEquippedItems()
+                                        : current.player.getInventory().getBackpackItems();
+        for (Item item : items) {
+            if (item.getName().equalsIgnoreCase(name)) {
+                return item;
+            }
+        }
+        return null;
+    }
+    
+    private static String names(List<Item> items) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (Item item : items) {
+            joiner.add(item.getName());
+        }
+        return joiner.toString();
+    }
+    
+    private OperationResult result(String op, boolean ok, String message) {
+        if (current == null) {
+            return new OperationResult(lineNumber, op, ok, message, null, 0, 0, 0);
+        }
+        Player player = current.player;
+        return new OperationResult(lineNumber, op, ok, message, player.getName(), player.getGold(),
+                                   player.getInventory().getBackpackSize(),
+                                   player.getInventory().getEquippedItems().size());
+    }
+    
+    /**
+     * Returns the open player sessions by name.
+     * @return the sessions, in the order they were opened
+     */
+    public Map<String, PlayerSession> getSessions() {
+        return sessions;
+    }
+    
+    /**
+     * Returns the observable every command notifies, for attaching observers.
+     * @return the observable
+     */
+    public ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Returns the shop the engine trades with.
+     * @return the shop
+     */
+    public ShopManager getShop() {
+        return shop;
+    }
+    
+    /**
+     * Stops following shop stock and closes the observable's dispatcher.
+     */
+    @Override
+    public void close() {
+        shop.removeStockListener(observable);
+        observable.close();
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Runtime infrastructure for executing shop commands at scale.
+ * Per-player command executors built on virtual threads (Java 21+), and
+ * a headless shop engine for batch jobs that never loads AWT or Swing.
+ */
+package engine;
@@ -5,11 +5,15 @@ import java.util.List;
 
 /**
  * Manages player's equipped items and backpack storage.
+ *
+ * Methods are synchronized so the UI can read the inventory while a
+ * worker thread applies commands to it.
  */
 public class Inventory {
     private final List<Item> equippedItems;
     private final List<Item> backpackItems;
     private final int maxSlots;
+    private Runnable changeListener; // Set by the owning Player
     
     public Inventory(int maxSlots) {
         this.maxSlots = maxSlots;
@@ -22,7 +26,7 @@ public class Inventory {
      * @param item the item to add
      * @return true if item was added successfully, false if backpack is full or item is null
      */
-    public boolean addItem(Item item) {
+    public synchronized boolean addItem(Item item) {
         if (item == null) {
             return false;
         }
@@ -32,6 +36,7 @@ public class Inventory {
         }
         backpackItems.add(item);
         System.out.println("Added " + item.getName() + " to backpack.");
+        fireChanged();
         return true;
     }
     
@@ -40,13 +45,14 @@ public class Inventory {
      * @param item the item to remove
      * @return true if item was removed, false if not found or item is null
      */
-    public boolean removeItem(Item item) {
+    public synchronized boolean removeItem(Item item) {
         if (item == null) {
             return false;
         }
         boolean removed = backpackItems.remove(item);
         if (removed) {
             System.out.println("Removed " + item.getName() + " from backpack.");
+            fireChanged();
         }
         return removed;
     }
@@ -56,7 +62,7 @@ public class Inventory {
      * @param item the item to equip
      * @return true if item was equipped successfully, false if item not in backpack
      */
-    public boolean equipItem(Item item) {
+    public synchronized boolean equipItem(Item item) {
         if (item == null) {
             return false;
         }
@@ -67,6 +73,7 @@ public class Inventory {
         backpackItems.remove(item);
         equippedItems.add(item);
         System.out.println("Equipped " + item.getName() + ".");
+        fireChanged();
         return true;
     }
     
@@ -75,7 +82,7 @@ public class Inventory {
      * @param item the item to unequip
      * @return true if item was unequipped successfully, false if not equipped or no space
      */
-    public boolean unequipItem(Item item) {
+    public synchronized boolean unequipItem(Item item) {
         if (item == null) {
             return false;
         }
@@ -90,14 +97,90 @@ public class Inventory {
         equippedItems.remove(item);
         backpackItems.add(item);
         System.out.println("Unequipped " + item.getName() + ".");
+        fireChanged();
         return true;
     }
     
+    /**
+     * Swaps several backpack items for replacements in one step. Each
+     * replacement takes the slot of the item it replaces, so the backpack
+     * keeps its order and size. Nothing changes unless every item is found.
+     * @param items the backpack items to replace
+     * @param replacements the new items, index-aligned with items
+     * @return true if all items were replaced, false if any was missing
+     */
+    public synchronized boolean replaceItems(List<Item> items, List<Item> replacements) {
+        if (items.size() != replacements.size()) {
+            throw new IllegalArgumentException("Every replaced item needs exactly one replacement");
+        }
+        
+        int[] slots = new int[items.size()];
+        boolean[] claimed = new boolean[backpackItems.size()];
+        for (int i = 0; i < items.size(); i++) {
+            int slot = -1;
+            for (int j = 0; j < backpackItems.size(); j++) {
+                if (!claimed[j] && backpackItems.get(j).equals(items.get(i))) {
+                    slot = j;
+                    break;
+                }
+            }
+            if (slot < 0 || replacements.get(i) == null) {
+                System.out.println("Item " + items.get(i).getName() + " is not in backpack.");
+                return false;
+            }
+            claimed[slot] = true;
+            slots[i] = slot;
+        }
+        
+        for (int i = 0; i < slots.length; i++) {
+            backpackItems.set(slots[i], replacements.get(i));
+        }
+        System.out.println("Replaced " + slots.length + " item(s) in backpack.");
+        fireChanged();
+        return true;
+    }
+    
+    /**
+     * Replaces the whole inventory content, bypassing the backpack size check.
+     * Used when restoring persisted player state.
+     * @param equipped the items to equip
+     * @param backpack the items to place in the backpack
+     */
+    public synchronized void restore(List<Item> equipped, List<Item> backpack) {
+        equippedItems.clear();
+        backpackItems.clear();
+        equippedItems.addAll(equipped);
+        backpackItems.addAll(backpack);
+        fireChanged();
+    }
+    
+    /**
+     * Sets the callback run after every change to the inventory content.
+     * @param listener the callback, or null for none
+     */
+    synchronized void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+    
+    private void fireChanged() {
+        if (changeListener != null) {
+            changeListener.run();
+        }
+    }
+    
+    /**
+     * Returns the maximum number of backpack slots.
+     * @return backpack capacity
+     */
+    public int getMaxSlots() {
+        return maxSlots;
+    }
+    
     /**
      * Returns a copy of the equipped items list.
      * @return list of equipped items
      */
-    public List<Item> getEquippedItems() {
+    public synchronized List<Item> getEquippedItems() {
         return new ArrayList<>(equippedItems);
     }
     
@@ -105,15 +188,32 @@ public class Inventory {
      * Returns a copy of the backpack items list.
      * @return list of backpack items
      */
-    public List<Item> getBackpackItems() {
+    public synchronized List<Item> getBackpackItems() {
         return new ArrayList<>(backpackItems);
     }
     
+    /**
+     * Returns the number of items in the backpack without copying it.
+     * @return backpack item count
+     */
+    public synchronized int getBackpackSize() {
+        return backpackItems.size();
+    }
+    
+    /**
+     * Returns the backpack slot holding an item.
+     * @param item the item to look for
+     * @return the index of the first equal item, or -1 if absent
+     */
+    public synchronized int getBackpackSlot(Item item) {
+        return backpackItems.indexOf(item);
+    }
+    
     /**
      * Checks if the backpack has available space.
      * @return true if there are empty slots, false if full
      */
-    public boolean hasSpace() {
+    public synchronized boolean hasSpace() {
         return backpackItems.size() < maxSlots;
     }
     
@@ -121,7 +221,7 @@ public class Inventory {
      * Returns the number of available slots in the backpack.
      * @return number of empty slots
      */
-    public int getAvailableSlots() {
+    public synchronized int getAvailableSlots() {
         return maxSlots - backpackItems.size();
     }
     
@@ -131,7 +231,7 @@ public class Inventory {
      * @param itemName the name of the item to find
      * @return the item if found, null otherwise
      */
-    public Item getItem(String itemName) {
+    public synchronized Item getItem(String itemName) {
         if (itemName == null) {
             return null;
         }
@@ -156,7 +256,7 @@ public class Inventory {
     /**
      * Prints all equipped and backpack items in a formatted way.
      */
-    public void printInventory() {
+    public synchronized void printInventory() {
         System.out.println("\n===== INVENTORY =====");
         
         System.out.println("\n--- Equipped Items ---");
@@ -1,7 +1,9 @@
 package model;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Player class managing stats, gold, level, and inventory.
@@ -9,9 +11,10 @@ import java.util.Map;
 public class Player {
     private final String name;
     private int level;
-    private double gold;
+    private volatile double gold; // Read by the UI while workers apply commands
     private final Inventory inventory;
     private final Map<String, Integer> stats;
+    private final List<PlayerChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     
     public Player(String name, int level, double initialGold) {
         this.name = name;
@@ -30,6 +33,7 @@ public class Player {
         
         // Create inventory with 6 slots
         this.inventory = new Inventory(6);
+        this.inventory.setChangeListener(this::fireChanged);
         
         // Initialize base stats
         this.stats = new HashMap<>();
@@ -48,6 +52,7 @@ public class Player {
         if (amount > 0) {
             this.gold += amount;
             System.out.println("Added " + amount + " gold. Current gold: " + this.gold);
+            fireChanged();
         }
     }
     
@@ -63,6 +68,7 @@ public class Player {
         if (this.gold >= amount) {
             this.gold -= amount;
             System.out.println("Removed " + amount + " gold. Current gold: " + this.gold);
+            fireChanged();
             return true;
         } else {
             System.out.println("Insufficient gold! Required: " + amount + ", Available: " + this.gold);
@@ -70,6 +76,16 @@ public class Player {
         }
     }
     
+    /**
+     * Sets the gold amount directly, without logging.
+     * Used when restoring persisted player state.
+     * @param amount the new gold amount (negative values become 0)
+     */
+    public void setGold(double amount) {
+        this.gold = Math.max(0, amount);
+        fireChanged();
+    }
+    
     /**
      * Returns the current gold amount.
      * @return current gold
@@ -110,6 +126,35 @@ public class Player {
         // Update level in stats map
         this.stats.put("Level", this.level);
         System.out.println("Level set to " + this.level);
+        fireChanged();
+    }
+    
+    /**
+     * Adds a listener told about changes to this player's gold, level and
+     * inventory. Adding a listener that is already registered does nothing.
+     * @param listener the listener
+     */
+    public void addChangeListener(PlayerChangeListener listener) {
+        if (listener != null && !changeListeners.contains(listener)) {
+            changeListeners.add(listener);
+        }
+    }
+    
+    /**
+     * Removes a previously added change listener.
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(PlayerChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+    
+    /**
+     * Tells every change listener that this player changed.
+     */
+    private void fireChanged() {
+        for (PlayerChangeListener listener : changeListeners) {
+            listener.onPlayerChanged(this);
+        }
     }
     
     /**
@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Listener told whenever a player's persisted state changes: gold, level,
+ * or anything in its inventory.
+ *
+ * Called on the thread making the change, often while the inventory lock
+ * is held, so implementations should only record that the player is dirty
+ * and do the real work elsewhere.
+ */
+public interface PlayerChangeListener {
+    /**
+     * Called after a player's gold, level or inventory changed.
+     * @param player the player that changed
+     */
+    void onPlayerChanged(Player player);
+}
@@ -0,0 +1,248 @@
+package patterns.behavioral;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import model.Item;
+import model.Player;
+import patterns.structural.ItemDecorator;
+import patterns.structural.UpgradePreviewEngine;
+
+/**
+ * BulkUpgradeCommand applies one upgrade plan to many backpack items at once.
+ *
+ * The total cost is known before anything runs, every item is swapped for
+ * its upgraded version in the same step (or none is), and the whole batch
+ * is a single history entry and a single ITEMS_REPLACED event, so undoing
+ * it refunds everything in one go.
+ */
+public class BulkUpgradeCommand implements Command {
+    private final Player player;
+    private final List<Item> baseItems;
+    private final List<Item> upgradedItems;
+    private final double totalCost;
+    private final ShopObservable observable;
+    private long chainLayers;
+    private boolean executed;
+    
+    /**
+     * Creates a new BulkUpgradeCommand.
+     * @param player the player upgrading the items
+     * @param baseItems the backpack items to upgrade
+     * @param upgradedItems the upgraded items, index-aligned with baseItems
+     * @param totalCost the gold charged for all upgrades together
+     * @param observable the observable to notify on changes, or null
+     */
+    public BulkUpgradeCommand(Player player, List<Item> baseItems, List<? extends Item> upgradedItems,
+                              double totalCost, ShopObservable observable) {
+        if (baseItems.isEmpty()) {
+            throw new IllegalArgumentException("Bulk upgrade needs at least one item");
+        }
+        if (baseItems.size() != upgradedItems.size()) {
+            throw new IllegalArgumentException("Every upgraded item needs exactly one base item");
+        }
+        if (totalCost < 0) {
+            throw new IllegalArgumentException("Bulk upgrade cost cannot be negative");
+        }
+        this.player = player;
+        this.baseItems = Collections.unmodifiableList(new ArrayList<>(baseItems));
+        this.upgradedItems = Collections.unmodifiableList(new ArrayList<Item>(upgradedItems));
+        this.totalCost = totalCost;
+        this.observable = observable;
+        for (Item item : this.upgradedItems) {
+            if (item instanceof ItemDecorator) {
+                chainLayers += ((ItemDecorator) item).getChainDepth();
+            }
+        }
+    }
+    
+    /**
+     * Plans a bulk upgrade of the given items with an upgrade mask. Items
+     * the mask cannot be applied to (conflicting enchantments) are skipped;
+     * costs come from the preview engine, so they match the single-item
+     * upgrade screen exactly.
+     * @param player the player upgrading the items
+     * @param items the candidate items
+     * @param upgrades bit mask of catalog upgrade indices
+     * @param previews the preview engine pricing and building upgrades
+     * @param observable the observable to notify on changes, or null
+     * @return the planned command, or null if no item can take the upgrades
+     */
+    public static BulkUpgradeCommand plan(Player player, List<Item> items, int upgrades,
+                                          UpgradePreviewEngine previews, ShopObservable observable) {
+        List<Item> bases = new ArrayList<>();
+        List<Item> upgraded = new ArrayList<>();
+        double total = 0;
+        for (Item item : items) {
+            if (!previews.isAllowed(item, upgrades)) {
+                continue;
+            }
+            ItemDecorator target = previews.build(item, upgrades);
+            if (target == null) {
+                continue;
+            }
+            bases.add(item);
+            upgraded.add(target);
+            total += previews.preview(item, upgrades).getUpgradeCost();
+        }
+        if (bases.isEmpty()) {
+            return null;
+        }
+        return new BulkUpgradeCommand(player, bases, upgraded, total, observable);
+    }
+    
+    /**
+     * Checks up front whether the bulk upgrade can run right now.
+     * @return a message describing why it cannot, or null if it can
+     */
+    public String validate() {
+        synchronized (player.getInventory()) {
+            if (player.getGold() < totalCost) {
+                return "Insufficient gold: " + baseItems.size() + " upgrades cost " + totalCost
+                       + " gold, you have " + player.getGold();
+            }
+            List<Item> backpack = player.getInventory().getBackpackItems();
+            for (Item item : baseItems) {
+                if (!backpack.remove(item)) {
+                    return item.getName() + " is no longer in the backpack";
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Executes the bulk upgrade: charges the total cost and swaps every
+     * item for its upgraded version, or changes nothing if either fails.
+     */
+    @Override
+    public void execute() {
+        if (executed) {
+            System.out.println("Warning: BulkUpgradeCommand already executed");
+            return;
+        }
+        
+        synchronized (player.getInventory()) {
+            if (player.getGold() < totalCost) {
+                System.out.println("Insufficient gold for bulk upgrade! Required: " + totalCost
+                                   + ", Available: " + player.getGold());
+                return;
+            }
+            if (!player.getInventory().replaceItems(baseItems, upgradedItems)) {
+                return;
+            }
+            player.removeGold(totalCost);
+        }
+        
+        executed = true;
+        
+        System.out.println("Ã¢Å“â€œ BulkUpgradeCommand executed: Upgraded " + baseItems.size()
+                           + " items for " + totalCost + " gold");
+        
+        if (observable != null) {
+            observable.notifyItemsReplaced(player, baseItems.size(), -totalCost);
+        }
+    }
+    
+    /**
+     * Undoes the bulk upgrade: refunds the total cost and swaps every
+     * upgraded item back for its base item.
+     */
+    @Override
+    public void undo() {
+        if (!executed) {
+            System.out.println("Warning: BulkUpgradeCommand not executed, cannot undo");
+            return;
+        }
+        
+        synchronized (player.getInventory()) {
+            if (!player.getInventory().replaceItems(upgradedItems, baseItems)) {
+                return;
+            }
+            player.addGold(totalCost);
+        }
+        
+        executed = false;
+        
+        System.out.println("Ã¢â€ Â¶ BulkUpgradeCommand undone: Downgraded " + baseItems.size() + " items");
+        
+        if (observable != null) {
+            observable.notifyItemsReplaced(player, baseItems.size(), totalCost);
+        }
+    }
+    
+    /**
+     * Returns a description of this command.
+     * @return description string
+     */
+    @Override
+    public String getDescription() {
+        return "Bulk upgrade " + baseItems.size() + " items for " + totalCost + " gold";
+    }
+    
+    /**
+     * Estimates retained size: both item lists plus every decorator layer.
+     * @return estimated retained size in bytes
+     */
+    @Override
+    public long estimateFootprint() {
+        return 96 + (long) baseItems.size() * 16 + chainLayers * 48;
+    }
+    
+    /**
+     * Returns the items being upgraded.
+     * @return unmodifiable list of base items
+     */
+    public List<Item> getBaseItems() {
+        return baseItems;
+    }
+    
+    /**
+     * Returns the upgraded items, index-aligned with getBaseItems().
+     * @return unmodifiable list of upgraded items
+     */
+    public List<Item> getUpgradedItems() {
+        return upgradedItems;
+    }
+    
+    /**
+     * Returns the player this command acts on.
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the gold charged for all upgrades together.
+     * @return total cost
+     */
+    public double getTotalCost() {
+        return totalCost;
+    }
+    
+    /**
+     * Returns the observable this command notifies, if any.
+     * @return the observable, or null
+     */
+    ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Marks the command as executed or not without running it.
+     * Used by CommandHistory when rebuilding commands from compact records.
+     * @param executed the new executed state
+     */
+    void setExecuted(boolean executed) {
+        this.executed = executed;
+    }
+    
+    /**
+     * Returns whether this command has been executed.
+     * @return true if executed, false otherwise
+     */
+    public boolean isExecuted() {
+        return executed;
+    }
+}
@@ -41,11 +41,22 @@ public class BuyCommand implements Command {
             return;
         }
         
-        // Remove gold from player
-        player.removeGold(goldSpent);
+        double goldBefore;
+        int slot;
+        boolean added;
         
-        // Add item to inventory
-        player.addItem(item);
+        // Change gold and items together so a concurrent save sees both or neither
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            slot = player.getInventory().getBackpackSize();
+            
+            // Remove gold from player
+            player.removeGold(goldSpent);
+            
+            // Add item to inventory
+            player.addItem(item);
+            added = player.getInventory().getBackpackSize() > slot;
+        }
         
         // Mark as executed
         executed = true;
@@ -55,8 +66,10 @@ public class BuyCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            observable.notifyGoldDelta(player, player.getGold() - goldBefore);
+            if (added) {
+                observable.notifyItemAdded(player, item, slot);
+            }
         }
     }
     
@@ -70,11 +83,20 @@ public class BuyCommand implements Command {
             return; // Can't undo if not executed
         }
         
-        // Return gold to player
-        player.addGold(goldSpent);
+        double goldBefore;
+        int slot;
+        boolean removed;
         
-        // Remove item from inventory
-        player.getInventory().removeItem(item);
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            slot = player.getInventory().getBackpackSlot(item);
+            
+            // Return gold to player
+            player.addGold(goldSpent);
+            
+            // Remove item from inventory
+            removed = player.getInventory().removeItem(item);
+        }
         
         // Mark as unexecuted
         executed = false;
@@ -84,8 +106,10 @@ public class BuyCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            observable.notifyGoldDelta(player, player.getGold() - goldBefore);
+            if (removed) {
+                observable.notifyItemRemoved(player, item, slot);
+            }
         }
     }
     
@@ -106,6 +130,39 @@ public class BuyCommand implements Command {
         return item;
     }
     
+    /**
+     * Returns the player this command acts on.
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the gold deducted by this purchase.
+     * @return gold spent
+     */
+    public double getGoldSpent() {
+        return goldSpent;
+    }
+    
+    /**
+     * Returns the observable this command notifies, if any.
+     * @return the observable, or null
+     */
+    ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Marks the command as executed or not without running it.
+     * Used by CommandHistory when rebuilding commands from compact records.
+     * @param executed the new executed state
+     */
+    void setExecuted(boolean executed) {
+        this.executed = executed;
+    }
+    
     /**
      * Returns whether this command has been executed.
      * @return true if executed, false otherwise
@@ -19,6 +19,52 @@ public interface Command {
      * @return descriptive string of the command
      */
     String getDescription();
+    
+    /**
+     * Returns a rough estimate of the memory this command retains while it
+     * sits in the undo/redo history. Used by CommandHistory's byte budget.
+     * @return estimated retained size in bytes
+     */
+    default long estimateFootprint() {
+        return 64;
+    }
+    
+    /**
+     * Returns whether this command exactly reverses a previously executed
+     * one, so CommandHistory can drop both instead of recording the pair.
+     * @param previous the most recent command in the history
+     * @return true if executing this command restores the state before previous
+     */
+    default boolean cancels(Command previous) {
+        return false;
+    }
+    
+    /**
+     * Returns whether a later command may cancel this one. CommandHistory
+     * briefly holds back the notifications of such commands, so a pair
+     * that cancels out quickly is never announced at all.
+     * @return true if some command's cancels() can accept this one
+     */
+    default boolean isCancellable() {
+        return false;
+    }
+    
+    /**
+     * Returns whether this command would repeat a previously executed one
+     * without changing any state, so CommandHistory can skip it.
+     * @param previous the most recent command in the history
+     * @return true if this command is redundant after previous
+     */
+    default boolean duplicates(Command previous) {
+        return false;
+    }
+    
+    /**
+     * Returns whether the last execute() changed any state. CommandHistory
+     * neither records nor coalesces a command that changed nothing.
+     * @return false if executing had no effect
+     */
+    default boolean changedState() {
+        return true;
+    }
 }
-
-
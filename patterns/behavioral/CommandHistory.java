@@ -1,69 +1,351 @@
 package patterns.behavioral;
 
-import java.util.Stack;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import patterns.creational.ShopManager;
+import patterns.structural.UpgradePreviewEngine;
 
 /**
  * Manages command history for undo/redo functionality.
+ *
+ * History is kept in a fixed-size ring buffer: undoable commands occupy the
+ * oldest part of the ring and redoable commands follow them. When the ring
+ * reaches its maximum depth or its byte budget, the oldest undoable commands
+ * are evicted (optionally handed to an eviction listener so they can be
+ * spilled elsewhere). Memory use therefore stays flat no matter how long the
+ * session runs. Commands of the built-in types are not kept as objects:
+ * the ring stores them as compact records (see CompactUndoRecords) and
+ * rebuilds a Command only when it is undone, redone or printed.
+ *
+ * Commands executed within the coalesce window of the newest entry are
+ * merged with it: a command that cancels the entry (unequipping what was
+ * just equipped) removes it instead of being recorded, and a command that
+ * duplicates it is skipped without running or notifying anyone. A command
+ * whose execute() changed nothing is not recorded either, so every entry is
+ * a real state change and a cancelling pair never drops a live one. Rapid
+ * toggling therefore leaves the history holding only real state changes.
+ *
+ * Observer notifications are batched the same way. The ShopObservable
+ * events of a cancellable command (equip, unequip) are held back for a
+ * short notification hold; if a cancelling command arrives meanwhile, both
+ * commands' events are dropped and HistoryListeners are not told about the
+ * cancelling command either, so observers never see the pair. Otherwise the
+ * held events are delivered when the hold ends or the next change starts.
+ *
+ * Mutations are serialized on this object; canUndo/canRedo and the size
+ * getters read volatile counters and never block, so the UI thread can
+ * poll them freely.
+ *
+ * With a CommandLog set, every execute, undo and redo is logged before it
+ * is recorded, and a change the log refuses is rolled back. The caller
+ * then waits for the change to become durable after the history lock is
+ * released. HistoryListeners are told about every execute, undo and redo
+ * once the command has been applied and logged.
  */
 public class CommandHistory {
-    private final Stack<Command> undoStack;
-    private final Stack<Command> redoStack;
+    public static final int DEFAULT_MAX_DEPTH = 100;
+    public static final long DEFAULT_BYTE_BUDGET = 64 * 1024;
+    public static final long DEFAULT_COALESCE_WINDOW_MILLIS = 400;
+    public static final long DEFAULT_NOTIFICATION_HOLD_MILLIS = 150;
+    
+    private static ScheduledExecutorService notificationTimer;
+    
+    private final CompactUndoRecords ring;
+    private final long[] footprints;
+    private final long[] timestamps; // System.nanoTime() of the last execute or redo
+    private final int maxDepth;
+    private final long byteBudget;
+    private Consumer<Command> evictionListener;
+    private CommandLog commandLog;
+    private final List<HistoryListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // Ring layout: [head, head + undoSize) undoable, then redoSize redoable
+    private int head;
+    private volatile int undoSize;
+    private volatile int redoSize;
+    private volatile long footprintBytes;
+    private volatile long coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COALESCE_WINDOW_MILLIS);
+    private volatile long notificationHoldNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NOTIFICATION_HOLD_MILLIS);
+    private int coalescedCount;
+    private List<Runnable> heldNotifications; // Events of the newest entry not yet delivered
+    private ScheduledFuture<?> heldFlush;
     
     /**
-     * Creates a new CommandHistory with empty stacks.
+     * Creates a new CommandHistory over the shared shop with the default
+     * depth and byte budget.
      */
     public CommandHistory() {
-        this.undoStack = new Stack<>();
-        this.redoStack = new Stack<>();
+        this(ShopManager.getInstance());
+    }
+    
+    /**
+     * Creates a new CommandHistory with the default depth and byte budget.
+     * @param shop the shop whose catalog ids the compact records refer to
+     */
+    public CommandHistory(ShopManager shop) {
+        this(DEFAULT_MAX_DEPTH, DEFAULT_BYTE_BUDGET, shop);
+    }
+    
+    /**
+     * Creates a new CommandHistory over the shared shop with a custom depth
+     * and byte budget.
+     * @param maxDepth maximum number of commands kept (undo + redo)
+     * @param byteBudget maximum estimated bytes retained by kept commands
+     */
+    public CommandHistory(int maxDepth, long byteBudget) {
+        this(maxDepth, byteBudget, ShopManager.getInstance());
+    }
+    
+    /**
+     * Creates a new CommandHistory with a custom depth and byte budget.
+     * @param maxDepth maximum number of commands kept (undo + redo)
+     * @param byteBudget maximum estimated bytes retained by kept commands
+     * @param shop the shop whose catalog ids the compact records refer to
+     */
+    public CommandHistory(int maxDepth, long byteBudget, ShopManager shop) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("History depth must be at least 1");
+        }
+        if (byteBudget < 1) {
+            throw new IllegalArgumentException("History byte budget must be positive");
+        }
+        this.maxDepth = maxDepth;
+        this.byteBudget = byteBudget;
+        this.ring = new CompactUndoRecords(maxDepth, shop, new UpgradePreviewEngine());
+        this.footprints = new long[maxDepth];
+        this.timestamps = new long[maxDepth];
+    }
+    
+    /**
+     * Sets a listener that receives commands evicted from the history.
+     * Useful for spilling old commands to a journal instead of dropping them.
+     * @param listener the listener, or null to simply drop evicted commands
+     */
+    public synchronized void setEvictionListener(Consumer<Command> listener) {
+        this.evictionListener = listener;
+    }
+    
+    /**
+     * Sets the write-ahead log every state change is recorded in.
+     * @param log the log, or null to stop logging
+     */
+    public synchronized void setCommandLog(CommandLog log) {
+        this.commandLog = log;
+    }
+    
+    /**
+     * Sets how close together two commands must be to be coalesced.
+     * @param millis the window in milliseconds, or 0 to disable coalescing
+     */
+    public void setCoalesceWindow(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Coalesce window cannot be negative");
+        }
+        this.coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    /**
+     * Returns the coalesce window.
+     * @return the window in milliseconds
+     */
+    public long getCoalesceWindow() {
+        return TimeUnit.NANOSECONDS.toMillis(coalesceWindowNanos);
+    }
+    
+    /**
+     * Sets how long the notifications of a cancellable command are held
+     * back in case the next command cancels it. Only a cancel arriving
+     * within both this hold and the coalesce window is silent.
+     * @param millis the hold in milliseconds, or 0 to deliver at once
+     */
+    public void setNotificationHold(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Notification hold cannot be negative");
+        }
+        this.notificationHoldNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    /**
+     * Returns the notification hold.
+     * @return the hold in milliseconds
+     */
+    public long getNotificationHold() {
+        return TimeUnit.NANOSECONDS.toMillis(notificationHoldNanos);
+    }
+    
+    /**
+     * Registers a listener for execute/undo/redo events.
+     * @param listener the listener to add
+     */
+    public void addHistoryListener(HistoryListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+    
+    /**
+     * Removes a previously registered history listener.
+     * @param listener the listener to remove
+     */
+    public void removeHistoryListener(HistoryListener listener) {
+        listeners.remove(listener);
     }
     
     /**
      * Adds a command to the history.
-     * Clears the redo stack (can't redo after new command).
+     * Clears the redo entries (can't redo after new command).
      * @param command the command to add
      */
-    public void addCommand(Command command) {
-        undoStack.push(command);
-        redoStack.clear(); // Can't redo after new command
+    public synchronized void addCommand(Command command) {
+        flushHeldNotifications();
+        clearRedo(); // Can't redo after new command
+        
+        if (undoSize == maxDepth) {
+            evictOldest();
+        }
+        
+        int slot = slot(undoSize);
+        long footprint = ring.store(slot, command);
+        timestamps[slot] = System.nanoTime();
+        footprints[slot] = footprint;
+        footprintBytes += footprint;
+        undoSize++;
+        
+        // Keep at least the newest command even if it alone exceeds the budget
+        while (footprintBytes > byteBudget && undoSize > 1) {
+            evictOldest();
+        }
     }
     
     /**
-     * Executes a command and adds it to the history.
+     * Executes a command and adds it to the history, coalescing it with the
+     * newest entry when it cancels or duplicates it within the window.
      * @param command the command to execute and track
+     * @throws RuntimeException if the command log refuses the change (it
+     *         is rolled back) or cannot make it durable
      */
     public void executeCommand(Command command) {
-        command.execute();
-        addCommand(command);
+        long ticket;
+        CommandLog log;
+        synchronized (this) {
+            Command previous = recentCommand();
+            if (previous != null && command.duplicates(previous)) {
+                coalescedCount++;
+                return; // Nothing would change, so nothing is recorded or notified
+            }
+            
+            // Collect the command's events; a rollback's events are collected and dropped with them
+            List<Runnable> notifications;
+            log = commandLog;
+            ticket = 0;
+            ShopObservable.beginCapture();
+            try {
+                command.execute();
+                if (command.changedState()) {
+                    ticket = logChange(log, command, false);
+                }
+            } finally {
+                notifications = ShopObservable.endCapture();
+            }
+            if (!command.changedState()) {
+                flushHeldNotifications();
+                deliver(notifications);
+                return; // Failed (e.g. backpack full): nothing to undo
+            }
+            
+            if (previous != null && command.cancels(previous)) {
+                // The pair nets out: drop the earlier entry instead of recording this one
+                undoSize--;
+                release(slot(undoSize));
+                coalescedCount++;
+                if (heldNotifications != null) {
+                    // Observers never heard of the earlier command, so they hear of neither
+                    heldFlush.cancel(false);
+                    heldNotifications = null;
+                    heldFlush = null;
+                } else {
+                    deliver(notifications);
+                    notifyExecuted(command);
+                }
+            } else {
+                addCommand(command);
+                long hold = notificationHoldNanos;
+                if (command.isCancellable() && hold > 0 && coalesceWindowNanos > 0 && !notifications.isEmpty()) {
+                    heldNotifications = notifications;
+                    heldFlush = timer().schedule(this::flushHeldNotifications, hold, TimeUnit.NANOSECONDS);
+                } else {
+                    deliver(notifications);
+                }
+                notifyExecuted(command);
+            }
+        }
+        awaitDurable(log, ticket);
     }
     
     /**
      * Undoes the most recent command.
-     * Moves it from undo stack to redo stack.
+     * Moves it from the undo side of the ring to the redo side.
+     * @throws RuntimeException if the command log refuses the change (it
+     *         is rolled back) or cannot make it durable
      */
     public void undo() {
-        if (undoStack.isEmpty()) {
-            System.out.println("Nothing to undo");
-            return;
+        long ticket;
+        CommandLog log;
+        synchronized (this) {
+            if (undoSize == 0) {
+                System.out.println("Nothing to undo");
+                return;
+            }
+            flushHeldNotifications();
+            
+            Command command = ring.materialize(slot(undoSize - 1), true);
+            command.undo();
+            log = commandLog;
+            ticket = logChange(log, command, true);
+            undoSize--;
+            redoSize++;
+            
+            for (HistoryListener listener : listeners) {
+                listener.onUndone(command);
+            }
         }
-        
-        Command command = undoStack.pop();
-        command.undo();
-        redoStack.push(command);
+        awaitDurable(log, ticket);
     }
     
     /**
      * Redoes the most recently undone command.
-     * Moves it from redo stack back to undo stack.
+     * Moves it from the redo side of the ring back to the undo side.
+     * @throws RuntimeException if the command log refuses the change (it
+     *         is rolled back) or cannot make it durable
      */
     public void redo() {
-        if (redoStack.isEmpty()) {
-            System.out.println("Nothing to redo");
-            return;
+        long ticket;
+        CommandLog log;
+        synchronized (this) {
+            if (redoSize == 0) {
+                System.out.println("Nothing to redo");
+                return;
+            }
+            flushHeldNotifications();
+            
+            Command command = ring.materialize(slot(undoSize), false);
+            command.execute();
+            log = commandLog;
+            ticket = logChange(log, command, false);
+            timestamps[slot(undoSize)] = System.nanoTime();
+            redoSize--;
+            undoSize++;
+            
+            for (HistoryListener listener : listeners) {
+                listener.onRedone(command);
+            }
         }
-        
-        Command command = redoStack.pop();
-        command.execute();
-        undoStack.push(command);
+        awaitDurable(log, ticket);
     }
     
     /**
@@ -71,7 +353,7 @@ public class CommandHistory {
      * @return true if there are commands to undo
      */
     public boolean canUndo() {
-        return !undoStack.isEmpty();
+        return undoSize > 0;
     }
     
     /**
@@ -79,59 +361,242 @@ public class CommandHistory {
      * @return true if there are commands to redo
      */
     public boolean canRedo() {
-        return !redoStack.isEmpty();
+        return redoSize > 0;
     }
     
     /**
      * Checks if the history is empty.
-     * @return true if no commands in undo stack
+     * @return true if no commands can be undone
      */
     public boolean isEmpty() {
-        return undoStack.isEmpty();
+        return undoSize == 0;
     }
     
     /**
      * Returns the number of commands in undo history.
-     * @return size of undo stack
+     * @return number of undoable commands
      */
     public int getUndoStackSize() {
-        return undoStack.size();
+        return undoSize;
     }
     
     /**
      * Returns the number of commands in redo history.
-     * @return size of redo stack
+     * @return number of redoable commands
      */
     public int getRedoStackSize() {
-        return redoStack.size();
+        return redoSize;
+    }
+    
+    /**
+     * Returns the maximum number of commands this history keeps.
+     * @return the ring capacity
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Returns the byte budget for retained commands.
+     * @return the byte budget
+     */
+    public long getByteBudget() {
+        return byteBudget;
+    }
+    
+    /**
+     * Returns the estimated bytes currently retained by the history.
+     * @return estimated footprint of all kept commands
+     */
+    public long getFootprintBytes() {
+        return footprintBytes;
+    }
+    
+    /**
+     * Returns how many commands were merged away by coalescing.
+     * @return number of cancelled or skipped commands
+     */
+    public synchronized int getCoalescedCount() {
+        return coalescedCount;
     }
     
     /**
      * Prints the command history.
      */
-    public void printHistory() {
+    public synchronized void printHistory() {
         System.out.println("\n===== COMMAND HISTORY =====");
         
-        if (undoStack.isEmpty()) {
+        if (undoSize == 0) {
             System.out.println("  (No commands executed)");
         } else {
-            int index = 1;
-            for (Command command : undoStack) {
-                System.out.println(index + ". " + command.getDescription());
-                index++;
+            for (int i = 0; i < undoSize; i++) {
+                System.out.println((i + 1) + ". " + ring.materialize(slot(i), true).getDescription());
             }
         }
         
         System.out.println("\nCan Undo: " + canUndo());
         System.out.println("Can Redo: " + canRedo());
+        System.out.println("Retained: ~" + footprintBytes + " / " + byteBudget + " bytes");
+        System.out.println("Coalesced: " + coalescedCount);
         System.out.println("===========================\n");
     }
     
     /**
      * Clears all command history.
      */
-    public void clear() {
-        undoStack.clear();
-        redoStack.clear();
+    public synchronized void clear() {
+        flushHeldNotifications();
+        clearRedo();
+        for (int i = 0; i < undoSize; i++) {
+            release(slot(i));
+        }
+        head = 0;
+        undoSize = 0;
+    }
+    
+    /**
+     * Tells the history listeners about an executed command.
+     * @param command the command
+     */
+    private void notifyExecuted(Command command) {
+        for (HistoryListener listener : listeners) {
+            listener.onExecuted(command);
+        }
+    }
+    
+    /**
+     * Delivers the held events of the newest entry, if any. Runs on the
+     * timer thread when the hold ends, or before the next change.
+     */
+    private synchronized void flushHeldNotifications() {
+        if (heldNotifications == null) {
+            return;
+        }
+        List<Runnable> notifications = heldNotifications;
+        heldNotifications = null;
+        heldFlush.cancel(false);
+        heldFlush = null;
+        try {
+            deliver(notifications);
+        } catch (RuntimeException e) {
+            // On the timer thread nobody else would see this
+            System.out.println("[History] Failed to deliver notifications: " + e.getMessage());
+        }
+    }
+    
+    private static void deliver(List<Runnable> notifications) {
+        for (Runnable notification : notifications) {
+            notification.run();
+        }
+    }
+    
+    /**
+     * Returns the daemon thread that ends notification holds, shared by every history.
+     * @return the timer
+     */
+    private static synchronized ScheduledExecutorService timer() {
+        if (notificationTimer == null) {
+            notificationTimer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "history-notifications");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return notificationTimer;
+    }
+    
+    /**
+     * Logs a change that was just applied, rolling it back if the log refuses it.
+     * @param log the command log, or null
+     * @param command the command
+     * @param revert true if the command was undone
+     * @return the log's ticket, or 0 without a log
+     */
+    private long logChange(CommandLog log, Command command, boolean revert) {
+        if (log == null) {
+            return 0;
+        }
+        try {
+            return log.log(command, revert);
+        } catch (RuntimeException e) {
+            // Nothing on record describes the change, so it must not stand
+            if (revert) {
+                command.execute();
+            } else {
+                command.undo();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Waits for a logged change to become durable. Called without the lock held.
+     * @param log the command log the change went to, or null
+     * @param ticket the log's ticket
+     */
+    private static void awaitDurable(CommandLog log, long ticket) {
+        if (log != null) {
+            log.awaitDurable(ticket);
+        }
+    }
+    
+    /**
+     * Returns the newest entry if it can still be coalesced with: nothing
+     * is waiting to be redone and it ran within the coalesce window.
+     * @return the newest command, or null
+     */
+    private Command recentCommand() {
+        long window = coalesceWindowNanos;
+        if (window == 0 || undoSize == 0 || redoSize > 0) {
+            return null;
+        }
+        int top = slot(undoSize - 1);
+        if (System.nanoTime() - timestamps[top] > window) {
+            return null;
+        }
+        return ring.materialize(top, true);
+    }
+    
+    /**
+     * Drops every redoable command.
+     */
+    private void clearRedo() {
+        for (int i = 0; i < redoSize; i++) {
+            release(slot(undoSize + i));
+        }
+        redoSize = 0;
+    }
+    
+    /**
+     * Evicts the oldest undoable command and hands it to the eviction listener.
+     */
+    private void evictOldest() {
+        Command evicted = evictionListener != null ? ring.materialize(head, true) : null;
+        release(head);
+        head = (head + 1) % maxDepth;
+        undoSize--;
+        
+        if (evictionListener != null) {
+            evictionListener.accept(evicted);
+        }
+    }
+    
+    /**
+     * Clears a ring slot so anything its record referenced can be garbage collected.
+     * @param slot the ring index to release
+     */
+    private void release(int slot) {
+        footprintBytes -= footprints[slot];
+        footprints[slot] = 0;
+        ring.release(slot);
+    }
+    
+    /**
+     * Maps a logical position (0 = oldest) to a ring index.
+     * @param offset logical position from the head
+     * @return the ring index
+     */
+    private int slot(int offset) {
+        return (head + offset) % maxDepth;
     }
 }
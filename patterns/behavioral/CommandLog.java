@@ -0,0 +1,28 @@
+package patterns.behavioral;
+
+/**
+ * Write-ahead log that CommandHistory records every state change in.
+ *
+ * The history logs each execute, undo and redo right after applying it and
+ * before recording it; if logging fails the change is rolled back and the
+ * operation fails. Durability is awaited afterwards, once the history lock
+ * has been released, so one slow flush never holds up the whole history.
+ */
+public interface CommandLog {
+    /**
+     * Queues a record of a command that was just applied or reverted.
+     * Called while the history is locked, so it should not wait for I/O.
+     * @param command the command
+     * @param revert true if the command was undone
+     * @return a ticket to pass to {@link #awaitDurable}
+     * @throws RuntimeException if the change cannot be logged
+     */
+    long log(Command command, boolean revert);
+    
+    /**
+     * Blocks until a logged change is durable.
+     * @param ticket the value returned by {@link #log}
+     * @throws RuntimeException if the change could not be made durable
+     */
+    void awaitDurable(long ticket);
+}
@@ -0,0 +1,350 @@
+package patterns.behavioral;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.Item;
+import model.Player;
+import patterns.creational.ShopManager;
+import patterns.structural.AttackBoostDecorator;
+import patterns.structural.DefenseBoostDecorator;
+import patterns.structural.ElementalDamageDecorator;
+import patterns.structural.HealthBoostDecorator;
+import patterns.structural.ItemDecorator;
+import patterns.structural.UpgradeCatalog;
+import patterns.structural.UpgradePreviewEngine;
+
+/**
+ * Fixed-size table of compact undo records backing CommandHistory's ring.
+ *
+ * Instead of keeping each Command object alive, the known command types
+ * are packed into parallel primitive arrays: an op code, an index into a
+ * small table of (player, observable) contexts and the item. An item is
+ * stored as the ShopManager catalog id of its base item plus the upgrade
+ * masks that rebuild its decorator chain: up to four steps of
+ * UpgradeCatalog bits, each stacked by UpgradePreviewEngine.build, so a
+ * rebuilt item equals the original. Buy and sell prices are derived from
+ * the item again, so only upgrades store gold (in fixed-point hundredths)
+ * along with how many decorator layers they added; the base item is found
+ * by unwrapping the upgraded item rather than being stored separately.
+ * A bulk upgrade keeps its items as one array of (id, base masks, upgraded
+ * masks) triples. Items whose base is not in the catalog or whose layers
+ * are not catalog upgrades, and unknown command types, fall back to a
+ * single reference slot.
+ *
+ * Records are turned back into Command objects only when they are undone,
+ * redone or otherwise inspected.
+ */
+final class CompactUndoRecords {
+    /** Estimated bytes per packed record across all parallel arrays. */
+    static final long RECORD_BYTES = 40;
+    
+    private static final byte OP_OBJECT = 0;
+    private static final byte OP_BUY = 1;
+    private static final byte OP_SELL = 2;
+    private static final byte OP_EQUIP = 3;
+    private static final byte OP_UNEQUIP = 4;
+    private static final byte OP_UPGRADE = 5;
+    private static final byte OP_BULK_UPGRADE = 6;
+    
+    private static final int STEP_BITS = UpgradeCatalog.MAX_UPGRADES;
+    private static final int MAX_STEPS = Long.SIZE / STEP_BITS;
+    private static final long STEP_MASK = (1L << STEP_BITS) - 1;
+    // A lone step above empty ones; real chains never leave a step empty
+    private static final long UNENCODABLE = Long.MIN_VALUE;
+    
+    private final byte[] ops;
+    private final short[] contexts;
+    private final int[] itemIds;
+    private final long[] upgradeMasks;
+    private final long[] goldCents;
+    private final byte[] layers;
+    private final Object[] refs; // Bulk items, unencodable item or fallback Command, usually null
+    private final ShopManager shop;
+    private final UpgradePreviewEngine previews;
+    
+    // Distinct (player, observable) pairs; a history normally serves a single player
+    private final List<Player> contextPlayers = new ArrayList<>();
+    private final List<ShopObservable> contextObservables = new ArrayList<>();
+    
+    /**
+     * Creates a record table.
+     * @param capacity number of records it can hold
+     * @param shop the shop whose catalog ids identify base items
+     * @param previews rebuilds decorator chains from upgrade masks
+     */
+    CompactUndoRecords(int capacity, ShopManager shop, UpgradePreviewEngine previews) {
+        this.shop = shop;
+        this.previews = previews;
+        this.ops = new byte[capacity];
+        this.contexts = new short[capacity];
+        this.itemIds = new int[capacity];
+        this.upgradeMasks = new long[capacity];
+        this.goldCents = new long[capacity];
+        this.layers = new byte[capacity];
+        this.refs = new Object[capacity];
+    }
+    
+    /**
+     * Packs a command into a slot.
+     * @param slot the slot to fill
+     * @param command the command to pack
+     * @return the estimated bytes the record retains
+     */
+    long store(int slot, Command command) {
+        Class<?> type = command.getClass();
+        if (type == BuyCommand.class) {
+            BuyCommand buy = (BuyCommand) command;
+            pack(slot, OP_BUY, buy.getPlayer(), buy.getObservable(), buy.getItem());
+        } else if (type == SellCommand.class) {
+            SellCommand sell = (SellCommand) command;
+            pack(slot, OP_SELL, sell.getPlayer(), sell.getObservable(), sell.getItem());
+        } else if (type == EquipCommand.class) {
+            EquipCommand equip = (EquipCommand) command;
+            pack(slot, OP_EQUIP, equip.getPlayer(), equip.getObservable(), equip.getItem());
+        } else if (type == UnequipCommand.class) {
+            UnequipCommand unequip = (UnequipCommand) command;
+            pack(slot, OP_UNEQUIP, unequip.getPlayer(), unequip.getObservable(), unequip.getItem());
+        } else if (type == UpgradeCommand.class) {
+            UpgradeCommand upgrade = (UpgradeCommand) command;
+            ItemDecorator upgraded = (ItemDecorator) upgrade.getUpgradedItem();
+            Item base = upgrade.getBaseItem();
+            int added = upgraded.getChainDepth()
+                        - (base instanceof ItemDecorator ? ((ItemDecorator) base).getChainDepth() : 0);
+            pack(slot, OP_UPGRADE, upgrade.getPlayer(), upgrade.getObservable(), upgraded);
+            goldCents[slot] = Math.round(upgrade.getUpgradeCost() * 100);
+            layers[slot] = (byte) added;
+        } else if (type == BulkUpgradeCommand.class) {
+            BulkUpgradeCommand bulk = (BulkUpgradeCommand) command;
+            long[] items = encodeBulk(bulk.getBaseItems(), bulk.getUpgradedItems());
+            if (items != null) {
+                ops[slot] = OP_BULK_UPGRADE;
+                contexts[slot] = context(bulk.getPlayer(), bulk.getObservable());
+                goldCents[slot] = Math.round(bulk.getTotalCost() * 100);
+                refs[slot] = items;
+                return RECORD_BYTES + 16 + items.length * 8L;
+            }
+            ops[slot] = OP_OBJECT;
+            refs[slot] = command;
+            return command.estimateFootprint();
+        } else {
+            ops[slot] = OP_OBJECT;
+            refs[slot] = command;
+            return command.estimateFootprint();
+        }
+        return RECORD_BYTES;
+    }
+    
+    /**
+     * Rebuilds the command stored in a slot.
+     * @param slot the slot to read
+     * @param executed whether the rebuilt command should be in the executed state
+     * @return the command
+     */
+    Command materialize(int slot, boolean executed) {
+        if (ops[slot] == OP_OBJECT) {
+            return (Command) refs[slot];
+        }
+        
+        Player player = contextPlayers.get(contexts[slot]);
+        ShopObservable observable = contextObservables.get(contexts[slot]);
+        if (ops[slot] == OP_BULK_UPGRADE) {
+            long[] items = (long[]) refs[slot];
+            List<Item> bases = new ArrayList<>(items.length / 3);
+            List<Item> upgraded = new ArrayList<>(items.length / 3);
+            for (int i = 0; i < items.length; i += 3) {
+                bases.add(decode((int) items[i], items[i + 1]));
+                upgraded.add(decode((int) items[i], items[i + 2]));
+            }
+            BulkUpgradeCommand command = new BulkUpgradeCommand(player, bases, upgraded,
+                                                                goldCents[slot] / 100.0, observable);
+            command.setExecuted(executed);
+            return command;
+        }
+        Item item = itemAt(slot);
+        
+        switch (ops[slot]) {
+            case OP_BUY: {
+                BuyCommand command = new BuyCommand(player, item, observable);
+                command.setExecuted(executed);
+                return command;
+            }
+            case OP_SELL: {
+                SellCommand command = new SellCommand(player, item, observable);
+                command.setExecuted(executed);
+                return command;
+            }
+            case OP_EQUIP: {
+                EquipCommand command = new EquipCommand(player, item, observable);
+                command.setExecuted(executed);
+                return command;
+            }
+            case OP_UNEQUIP: {
+                UnequipCommand command = new UnequipCommand(player, item, observable);
+                command.setExecuted(executed);
+                return command;
+            }
+            case OP_UPGRADE: {
+                Item base = item;
+                for (int i = 0; i < layers[slot]; i++) {
+                    base = ((ItemDecorator) base).getWrappedItem();
+                }
+                UpgradeCommand command = new UpgradeCommand(player, base, (ItemDecorator) item,
+                                                            goldCents[slot] / 100.0, observable);
+                command.setExecuted(executed);
+                return command;
+            }
+            default:
+                throw new IllegalStateException("Unknown undo record op " + ops[slot]);
+        }
+    }
+    
+    /**
+     * Clears a slot so nothing it referenced stays reachable.
+     * @param slot the slot to clear
+     */
+    void release(int slot) {
+        ops[slot] = OP_OBJECT;
+        refs[slot] = null;
+    }
+    
+    private void pack(int slot, byte op, Player player, ShopObservable observable, Item item) {
+        ops[slot] = op;
+        contexts[slot] = context(player, observable);
+        goldCents[slot] = 0;
+        layers[slot] = 0;
+        
+        int id = shop.getItemId(baseOf(item));
+        long masks = id >= 0 ? masksOf(item) : UNENCODABLE;
+        if (masks == UNENCODABLE) {
+            itemIds[slot] = -1;
+            refs[slot] = item;
+        } else {
+            itemIds[slot] = id;
+            upgradeMasks[slot] = masks;
+            refs[slot] = null;
+        }
+    }
+    
+    private Item itemAt(int slot) {
+        int id = itemIds[slot];
+        return id >= 0 ? decode(id, upgradeMasks[slot]) : (Item) refs[slot];
+    }
+    
+    /**
+     * Encodes a bulk upgrade's items as (id, base masks, upgraded masks) triples.
+     * @return the triples, or null if some item cannot be encoded
+     */
+    private long[] encodeBulk(List<Item> bases, List<Item> upgraded) {
+        long[] items = new long[bases.size() * 3];
+        for (int i = 0; i < bases.size(); i++) {
+            Item base = bases.get(i);
+            Item target = upgraded.get(i);
+            int id = shop.getItemId(baseOf(base));
+            if (id < 0 || baseOf(target) != baseOf(base)) {
+                return null;
+            }
+            long baseMasks = masksOf(base);
+            long targetMasks = masksOf(target);
+            if (baseMasks == UNENCODABLE || targetMasks == UNENCODABLE) {
+                return null;
+            }
+            items[i * 3] = id;
+            items[i * 3 + 1] = baseMasks;
+            items[i * 3 + 2] = targetMasks;
+        }
+        return items;
+    }
+    
+    private static Item baseOf(Item item) {
+        while (item instanceof ItemDecorator) {
+            item = ((ItemDecorator) item).getWrappedItem();
+        }
+        return item;
+    }
+    
+    /**
+     * Splits an item's decorator chain into upgrade steps, innermost step in
+     * the lowest bits. A step ends where the chain stops rising in catalog
+     * order or would no longer stack, so build() restacks it exactly.
+     * @return the packed masks (0 for a plain item), or UNENCODABLE
+     */
+    private long masksOf(Item item) {
+        UpgradeCatalog catalog = previews.getCatalog();
+        long masks = 0;
+        int steps = 0;
+        int step = 0;
+        // Walk from the outside in, so each step fills from its highest upgrade down
+        for (Item current = item; current instanceof ItemDecorator;
+                current = ((ItemDecorator) current).getWrappedItem()) {
+            int upgrade = upgradeOf((ItemDecorator) current, catalog);
+            if (upgrade < 0) {
+                return UNENCODABLE;
+            }
+            int bit = 1 << upgrade;
+            if (step != 0 && (step & ((bit << 1) - 1)) == 0 && catalog.isStackable(step | bit)) {
+                step |= bit;
+                continue;
+            }
+            if (step != 0) {
+                if (++steps == MAX_STEPS) {
+                    return UNENCODABLE;
+                }
+                masks = (masks << STEP_BITS) | step;
+            }
+            step = bit;
+        }
+        return step == 0 ? masks : (masks << STEP_BITS) | step;
+    }
+    
+    /**
+     * Returns the catalog upgrade a decorator was built from.
+     * @return the upgrade number, or -1 if it matches none
+     */
+    private static int upgradeOf(ItemDecorator decorator, UpgradeCatalog catalog) {
+        int upgrade;
+        int amount;
+        if (decorator instanceof AttackBoostDecorator) {
+            upgrade = catalog.indexOf("attack");
+            amount = ((AttackBoostDecorator) decorator).getAttackBonus();
+        } else if (decorator instanceof DefenseBoostDecorator) {
+            upgrade = catalog.indexOf("defense");
+            amount = ((DefenseBoostDecorator) decorator).getDefenseBonus();
+        } else if (decorator instanceof HealthBoostDecorator) {
+            upgrade = catalog.indexOf("health");
+            amount = ((HealthBoostDecorator) decorator).getHealthBonus();
+        } else if (decorator instanceof ElementalDamageDecorator) {
+            return ((ElementalDamageDecorator) decorator).getElement().getUpgrade();
+        } else {
+            return -1;
+        }
+        return upgrade >= 0 && catalog.getAmount(upgrade) == amount ? upgrade : -1;
+    }
+    
+    /**
+     * Rebuilds an item from its base id and upgrade masks.
+     */
+    private Item decode(int id, long masks) {
+        Item item = shop.getItemById(id);
+        for (; masks != 0 && item != null; masks >>>= STEP_BITS) {
+            item = previews.build(item, (int) (masks & STEP_MASK));
+        }
+        return item;
+    }
+    
+    /**
+     * Returns the index of a (player, observable) pair, adding it if new.
+     */
+    private short context(Player player, ShopObservable observable) {
+        for (int i = 0; i < contextPlayers.size(); i++) {
+            if (contextPlayers.get(i) == player && contextObservables.get(i) == observable) {
+                return (short) i;
+            }
+        }
+        if (contextPlayers.size() == Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many players in one command history");
+        }
+        contextPlayers.add(player);
+        contextObservables.add(observable);
+        return (short) (contextPlayers.size() - 1);
+    }
+}
@@ -11,6 +11,7 @@ public class EquipCommand implements Command {
     private final Player player;
     private final Item item;
     private boolean executed;
+    private boolean changed; // Whether the last execute moved the item
     private ShopObservable observable;
     
     /**
@@ -48,14 +49,14 @@ public class EquipCommand implements Command {
         }
         
         // Equip the item
-        player.getInventory().equipItem(item);
+        changed = player.getInventory().equipItem(item);
         
         executed = true;
         
         System.out.println("Ã¢Å“â€œ EquipCommand executed: Equipped " + item.getName());
         
         // Notify observers if observable is set
-        if (observable != null) {
+        if (changed && observable != null) {
             observable.notifyItemEquipped(item, player);
         }
     }
@@ -92,6 +93,53 @@ public class EquipCommand implements Command {
         return "Equip " + item.getName();
     }
     
+    /**
+     * Equipping right after unequipping the same item undoes it.
+     * @param previous the most recent command in the history
+     * @return true if this command moved the very item previous unequipped
+     */
+    @Override
+    public boolean cancels(Command previous) {
+        if (!(previous instanceof UnequipCommand)) {
+            return false;
+        }
+        UnequipCommand other = (UnequipCommand) previous;
+        return changed && other.getPlayer() == player && other.getItem() == item;
+    }
+    
+    /**
+     * Equipping the same item twice in a row changes nothing the second time.
+     * @param previous the most recent command in the history
+     * @return true if previous already equipped this item and no copy is left to equip
+     */
+    @Override
+    public boolean duplicates(Command previous) {
+        if (!(previous instanceof EquipCommand)) {
+            return false;
+        }
+        EquipCommand other = (EquipCommand) previous;
+        return other.getPlayer() == player && other.getItem() == item
+               && !player.getInventory().getBackpackItems().contains(item);
+    }
+    
+    /**
+     * An unequip of the same item can cancel this command.
+     * @return true
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+    
+    /**
+     * Returns whether the last execute actually moved the item.
+     * @return false if the inventory refused the move
+     */
+    @Override
+    public boolean changedState() {
+        return changed;
+    }
+    
     /**
      * Returns the item being equipped.
      * @return the item
@@ -100,6 +148,31 @@ public class EquipCommand implements Command {
         return item;
     }
     
+    /**
+     * Returns the player this command acts on.
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the observable this command notifies, if any.
+     * @return the observable, or null
+     */
+    ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Marks the command as executed or not without running it.
+     * Used by CommandHistory when rebuilding commands from compact records.
+     * @param executed the new executed state
+     */
+    void setExecuted(boolean executed) {
+        this.executed = executed;
+    }
+    
     /**
      * Returns whether this command has been executed.
      * @return true if executed, false otherwise
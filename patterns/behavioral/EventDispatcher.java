@@ -0,0 +1,53 @@
+package patterns.behavioral;
+
+import java.util.List;
+
+/**
+ * Strategy used by ShopObservable to deliver events to its observers.
+ *
+ * {@link SynchronousDispatcher} calls observers on the publishing thread,
+ * as ShopObservable always has; {@link RingBufferDispatcher} hands events
+ * to per-observer consumer threads so publishers never wait on observers.
+ */
+public interface EventDispatcher extends AutoCloseable {
+    /**
+     * Adds an observer.
+     * @param observer the observer to add
+     * @param topics mask of ShopEvent.Topic bits the observer receives
+     * @param weak true to hold the observer weakly, dropping it once collected
+     * @return true if it was added, false if it was already registered
+     */
+    boolean register(ShopObserver observer, int topics, boolean weak);
+    
+    /**
+     * Removes an observer.
+     * @param observer the observer to remove
+     * @return true if it was registered
+     */
+    boolean unregister(ShopObserver observer);
+    
+    /**
+     * Delivers, or queues for delivery, an event to every observer.
+     * The dispatcher may copy the event, so the caller can discard it.
+     * @param event the event to publish
+     */
+    void publish(ShopEvent event);
+    
+    /**
+     * Returns the number of registered observers.
+     * @return observer count
+     */
+    int getObserverCount();
+    
+    /**
+     * Returns the delivery latency statistics of each registered observer.
+     * @return one entry per observer, in registration order
+     */
+    List<ObserverStats> getObserverStats();
+    
+    /**
+     * Stops delivery and releases any threads. Queued events are delivered first.
+     */
+    @Override
+    void close();
+}
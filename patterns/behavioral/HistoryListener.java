@@ -0,0 +1,26 @@
+package patterns.behavioral;
+
+/**
+ * Listener notified by CommandHistory after each state-changing operation.
+ * Lets snapshots and other infrastructure follow the command
+ * stream without the commands knowing about them.
+ */
+public interface HistoryListener {
+    /**
+     * Called after a command was executed and recorded in the history.
+     * @param command the executed command
+     */
+    void onExecuted(Command command);
+    
+    /**
+     * Called after a command was undone.
+     * @param command the undone command
+     */
+    void onUndone(Command command);
+    
+    /**
+     * Called after a previously undone command was executed again.
+     * @param command the redone command
+     */
+    void onRedone(Command command);
+}
@@ -0,0 +1,80 @@
+package patterns.behavioral;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ *
+ * Bucket i counts samples in [2^(i-1), 2^i) ns, so percentiles are
+ * reported as the upper bound of the bucket they fall in (at most 2x
+ * pessimistic). Recording is a handful of atomic adds and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 48; // Up to ~39 hours, far beyond any callback
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    /**
+     * Records one sample.
+     * @param nanos the measured latency
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    /**
+     * Returns the number of samples.
+     * @return sample count
+     */
+    public long getCount() {
+        return count.get();
+    }
+    
+    /**
+     * Returns the mean latency.
+     * @return mean in nanoseconds, or 0 without samples
+     */
+    public long getMeanNanos() {
+        long samples = count.get();
+        return samples == 0 ? 0 : totalNanos.get() / samples;
+    }
+    
+    /**
+     * Returns the largest latency recorded.
+     * @return maximum in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * Returns an upper bound for a latency percentile.
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(samples * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+}
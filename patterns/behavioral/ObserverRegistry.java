@@ -0,0 +1,158 @@
+package patterns.behavioral;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Copy-on-write set of observer subscriptions.
+ *
+ * Readers take the current snapshot array and iterate it without locks
+ * or allocation; registering and unregistering copy the array under a
+ * lock, so a notification in progress never sees a half-updated list.
+ * Each subscription carries a topic mask, and may hold its observer
+ * weakly: once a weakly held observer is garbage collected, its
+ * subscription is dropped the next time the registry is touched.
+ */
+public class ObserverRegistry {
+    private static final Subscription[] EMPTY = new Subscription[0];
+    
+    private volatile Subscription[] subscriptions = EMPTY;
+    private final ReferenceQueue<ShopObserver> collected = new ReferenceQueue<>();
+    
+    /**
+     * An observer and the topics it listens to.
+     */
+    public static final class Subscription {
+        private final ShopObserver strong;
+        private final WeakReference<ShopObserver> weak;
+        private final int topics;
+        private final ObserverStats stats;
+        
+        Subscription(ShopObserver observer, int topics, boolean weak, ReferenceQueue<ShopObserver> queue) {
+            this.strong = weak ? null : observer;
+            this.weak = weak ? new WeakReference<>(observer, queue) : null;
+            this.topics = topics;
+            this.stats = new ObserverStats(observer.getClass().getSimpleName());
+        }
+        
+        /**
+         * Returns the observer.
+         * @return the observer, or null if it was weakly held and collected
+         */
+        public ShopObserver get() {
+            return strong != null ? strong : weak.get();
+        }
+        
+        /**
+         * Checks whether the observer listens to an event's topic.
+         * @param type the event type
+         * @return true if the event should be delivered
+         */
+        public boolean accepts(ShopEvent.Type type) {
+            return (topics & type.getTopicMask()) != 0;
+        }
+        
+        /**
+         * Returns the observer's delivery statistics.
+         * @return the stats
+         */
+        public ObserverStats getStats() {
+            return stats;
+        }
+    }
+    
+    /**
+     * Adds a subscription.
+     * @param observer the observer to add
+     * @param topics mask of ShopEvent.Topic bits to deliver
+     * @param weak true to hold the observer through a weak reference
+     * @return true if added, false if the observer was already registered
+     */
+    public synchronized boolean add(ShopObserver observer, int topics, boolean weak) {
+        Subscription[] current = purgeCollected();
+        for (Subscription subscription : current) {
+            if (subscription.get() == observer) {
+                return false;
+            }
+        }
+        Subscription[] grown = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = new Subscription(observer, topics, weak, collected);
+        subscriptions = grown;
+        return true;
+    }
+    
+    /**
+     * Removes an observer's subscription.
+     * @param observer the observer to remove
+     * @return true if it was registered
+     */
+    public synchronized boolean remove(ShopObserver observer) {
+        Subscription[] current = purgeCollected();
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].get() == observer) {
+                Subscription[] shrunk = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                subscriptions = shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the current subscriptions. The array must not be modified.
+     * Collected weak observers are purged first if any were reported.
+     * @return the subscription snapshot
+     */
+    public Subscription[] snapshot() {
+        if (collected.poll() != null) {
+            synchronized (this) {
+                purgeCollected();
+            }
+        }
+        return subscriptions;
+    }
+    
+    /**
+     * Returns the number of subscriptions, including any collected observers
+     * not yet purged.
+     * @return subscription count
+     */
+    public int size() {
+        return subscriptions.length;
+    }
+    
+    /**
+     * Drops every subscription.
+     */
+    public synchronized void clear() {
+        subscriptions = EMPTY;
+    }
+    
+    /**
+     * Rebuilds the array without subscriptions whose observer was collected.
+     * Must be called while holding the lock.
+     * @return the current array
+     */
+    private Subscription[] purgeCollected() {
+        while (collected.poll() != null) {
+            // Drain; the scan below finds every cleared reference
+        }
+        Subscription[] current = subscriptions;
+        Subscription[] kept = new Subscription[current.length];
+        int live = 0;
+        for (Subscription subscription : current) {
+            if (subscription.get() != null) {
+                kept[live++] = subscription;
+            }
+        }
+        if (live == current.length) {
+            return current;
+        }
+        subscriptions = Arrays.copyOf(kept, live);
+        return subscriptions;
+    }
+}
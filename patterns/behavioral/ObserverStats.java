@@ -0,0 +1,118 @@
+package patterns.behavioral;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivery latency of one observer, broken down by event type, plus its
+ * standing against the dispatcher's latency budget.
+ */
+public class ObserverStats {
+    public static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    
+    private final String observerName;
+    private final LatencyHistogram[] histograms;
+    private final AtomicInteger overBudget = new AtomicInteger();
+    private volatile boolean flagged;
+    private volatile boolean quarantined;
+    
+    /**
+     * Creates empty statistics.
+     * @param observerName name shown in reports
+     */
+    public ObserverStats(String observerName) {
+        this.observerName = observerName;
+        this.histograms = new LatencyHistogram[ShopEvent.Type.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+    
+    /**
+     * Records one delivery and checks it against the budget. The first
+     * delivery over budget flags the observer as slow.
+     * @param type the delivered event type
+     * @param nanos how long the callback took
+     * @param budgetNanos the latency budget per delivery
+     * @return the number of deliveries over budget so far, or 0 if this one was within it
+     */
+    int record(ShopEvent.Type type, long nanos, long budgetNanos) {
+        histograms[type.ordinal()].record(nanos);
+        if (nanos <= budgetNanos) {
+            return 0;
+        }
+        if (!flagged) {
+            flagged = true;
+            System.out.println("[EventBus] " + observerName + " exceeded the latency budget on "
+                               + type + ": " + TimeUnit.NANOSECONDS.toMicros(nanos) + "us");
+        }
+        return overBudget.incrementAndGet();
+    }
+    
+    /**
+     * Returns the observer's name.
+     * @return the name shown in reports
+     */
+    public String getObserverName() {
+        return observerName;
+    }
+    
+    /**
+     * Returns the latency histogram for one event type.
+     * @param type the event type
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(ShopEvent.Type type) {
+        return histograms[type.ordinal()];
+    }
+    
+    /**
+     * Returns how many deliveries exceeded the budget.
+     * @return over-budget count
+     */
+    public int getOverBudgetCount() {
+        return overBudget.get();
+    }
+    
+    /**
+     * Returns whether the observer has ever exceeded the budget.
+     * @return true if flagged as slow
+     */
+    public boolean isFlagged() {
+        return flagged;
+    }
+    
+    /**
+     * Returns whether the observer's deliveries have been moved to a slow lane.
+     * @return true if quarantined
+     */
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+    
+    /**
+     * Moves the observer to or from the slow lane.
+     * @param quarantined the new state
+     */
+    void setQuarantined(boolean quarantined) {
+        this.quarantined = quarantined;
+    }
+    
+    /**
+     * Prints a summary line per event type that has been delivered.
+     */
+    public void print() {
+        System.out.println(observerName + (quarantined ? " [QUARANTINED]" : flagged ? " [SLOW]" : "")
+                           + " - over budget: " + overBudget.get());
+        for (ShopEvent.Type type : ShopEvent.Type.values()) {
+            LatencyHistogram histogram = histograms[type.ordinal()];
+            if (histogram.getCount() > 0) {
+                System.out.println(String.format("  %-18s n=%-7d mean=%dus p99<=%dus max=%dus",
+                    type, histogram.getCount(),
+                    TimeUnit.NANOSECONDS.toMicros(histogram.getMeanNanos()),
+                    TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(99)),
+                    TimeUnit.NANOSECONDS.toMicros(histogram.getMaxNanos())));
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package patterns.behavioral;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers events through a preallocated ring buffer drained by one
+ * dedicated consumer thread per observer.
+ *
+ * Publishing claims the next sequence number, fills the event stored in
+ * that slot and marks it available; it never calls an observer, so a slow
+ * observer cannot stall the command that raised the event. Each consumer
+ * keeps its own sequence and delivers events strictly in order, taking
+ * every event available at once as a batch before advancing its sequence.
+ *
+ * A slot is reused only after every consumer has passed it. If one
+ * observer falls a full buffer behind, publishers wait for it, so the
+ * capacity bounds both memory and how far observers may lag.
+ *
+ * Each consumer times its deliveries into per-event-type histograms; a
+ * slow observer only delays its own consumer, so none is quarantined.
+ *
+ * Consumers skip events outside their observer's topics, and a consumer
+ * whose weakly held observer has been collected stops by itself.
+ *
+ * In single-producer mode sequence claiming is a plain increment and only
+ * one thread may publish; multi-producer mode claims with an atomic add.
+ */
+public class RingBufferDispatcher implements EventDispatcher {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+    
+    private final ShopEvent[] entries;
+    private final AtomicLongArray available; // Sequence last published in each slot
+    private final int mask;
+    private final boolean multiProducer;
+    private final AtomicLong cursor = new AtomicLong(-1); // Highest sequence claimed so far
+    private volatile Consumer[] consumers = new Consumer[0];
+    private volatile boolean closed;
+    
+    /**
+     * One observer's consumer thread and delivery position.
+     */
+    private final class Consumer implements Runnable {
+        final ShopObserver strong;
+        final WeakReference<ShopObserver> weak;
+        final int topics;
+        final ObserverStats stats;
+        final AtomicLong sequence; // Last sequence delivered
+        final Thread thread;
+        volatile boolean sleeping;
+        volatile boolean running = true; // Cleared on close, after which the backlog is drained
+        volatile boolean detached; // Set on unregister, stops delivery immediately
+        
+        Consumer(ShopObserver observer, int topics, boolean weak, long start) {
+            this.strong = weak ? null : observer;
+            this.weak = weak ? new WeakReference<>(observer) : null;
+            this.topics = topics;
+            this.stats = new ObserverStats(observer.getClass().getSimpleName());
+            this.sequence = new AtomicLong(start);
+            this.thread = new Thread(this, "shop-events-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+        
+        ShopObserver observer() {
+            return strong != null ? strong : weak.get();
+        }
+        
+        @Override
+        public void run() {
+            while (!detached && (running || sequence.get() < cursor.get())) {
+                long next = sequence.get() + 1;
+                long last = highestAvailable(next);
+                if (last < next) {
+                    sleeping = true;
+                    if (highestAvailable(next) < next && running) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                
+                ShopObserver observer = observer();
+                if (observer == null) {
+                    removeConsumer(this); // Weakly held observer was collected
+                    return;
+                }
+                for (long seq = next; seq <= last; seq++) {
+                    ShopEvent event = entries[(int) seq & mask];
+                    if ((topics & event.getType().getTopicMask()) == 0) {
+                        continue;
+                    }
+                    try {
+                        long start = System.nanoTime();
+                        event.deliverTo(observer);
+                        stats.record(event.getType(), System.nanoTime() - start, ObserverStats.DEFAULT_BUDGET_NANOS);
+                    } catch (RuntimeException e) {
+                        System.out.println("[EventBus] " + observer.getClass().getSimpleName()
+                                           + " failed on event #" + seq + ": " + e);
+                    }
+                }
+                sequence.set(last); // Frees the whole batch for publishers at once
+            }
+        }
+    }
+    
+    /**
+     * Creates a multi-producer dispatcher with the default capacity.
+     */
+    public RingBufferDispatcher() {
+        this(DEFAULT_CAPACITY, true);
+    }
+    
+    /**
+     * Creates a dispatcher.
+     * @param capacity number of slots, must be a power of two
+     * @param multiProducer true if several threads may publish concurrently
+     */
+    public RingBufferDispatcher(int capacity, boolean multiProducer) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.entries = new ShopEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new ShopEvent();
+        }
+        this.available = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            available.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.multiProducer = multiProducer;
+    }
+    
+    @Override
+    public synchronized boolean register(ShopObserver observer, int topics, boolean weak) {
+        for (Consumer consumer : consumers) {
+            if (consumer.observer() == observer) {
+                return false;
+            }
+        }
+        // A new observer only sees events published after it joined
+        Consumer consumer = new Consumer(observer, topics, weak, cursor.get());
+        Consumer[] grown = new Consumer[consumers.length + 1];
+        System.arraycopy(consumers, 0, grown, 0, consumers.length);
+        grown[consumers.length] = consumer;
+        consumers = grown;
+        consumer.thread.start();
+        return true;
+    }
+    
+    @Override
+    public synchronized boolean unregister(ShopObserver observer) {
+        Consumer[] current = consumers;
+        for (Consumer consumer : current) {
+            if (consumer.observer() == observer) {
+                return removeConsumer(consumer);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Detaches a consumer and stops its thread.
+     * @param consumer the consumer to remove
+     * @return true if it was attached
+     */
+    private synchronized boolean removeConsumer(Consumer consumer) {
+        Consumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == consumer) {
+                Consumer[] shrunk = new Consumer[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                consumers = shrunk;
+                current[i].detached = true;
+                LockSupport.unpark(current[i].thread);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public void publish(ShopEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+        Consumer[] targets = consumers;
+        if (targets.length == 0) {
+            return;
+        }
+        
+        long seq;
+        if (multiProducer) {
+            seq = cursor.incrementAndGet();
+        } else {
+            seq = cursor.get() + 1;
+            cursor.lazySet(seq); // Only this thread writes the cursor
+        }
+        
+        waitForCapacity(seq);
+        int index = (int) seq & mask;
+        entries[index].copyFrom(event);
+        available.set(index, seq); // Publishes the slot contents to consumers
+        
+        for (Consumer consumer : consumers) {
+            if (consumer.sleeping) {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+    }
+    
+    @Override
+    public int getObserverCount() {
+        return consumers.length;
+    }
+    
+    @Override
+    public List<ObserverStats> getObserverStats() {
+        List<ObserverStats> stats = new ArrayList<>();
+        for (Consumer consumer : consumers) {
+            stats.add(consumer.stats);
+        }
+        return stats;
+    }
+    
+    /**
+     * Returns how many events the slowest observer has yet to receive.
+     * @return the largest per-observer backlog
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        long published = cursor.get();
+        for (Consumer consumer : consumers) {
+            backlog = Math.max(backlog, published - consumer.sequence.get());
+        }
+        return backlog;
+    }
+    
+    /**
+     * Returns the number of slots in the ring.
+     * @return ring capacity
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+    
+    /**
+     * Delivers every published event, then stops the consumer threads.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Consumer consumer : consumers) {
+            consumer.running = false;
+            LockSupport.unpark(consumer.thread);
+        }
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        consumers = new Consumer[0];
+    }
+    
+    /**
+     * Finds the end of the contiguous run of published events starting at next.
+     * @param next the first sequence the caller wants
+     * @return the last available sequence, or next - 1 if none
+     */
+    private long highestAvailable(long next) {
+        long last = next - 1;
+        long limit = cursor.get();
+        while (last < limit && available.get((int) (last + 1) & mask) == last + 1) {
+            last++;
+        }
+        return last;
+    }
+    
+    /**
+     * Blocks until every attached consumer has passed the slot seq will
+     * overwrite. The consumer list is re-read on every check, so a consumer
+     * detached while the publisher waits stops holding it back.
+     */
+    private void waitForCapacity(long seq) {
+        long wrapPoint = seq - entries.length;
+        int spins = 0;
+        while (minimumSequence(consumers) < wrapPoint) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+    }
+    
+    private long minimumSequence(Consumer[] targets) {
+        long min = Long.MAX_VALUE;
+        for (Consumer consumer : targets) {
+            if (!consumer.detached) { // A detached consumer's sequence no longer advances
+                min = Math.min(min, consumer.sequence.get());
+            }
+        }
+        return min;
+    }
+}
@@ -51,11 +51,21 @@ public class SellCommand implements Command {
             return;
         }
         
-        // Remove item from inventory
-        player.removeItemFromInventory(item);
+        double goldBefore;
+        int slot;
+        boolean removed;
         
-        // Add gold to player
-        player.addGold(goldReceived);
+        // Change gold and items together so a concurrent save sees both or neither
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            slot = player.getInventory().getBackpackSlot(item);
+            
+            // Remove item from inventory
+            removed = player.removeItemFromInventory(item);
+            
+            // Add gold to player
+            player.addGold(goldReceived);
+        }
         
         executed = true;
         
@@ -64,8 +74,10 @@ public class SellCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            if (removed) {
+                observable.notifyItemRemoved(player, item, slot);
+            }
+            observable.notifyGoldDelta(player, player.getGold() - goldBefore);
         }
     }
     
@@ -79,11 +91,21 @@ public class SellCommand implements Command {
             return;
         }
         
-        // Add item back to inventory
-        player.addItem(item);
+        double goldBefore;
+        int slot;
+        boolean added;
         
-        // Remove gold from player
-        player.removeGold(goldReceived);
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            slot = player.getInventory().getBackpackSize();
+            
+            // Add item back to inventory
+            player.addItem(item);
+            added = player.getInventory().getBackpackSize() > slot;
+            
+            // Remove gold from player
+            player.removeGold(goldReceived);
+        }
         
         executed = false;
         
@@ -92,8 +114,10 @@ public class SellCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            if (added) {
+                observable.notifyItemAdded(player, item, slot);
+            }
+            observable.notifyGoldDelta(player, player.getGold() - goldBefore);
         }
     }
     
@@ -114,6 +138,39 @@ public class SellCommand implements Command {
         return item;
     }
     
+    /**
+     * Returns the player this command acts on.
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the gold paid out by this sale.
+     * @return gold received
+     */
+    public double getGoldReceived() {
+        return goldReceived;
+    }
+    
+    /**
+     * Returns the observable this command notifies, if any.
+     * @return the observable, or null
+     */
+    ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Marks the command as executed or not without running it.
+     * Used by CommandHistory when rebuilding commands from compact records.
+     * @param executed the new executed state
+     */
+    void setExecuted(boolean executed) {
+        this.executed = executed;
+    }
+    
     /**
      * Returns whether this command has been executed.
      * @return true if executed, false otherwise
@@ -0,0 +1,310 @@
+package patterns.behavioral;
+
+import model.Item;
+import model.Player;
+import patterns.creational.ShopManager;
+
+/**
+ * A shop notification as carried by an EventDispatcher.
+ *
+ * Besides the coarse "something changed" notifications, events can carry a
+ * diff: an item added to or removed from a backpack slot, a gold delta, or
+ * a catalog item going in or out of stock. Observers that understand the
+ * diff update only what changed; the others fall back to the coarse
+ * callbacks through ShopObserver's default methods.
+ *
+ * Ring-buffer dispatchers preallocate their events and overwrite them in
+ * place, so an observer must not keep a reference to one after delivery.
+ */
+public final class ShopEvent {
+    /**
+     * Groups of event types an observer can subscribe to.
+     */
+    public enum Topic {
+        GOLD,
+        INVENTORY,
+        EQUIPMENT,
+        SHOP;
+        
+        /** Mask selecting every topic. */
+        public static final int ALL = (1 << values().length) - 1;
+        
+        /**
+         * Returns this topic's bit in a subscription mask.
+         * @return the topic bit
+         */
+        public int bit() {
+            return 1 << ordinal();
+        }
+        
+        /**
+         * Combines topics into a subscription mask.
+         * @param topics the topics to include; none means all of them
+         * @return the mask
+         */
+        public static int mask(Topic... topics) {
+            if (topics == null || topics.length == 0) {
+                return ALL;
+            }
+            int mask = 0;
+            for (Topic topic : topics) {
+                mask |= topic.bit();
+            }
+            return mask;
+        }
+    }
+    
+    /**
+     * The kinds of notification, one per ShopObserver callback.
+     */
+    public enum Type {
+        GOLD_CHANGED(Topic.GOLD),
+        INVENTORY_CHANGED(Topic.INVENTORY),
+        SHOP_CHANGED(Topic.SHOP),
+        ITEM_EQUIPPED(Topic.EQUIPMENT),
+        ITEM_UNEQUIPPED(Topic.EQUIPMENT),
+        ITEM_ADDED(Topic.INVENTORY),
+        ITEM_REMOVED(Topic.INVENTORY),
+        GOLD_DELTA(Topic.GOLD),
+        STOCK_CHANGED(Topic.SHOP),
+        ITEMS_REPLACED(Topic.INVENTORY, Topic.GOLD);
+        
+        private final Topic topic;
+        private final int topicMask;
+        
+        Type(Topic topic, Topic... alsoPublishedUnder) {
+            this.topic = topic;
+            this.topicMask = topic.bit() | (alsoPublishedUnder.length > 0 ? Topic.mask(alsoPublishedUnder) : 0);
+        }
+        
+        /**
+         * Returns the main topic this type is published under.
+         * @return the topic
+         */
+        public Topic getTopic() {
+            return topic;
+        }
+        
+        /**
+         * Returns every topic this type is published under, as a mask.
+         * Observers subscribed to any of them receive the event.
+         * @return the topic mask
+         */
+        public int getTopicMask() {
+            return topicMask;
+        }
+    }
+    
+    private Type type;
+    private Player player;
+    private Item item;
+    private ShopManager shop;
+    private int slot;
+    private double goldDelta;
+    private boolean available;
+    private int itemCount;
+    
+    /**
+     * Creates an empty event, to be filled in with {@link #copyFrom}.
+     */
+    ShopEvent() {
+    }
+    
+    /**
+     * Creates an event.
+     * @param type the kind of notification
+     * @param player the affected player, or null for shop events
+     * @param item the item the event is about, otherwise null
+     * @param shop the changed shop, otherwise null
+     */
+    public ShopEvent(Type type, Player player, Item item, ShopManager shop) {
+        this.type = type;
+        this.player = player;
+        this.item = item;
+        this.shop = shop;
+    }
+    
+    /**
+     * Creates an event for an item placed in a backpack slot.
+     * @param player the player whose backpack changed
+     * @param item the added item
+     * @param slot the backpack index the item now occupies
+     * @return the event
+     */
+    public static ShopEvent itemAdded(Player player, Item item, int slot) {
+        ShopEvent event = new ShopEvent(Type.ITEM_ADDED, player, item, null);
+        event.slot = slot;
+        return event;
+    }
+    
+    /**
+     * Creates an event for an item taken out of a backpack slot.
+     * @param player the player whose backpack changed
+     * @param item the removed item
+     * @param slot the backpack index the item occupied before removal
+     * @return the event
+     */
+    public static ShopEvent itemRemoved(Player player, Item item, int slot) {
+        ShopEvent event = new ShopEvent(Type.ITEM_REMOVED, player, item, null);
+        event.slot = slot;
+        return event;
+    }
+    
+    /**
+     * Creates an event for a change in a player's gold.
+     * @param player the player whose gold changed
+     * @param delta the signed amount added to the player's gold
+     * @return the event
+     */
+    public static ShopEvent goldDelta(Player player, double delta) {
+        ShopEvent event = new ShopEvent(Type.GOLD_DELTA, player, null, null);
+        event.goldDelta = delta;
+        return event;
+    }
+    
+    /**
+     * Creates one event for many backpack items swapped for other items
+     * in place, together with the gold the swap cost or refunded.
+     * @param player the player whose backpack changed
+     * @param itemCount how many items were replaced
+     * @param goldDelta the signed amount added to the player's gold
+     * @return the event
+     */
+    public static ShopEvent itemsReplaced(Player player, int itemCount, double goldDelta) {
+        ShopEvent event = new ShopEvent(Type.ITEMS_REPLACED, player, null, null);
+        event.itemCount = itemCount;
+        event.goldDelta = goldDelta;
+        return event;
+    }
+    
+    /**
+     * Creates an event for a catalog item going in or out of stock.
+     * @param shop the shop whose stock changed
+     * @param item the affected catalog item
+     * @param available true if the item can now be bought
+     * @return the event
+     */
+    public static ShopEvent stockChanged(ShopManager shop, Item item, boolean available) {
+        ShopEvent event = new ShopEvent(Type.STOCK_CHANGED, null, item, shop);
+        event.available = available;
+        return event;
+    }
+    
+    /**
+     * Overwrites this event's contents with another's.
+     * @param other the event to copy
+     */
+    void copyFrom(ShopEvent other) {
+        this.type = other.type;
+        this.player = other.player;
+        this.item = other.item;
+        this.shop = other.shop;
+        this.slot = other.slot;
+        this.goldDelta = other.goldDelta;
+        this.available = other.available;
+        this.itemCount = other.itemCount;
+    }
+    
+    /**
+     * Calls the observer callback matching this event's type.
+     * @param observer the observer to notify
+     */
+    public void deliverTo(ShopObserver observer) {
+        switch (type) {
+            case GOLD_CHANGED:
+                observer.onPlayerGoldChanged(player);
+                break;
+            case INVENTORY_CHANGED:
+                observer.onInventoryChanged(player);
+                break;
+            case SHOP_CHANGED:
+                observer.onShopInventoryChanged(shop);
+                break;
+            case ITEM_EQUIPPED:
+                observer.onItemEquipped(item, player);
+                break;
+            case ITEM_UNEQUIPPED:
+                observer.onItemUnequipped(item, player);
+                break;
+            case ITEM_ADDED:
+                observer.onItemAdded(item, player, slot);
+                break;
+            case ITEM_REMOVED:
+                observer.onItemRemoved(item, player, slot);
+                break;
+            case GOLD_DELTA:
+                observer.onGoldDelta(player, goldDelta);
+                break;
+            case STOCK_CHANGED:
+                observer.onCatalogStockChanged(item, shop, available);
+                break;
+            case ITEMS_REPLACED:
+                observer.onItemsReplaced(player, itemCount, goldDelta);
+                break;
+        }
+    }
+    
+    /**
+     * Returns the kind of notification.
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Returns the affected player.
+     * @return the player, or null for shop events
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the item the event is about.
+     * @return the item, or null for gold and coarse inventory events
+     */
+    public Item getItem() {
+        return item;
+    }
+    
+    /**
+     * Returns the changed shop.
+     * @return the shop, or null for player events
+     */
+    public ShopManager getShop() {
+        return shop;
+    }
+    
+    /**
+     * Returns the backpack slot of an ITEM_ADDED or ITEM_REMOVED event.
+     * @return the slot index
+     */
+    public int getSlot() {
+        return slot;
+    }
+    
+    /**
+     * Returns the signed gold change of a GOLD_DELTA event.
+     * @return the gold delta
+     */
+    public double getGoldDelta() {
+        return goldDelta;
+    }
+    
+    /**
+     * Returns how many items an ITEMS_REPLACED event covers.
+     * @return the item count
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+    
+    /**
+     * Returns whether the item of a STOCK_CHANGED event is now in stock.
+     * @return true if available
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+}
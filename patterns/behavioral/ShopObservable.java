@@ -2,30 +2,104 @@ package patterns.behavioral;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 import model.Item;
 import model.Player;
 import patterns.creational.ShopManager;
+import patterns.creational.StockListener;
 
 /**
  * Observable subject that manages and notifies observers of shop events.
+ *
+ * How notifications reach observers is decided by the EventDispatcher:
+ * synchronously on the notifying thread by default, or asynchronously
+ * through a RingBufferDispatcher. Launchers pick the mode with
+ * {@link #configuredDispatcher}, i.e. {@code -Dshop.dispatcher=ring}.
+ *
+ * Registered with ShopManager as a StockListener, it also turns stock
+ * changes into STOCK_CHANGED and SHOP_CHANGED events.
  */
-public class ShopObservable {
-    private final List<ShopObserver> observers;
+public class ShopObservable implements StockListener, AutoCloseable {
+    public static final String DISPATCHER_PROPERTY = "shop.dispatcher";
+    
+    // Deliveries held back on the current thread while CommandHistory batches a command's events
+    private static final ThreadLocal<List<Runnable>> CAPTURED = new ThreadLocal<>();
+    
+    private final EventDispatcher dispatcher;
     
     /**
-     * Creates a new ShopObservable with empty observer list.
+     * Creates a new ShopObservable that notifies observers synchronously.
      */
     public ShopObservable() {
-        this.observers = new ArrayList<>();
+        this(new SynchronousDispatcher());
+    }
+    
+    /**
+     * Creates a new ShopObservable with a specific dispatch mode.
+     * @param dispatcher the dispatcher that delivers events to observers
+     */
+    public ShopObservable(EventDispatcher dispatcher) {
+        if (dispatcher == null) {
+            throw new IllegalArgumentException("Dispatcher cannot be null");
+        }
+        this.dispatcher = dispatcher;
+    }
+    
+    /**
+     * Creates the dispatcher for a dispatch mode name.
+     * @param mode "sync" or "ring"; null means "sync"
+     * @param synchronous supplies the dispatcher used in sync mode
+     * @return a new dispatcher
+     */
+    public static EventDispatcher createDispatcher(String mode, Supplier<EventDispatcher> synchronous) {
+        String name = mode == null ? "sync" : mode.trim().toLowerCase(Locale.ROOT);
+        switch (name) {
+            case "sync":
+                return synchronous.get();
+            case "ring":
+                return new RingBufferDispatcher();
+            default:
+                throw new IllegalArgumentException("Unknown dispatch mode: " + mode + " (expected sync or ring)");
+        }
+    }
+    
+    /**
+     * Creates the dispatcher selected by the shop.dispatcher system property.
+     * @param synchronous supplies the dispatcher used in sync mode, the default
+     * @return a new dispatcher
+     */
+    public static EventDispatcher configuredDispatcher(Supplier<EventDispatcher> synchronous) {
+        return createDispatcher(System.getProperty(DISPATCHER_PROPERTY), synchronous);
     }
     
     /**
-     * Registers an observer to receive notifications.
+     * Registers an observer to receive every notification.
      * @param observer the observer to register
      */
     public void registerObserver(ShopObserver observer) {
-        if (observer != null && !observers.contains(observer)) {
-            observers.add(observer);
+        registerObserver(observer, false);
+    }
+    
+    /**
+     * Registers an observer for some topics only.
+     * @param observer the observer to register
+     * @param topics the topics to deliver; none means all of them
+     */
+    public void registerObserver(ShopObserver observer, ShopEvent.Topic... topics) {
+        registerObserver(observer, false, topics);
+    }
+    
+    /**
+     * Registers an observer, optionally held by a weak reference so that
+     * it is dropped automatically once nothing else references it. Do not
+     * register lambdas or other otherwise-unreferenced observers weakly.
+     * @param observer the observer to register
+     * @param weak true to hold the observer weakly
+     * @param topics the topics to deliver; none means all of them
+     */
+    public void registerObserver(ShopObserver observer, boolean weak, ShopEvent.Topic... topics) {
+        if (observer != null && dispatcher.register(observer, ShopEvent.Topic.mask(topics), weak)) {
             System.out.println("[Observer registered] " + observer.getClass().getSimpleName());
         }
     }
@@ -35,7 +109,7 @@ public class ShopObservable {
      * @param observer the observer to remove
      */
     public void removeObserver(ShopObserver observer) {
-        if (observers.remove(observer)) {
+        if (observer != null && dispatcher.unregister(observer)) {
             System.out.println("[Observer removed] " + observer.getClass().getSimpleName());
         }
     }
@@ -45,9 +119,7 @@ public class ShopObservable {
      * @param player the player whose gold changed
      */
     public void notifyGoldChanged(Player player) {
-        for (ShopObserver observer : observers) {
-            observer.onPlayerGoldChanged(player);
-        }
+        publish(new ShopEvent(ShopEvent.Type.GOLD_CHANGED, player, null, null));
     }
     
     /**
@@ -55,9 +127,7 @@ public class ShopObservable {
      * @param player the player whose inventory changed
      */
     public void notifyInventoryChanged(Player player) {
-        for (ShopObserver observer : observers) {
-            observer.onInventoryChanged(player);
-        }
+        publish(new ShopEvent(ShopEvent.Type.INVENTORY_CHANGED, player, null, null));
     }
     
     /**
@@ -65,9 +135,7 @@ public class ShopObservable {
      * @param shop the shop whose inventory changed
      */
     public void notifyShopChanged(ShopManager shop) {
-        for (ShopObserver observer : observers) {
-            observer.onShopInventoryChanged(shop);
-        }
+        publish(new ShopEvent(ShopEvent.Type.SHOP_CHANGED, null, null, shop));
     }
     
     /**
@@ -76,9 +144,7 @@ public class ShopObservable {
      * @param player the player who equipped the item
      */
     public void notifyItemEquipped(Item item, Player player) {
-        for (ShopObserver observer : observers) {
-            observer.onItemEquipped(item, player);
-        }
+        publish(new ShopEvent(ShopEvent.Type.ITEM_EQUIPPED, player, item, null));
     }
     
     /**
@@ -87,9 +153,67 @@ public class ShopObservable {
      * @param player the player who unequipped the item
      */
     public void notifyItemUnequipped(Item item, Player player) {
-        for (ShopObserver observer : observers) {
-            observer.onItemUnequipped(item, player);
-        }
+        publish(new ShopEvent(ShopEvent.Type.ITEM_UNEQUIPPED, player, item, null));
+    }
+    
+    /**
+     * Notifies all observers that an item was placed in a backpack slot.
+     * @param player the player whose backpack changed
+     * @param item the added item
+     * @param slot the backpack index the item now occupies
+     */
+    public void notifyItemAdded(Player player, Item item, int slot) {
+        publish(ShopEvent.itemAdded(player, item, slot));
+    }
+    
+    /**
+     * Notifies all observers that an item was taken out of a backpack slot.
+     * @param player the player whose backpack changed
+     * @param item the removed item
+     * @param slot the backpack index the item occupied before removal
+     */
+    public void notifyItemRemoved(Player player, Item item, int slot) {
+        publish(ShopEvent.itemRemoved(player, item, slot));
+    }
+    
+    /**
+     * Notifies all observers of a change in a player's gold.
+     * @param player the player whose gold changed
+     * @param delta the signed amount added to the player's gold
+     */
+    public void notifyGoldDelta(Player player, double delta) {
+        publish(ShopEvent.goldDelta(player, delta));
+    }
+    
+    /**
+     * Notifies all observers, with a single event, that many backpack items
+     * were replaced in place.
+     * @param player the player whose backpack changed
+     * @param itemCount how many items were replaced
+     * @param goldDelta the signed amount added to the player's gold
+     */
+    public void notifyItemsReplaced(Player player, int itemCount, double goldDelta) {
+        publish(ShopEvent.itemsReplaced(player, itemCount, goldDelta));
+    }
+    
+    /**
+     * Notifies all observers that a catalog item went in or out of stock.
+     * @param shop the shop whose stock changed
+     * @param item the affected catalog item
+     * @param available true if the item can now be bought
+     */
+    public void notifyStockChanged(ShopManager shop, Item item, boolean available) {
+        publish(ShopEvent.stockChanged(shop, item, available));
+    }
+    
+    @Override
+    public void onStockChanged(ShopManager shop, Item item, boolean available) {
+        notifyStockChanged(shop, item, available);
+    }
+    
+    @Override
+    public void onStockReplaced(ShopManager shop) {
+        notifyShopChanged(shop);
     }
     
     /**
@@ -97,7 +221,73 @@ public class ShopObservable {
      * @return observer count
      */
     public int getObserverCount() {
-        return observers.size();
+        return dispatcher.getObserverCount();
+    }
+    
+    /**
+     * Returns the delivery latency statistics of each registered observer.
+     * @return one entry per observer
+     */
+    public List<ObserverStats> getObserverStats() {
+        return dispatcher.getObserverStats();
+    }
+    
+    /**
+     * Prints the per-observer, per-event-type delivery latencies.
+     */
+    public void printLatencyReport() {
+        System.out.println("\n===== OBSERVER LATENCY =====");
+        List<ObserverStats> stats = dispatcher.getObserverStats();
+        if (stats.isEmpty()) {
+            System.out.println("  (No observers registered)");
+        }
+        for (ObserverStats entry : stats) {
+            entry.print();
+        }
+        System.out.println("============================\n");
+    }
+    
+    /**
+     * Starts holding back events published on the calling thread, by any
+     * observable, until {@link #endCapture()}.
+     */
+    static void beginCapture() {
+        CAPTURED.set(new ArrayList<>());
+    }
+    
+    /**
+     * Stops holding back events on the calling thread.
+     * @return one delivery per held event, in publish order
+     */
+    static List<Runnable> endCapture() {
+        List<Runnable> captured = CAPTURED.get();
+        CAPTURED.remove();
+        return captured != null ? captured : new ArrayList<>();
+    }
+    
+    private void publish(ShopEvent event) {
+        List<Runnable> captured = CAPTURED.get();
+        if (captured != null) {
+            captured.add(() -> dispatcher.publish(event));
+        } else {
+            dispatcher.publish(event);
+        }
+    }
+    
+    /**
+     * Returns the dispatcher that delivers this observable's events.
+     * @return the dispatcher
+     */
+    public EventDispatcher getDispatcher() {
+        return dispatcher;
+    }
+    
+    /**
+     * Delivers any queued events and stops the dispatcher's threads.
+     */
+    @Override
+    public void close() {
+        dispatcher.close();
     }
 }
 
@@ -39,6 +39,62 @@ public interface ShopObserver {
      * @param player the player who unequipped the item
      */
     void onItemUnequipped(Item item, Player player);
+    
+    /**
+     * Called when an item is placed in a backpack slot. Observers that
+     * don't track slots get onInventoryChanged instead.
+     * @param item the added item
+     * @param player the player whose backpack changed
+     * @param slot the backpack index the item now occupies
+     */
+    default void onItemAdded(Item item, Player player, int slot) {
+        onInventoryChanged(player);
+    }
+    
+    /**
+     * Called when an item is taken out of a backpack slot. Observers that
+     * don't track slots get onInventoryChanged instead.
+     * @param item the removed item
+     * @param player the player whose backpack changed
+     * @param slot the backpack index the item occupied before removal
+     */
+    default void onItemRemoved(Item item, Player player, int slot) {
+        onInventoryChanged(player);
+    }
+    
+    /**
+     * Called with the amount a player's gold changed by. Defaults to
+     * onPlayerGoldChanged.
+     * @param player the player whose gold changed
+     * @param delta the signed amount added to the player's gold
+     */
+    default void onGoldDelta(Player player, double delta) {
+        onPlayerGoldChanged(player);
+    }
+    
+    /**
+     * Called when a single catalog item goes in or out of stock. Defaults
+     * to onShopInventoryChanged.
+     * @param item the affected catalog item
+     * @param shop the shop whose stock changed
+     * @param available true if the item can now be bought
+     */
+    default void onCatalogStockChanged(Item item, ShopManager shop, boolean available) {
+        onShopInventoryChanged(shop);
+    }
+    
+    /**
+     * Called once when many backpack items were swapped in place, such as
+     * by a bulk upgrade. Defaults to onInventoryChanged followed by
+     * onGoldDelta.
+     * @param player the player whose backpack and gold changed
+     * @param itemCount how many items were replaced
+     * @param goldDelta the signed amount added to the player's gold
+     */
+    default void onItemsReplaced(Player player, int itemCount, double goldDelta) {
+        onInventoryChanged(player);
+        onGoldDelta(player, goldDelta);
+    }
 }
 
 
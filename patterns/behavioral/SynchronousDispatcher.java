@@ -0,0 +1,125 @@
+package patterns.behavioral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers each event to every subscribed observer on the publishing
+ * thread, in registration order, before publish returns. Observers may
+ * register or unregister concurrently, even from inside a callback.
+ *
+ * Every delivery is timed into the observer's per-event-type histogram.
+ * An observer that takes longer than the latency budget is flagged; if a
+ * slow lane is configured, an observer that goes over budget
+ * QUARANTINE_STRIKES times is moved onto it, so later events reach it
+ * through that executor instead of delaying the publisher and the other
+ * observers.
+ */
+public class SynchronousDispatcher implements EventDispatcher {
+    public static final int QUARANTINE_STRIKES = 3;
+    
+    private final ObserverRegistry registry = new ObserverRegistry();
+    private final long latencyBudgetNanos;
+    private final Executor slowLane;
+    
+    /**
+     * Creates a dispatcher with the default latency budget and no slow lane.
+     */
+    public SynchronousDispatcher() {
+        this(ObserverStats.DEFAULT_BUDGET_NANOS, null);
+    }
+    
+    /**
+     * Creates a dispatcher.
+     * @param latencyBudgetNanos how long one callback may take before the observer is flagged
+     * @param slowLane executor for quarantined observers, or null to only flag them.
+     *                 Should run tasks in submission order to keep each observer's events ordered.
+     */
+    public SynchronousDispatcher(long latencyBudgetNanos, Executor slowLane) {
+        if (latencyBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Latency budget must be positive");
+        }
+        this.latencyBudgetNanos = latencyBudgetNanos;
+        this.slowLane = slowLane;
+    }
+    
+    @Override
+    public boolean register(ShopObserver observer, int topics, boolean weak) {
+        return registry.add(observer, topics, weak);
+    }
+    
+    @Override
+    public boolean unregister(ShopObserver observer) {
+        return registry.remove(observer);
+    }
+    
+    @Override
+    public void publish(ShopEvent event) {
+        ShopEvent.Type type = event.getType();
+        for (ObserverRegistry.Subscription subscription : registry.snapshot()) {
+            if (!subscription.accepts(type)) {
+                continue;
+            }
+            ShopObserver observer = subscription.get();
+            if (observer == null) {
+                continue;
+            }
+            ObserverStats stats = subscription.getStats();
+            if (stats.isQuarantined()) {
+                slowLane.execute(() -> deliver(event, observer, stats));
+                continue;
+            }
+            
+            int strikes = deliver(event, observer, stats);
+            if (strikes >= QUARANTINE_STRIKES && slowLane != null && !stats.isQuarantined()) {
+                stats.setQuarantined(true);
+                System.out.println("[EventBus] " + stats.getObserverName() + " moved to the slow lane");
+            }
+        }
+    }
+    
+    /**
+     * Delivers and times one event.
+     * @return the observer's over-budget count if this delivery was over budget, otherwise 0
+     */
+    private int deliver(ShopEvent event, ShopObserver observer, ObserverStats stats) {
+        long start = System.nanoTime();
+        event.deliverTo(observer);
+        return stats.record(event.getType(), System.nanoTime() - start, latencyBudgetNanos);
+    }
+    
+    /**
+     * Moves a quarantined observer back onto the publishing thread.
+     * @param observer the observer to release
+     * @return true if it was quarantined
+     */
+    public boolean releaseQuarantine(ShopObserver observer) {
+        for (ObserverRegistry.Subscription subscription : registry.snapshot()) {
+            if (subscription.get() == observer && subscription.getStats().isQuarantined()) {
+                subscription.getStats().setQuarantined(false);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public int getObserverCount() {
+        return registry.size();
+    }
+    
+    @Override
+    public List<ObserverStats> getObserverStats() {
+        List<ObserverStats> stats = new ArrayList<>();
+        for (ObserverRegistry.Subscription subscription : registry.snapshot()) {
+            stats.add(subscription.getStats());
+        }
+        return stats;
+    }
+    
+    @Override
+    public void close() {
+        registry.clear();
+    }
+}
@@ -1,7 +1,10 @@
 package patterns.behavioral;
 
+import java.util.Set;
+import java.util.StringJoiner;
 import model.Item;
 import model.Player;
+import patterns.structural.Element;
 import patterns.structural.ItemDecorator;
 
 /**
@@ -61,12 +64,25 @@ public class UpgradeCommand implements Command {
             return;
         }
         
-        // Remove cost from player
-        player.removeGold(upgradeCost);
+        double goldBefore;
+        int removedSlot;
+        boolean removed;
+        int addedSlot;
+        boolean added;
         
-        // Replace item in inventory with upgraded version
-        player.getInventory().removeItem(baseItem);
-        player.getInventory().addItem(upgradedItem);
+        // Change gold and items together so a concurrent save sees both or neither
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            
+            // Remove cost from player
+            player.removeGold(upgradeCost);
+            
+            // Replace item in inventory with upgraded version
+            removedSlot = player.getInventory().getBackpackSlot(baseItem);
+            removed = player.getInventory().removeItem(baseItem);
+            addedSlot = player.getInventory().getBackpackSize();
+            added = player.getInventory().addItem(upgradedItem);
+        }
         
         executed = true;
         
@@ -75,8 +91,7 @@ public class UpgradeCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            notifyReplaced(baseItem, removed, removedSlot, upgradedItem, added, addedSlot, goldBefore);
         }
     }
     
@@ -90,12 +105,24 @@ public class UpgradeCommand implements Command {
             return;
         }
         
-        // Refund cost to player
-        player.addGold(upgradeCost);
+        double goldBefore;
+        int removedSlot;
+        boolean removed;
+        int addedSlot;
+        boolean added;
         
-        // Replace upgraded item back with base item
-        player.getInventory().removeItem(upgradedItem);
-        player.getInventory().addItem(baseItem);
+        synchronized (player.getInventory()) {
+            goldBefore = player.getGold();
+            
+            // Refund cost to player
+            player.addGold(upgradeCost);
+            
+            // Replace upgraded item back with base item
+            removedSlot = player.getInventory().getBackpackSlot(upgradedItem);
+            removed = player.getInventory().removeItem(upgradedItem);
+            addedSlot = player.getInventory().getBackpackSize();
+            added = player.getInventory().addItem(baseItem);
+        }
         
         executed = false;
         
@@ -103,8 +130,21 @@ public class UpgradeCommand implements Command {
         
         // Notify observers if observable is set
         if (observable != null) {
-            observable.notifyGoldChanged(player);
-            observable.notifyInventoryChanged(player);
+            notifyReplaced(upgradedItem, removed, removedSlot, baseItem, added, addedSlot, goldBefore);
+        }
+    }
+    
+    /**
+     * Publishes the backpack and gold diffs of swapping one item for another.
+     */
+    private void notifyReplaced(Item oldItem, boolean removed, int removedSlot,
+                                Item newItem, boolean added, int addedSlot, double goldBefore) {
+        observable.notifyGoldDelta(player, player.getGold() - goldBefore);
+        if (removed) {
+            observable.notifyItemRemoved(player, oldItem, removedSlot);
+        }
+        if (added) {
+            observable.notifyItemAdded(player, newItem, addedSlot);
         }
     }
     
@@ -114,7 +154,35 @@ public class UpgradeCommand implements Command {
      */
     @Override
     public String getDescription() {
-        return "Upgrade " + baseItem.getName() + " for " + upgradeCost + " gold";
+        Set<Element> added = getAddedElements();
+        if (added.isEmpty()) {
+            return "Upgrade " + baseItem.getName() + " for " + upgradeCost + " gold";
+        }
+        StringJoiner names = new StringJoiner(", ");
+        for (Element element : added) {
+            names.add(element.getDisplayName());
+        }
+        return "Upgrade " + baseItem.getName() + " with " + names + " for " + upgradeCost + " gold";
+    }
+    
+    /**
+     * Returns the elements this upgrade enchants the item with.
+     * @return elements on the upgraded item that the base item lacks
+     */
+    public Set<Element> getAddedElements() {
+        Set<Element> added = Element.of(upgradedItem);
+        added.removeAll(Element.of(baseItem));
+        return added;
+    }
+    
+    /**
+     * Estimates retained size including every decorator layer of the
+     * upgraded item, since the whole chain stays reachable from history.
+     * @return estimated retained size in bytes
+     */
+    @Override
+    public long estimateFootprint() {
+        return 96 + (long) decorator.getChainDepth() * 48;
     }
     
     /**
@@ -133,6 +201,39 @@ public class UpgradeCommand implements Command {
         return upgradedItem;
     }
     
+    /**
+     * Returns the player this command acts on.
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Returns the gold charged for this upgrade.
+     * @return upgrade cost
+     */
+    public double getUpgradeCost() {
+        return upgradeCost;
+    }
+    
+    /**
+     * Returns the observable this command notifies, if any.
+     * @return the observable, or null
+     */
+    ShopObservable getObservable() {
+        return observable;
+    }
+    
+    /**
+     * Marks the command as executed or not without running it.
+     * Used by CommandHistory when rebuilding commands from compact records.
+     * @param executed the new executed state
+     */
+    void setExecuted(boolean executed) {
+        this.executed = executed;
+    }
+    
     /**
      * Returns whether this command has been executed.
      * @return true if executed, false otherwise
@@ -1,11 +1,18 @@
 package patterns.creational;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import model.*;
 
 /**
  * Singleton shop manager ensuring only one instance exists.
+ *
+ * Safe for concurrent use: the stock lists and the catalog are guarded by
+ * this object's monitor. Stock listeners are notified after the lock is
+ * released, so a listener may call back into the shop from any thread.
  */
 public class ShopManager {
     private static ShopManager instance = null;
@@ -14,15 +21,23 @@ public class ShopManager {
     private final List<Item> availableItems;
     private final List<Item> soldOutItems;
     
+    // Every item ever stocked, indexed by its stable catalog id
+    private final List<Item> catalog;
+    private final Map<Item, Integer> catalogIds;
+    
+    private final List<StockListener> stockListeners = new CopyOnWriteArrayList<>();
+    
     private ShopManager() {
         this.availableItems = new ArrayList<>();
         this.soldOutItems = new ArrayList<>();
+        this.catalog = new ArrayList<>();
+        this.catalogIds = new IdentityHashMap<>();
         
         // Initialize shop with starter items
         initializeShopItems();
     }
     
-    public static ShopManager getInstance() {
+    public static synchronized ShopManager getInstance() {
         if (instance == null) {
             instance = new ShopManager();
             System.out.println("ShopManager instance created for the first time.");
@@ -32,24 +47,113 @@ public class ShopManager {
     
     private void initializeShopItems() {
         // Add starter weapons
-        availableItems.add(new Weapon("Longsword", 500, 25));
-        availableItems.add(new Weapon("Great Axe", 1200, 50));
+        stockItem(new Weapon("Longsword", 500, 25));
+        stockItem(new Weapon("Great Axe", 1200, 50));
         
         // Add starter armor
-        availableItems.add(new Armor("Iron Armor", 800, 20));
-        availableItems.add(new Armor("Steel Plate", 1500, 40));
+        stockItem(new Armor("Iron Armor", 800, 20));
+        stockItem(new Armor("Steel Plate", 1500, 40));
         
         // Add starter potions
-        availableItems.add(new Potion("Health Potion", 50, 100));
-        availableItems.add(new Potion("Greater Health Potion", 150, 300));
+        stockItem(new Potion("Health Potion", 50, 100));
+        stockItem(new Potion("Greater Health Potion", 150, 300));
         
         // Add starter trinkets
-        availableItems.add(new Trinket("Sapphire Gem", 1200, 30));
-        availableItems.add(new Trinket("Emerald Ring", 1500, 50));
+        stockItem(new Trinket("Sapphire Gem", 1200, 30));
+        stockItem(new Trinket("Emerald Ring", 1500, 50));
         
         System.out.println("Shop initialized with " + availableItems.size() + " items.");
     }
     
+    /**
+     * Adds an item to the available list and assigns it a catalog id.
+     * @param item the item to stock
+     */
+    private void stockItem(Item item) {
+        availableItems.add(item);
+        registerItem(item);
+    }
+    
+    /**
+     * Assigns a catalog id to an item the first time the shop sees it.
+     * Ids follow stocking order, so the same startup sequence always
+     * produces the same ids.
+     * @param item the item to register
+     * @return the item's catalog id
+     */
+    private int registerItem(Item item) {
+        Integer id = catalogIds.get(item);
+        if (id == null) {
+            id = catalog.size();
+            catalog.add(item);
+            catalogIds.put(item, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Returns the stable catalog id of an item stocked by this shop.
+     * @param item the item to look up
+     * @return the catalog id, or -1 if the shop has never stocked the item
+     */
+    public synchronized int getItemId(Item item) {
+        Integer id = catalogIds.get(item);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * Returns the item with the given catalog id.
+     * @param id the catalog id
+     * @return the item, or null if no item has that id
+     */
+    public synchronized Item getItemById(int id) {
+        if (id < 0 || id >= catalog.size()) {
+            return null;
+        }
+        return catalog.get(id);
+    }
+    
+    /**
+     * Returns the number of items ever registered in the catalog.
+     * @return catalog size
+     */
+    public synchronized int getCatalogSize() {
+        return catalog.size();
+    }
+    
+    /**
+     * Registers an item in the catalog without stocking it. Used when
+     * restoring a persisted catalog, so ids come back in the same order.
+     * @param item the item to register
+     * @return the item's catalog id
+     */
+    public synchronized int addToCatalog(Item item) {
+        return registerItem(item);
+    }
+    
+    /**
+     * Replaces the available and sold out lists, for example when
+     * restoring persisted stock. Every item is registered in the catalog.
+     * @param available the items to offer, in display order
+     * @param soldOut the items to mark as sold out
+     */
+    public void restoreStock(List<Item> available, List<Item> soldOut) {
+        synchronized (this) {
+            availableItems.clear();
+            soldOutItems.clear();
+            for (Item item : available) {
+                stockItem(item);
+            }
+            for (Item item : soldOut) {
+                soldOutItems.add(item);
+                registerItem(item);
+            }
+        }
+        for (StockListener listener : stockListeners) {
+            listener.onStockReplaced(this);
+        }
+    }
+    
     /**
      * Adds an item to the shop's available inventory.
      * @param item the item to add to the shop
@@ -59,8 +163,11 @@ public class ShopManager {
             System.out.println("Cannot add null item to shop.");
             return;
         }
-        availableItems.add(item);
+        synchronized (this) {
+            stockItem(item);
+        }
         System.out.println("Added " + item.getName() + " to shop inventory.");
+        fireStockChanged(item, true);
     }
     
     /**
@@ -74,9 +181,16 @@ public class ShopManager {
             return;
         }
         
-        if (availableItems.remove(item)) {
-            soldOutItems.add(item);
+        boolean removed;
+        synchronized (this) {
+            removed = availableItems.remove(item);
+            if (removed) {
+                soldOutItems.add(item);
+            }
+        }
+        if (removed) {
             System.out.println(item.getName() + " removed from shop (sold out).");
+            fireStockChanged(item, false);
         } else {
             System.out.println(item.getName() + " is not available in the shop.");
         }
@@ -87,7 +201,7 @@ public class ShopManager {
      * Returns a copy to prevent external modification of the shop's inventory.
      * @return a copy of the available items list
      */
-    public List<Item> getAvailableItems() {
+    public synchronized List<Item> getAvailableItems() {
         return new ArrayList<>(availableItems);
     }
     
@@ -96,7 +210,7 @@ public class ShopManager {
      * Returns a copy to prevent external modification.
      * @return a copy of the sold out items list
      */
-    public List<Item> getSoldOutItems() {
+    public synchronized List<Item> getSoldOutItems() {
         return new ArrayList<>(soldOutItems);
     }
     
@@ -105,7 +219,7 @@ public class ShopManager {
      * @param itemName the name of the item to find
      * @return the item if found, null otherwise
      */
-    public Item findItemByName(String itemName) {
+    public synchronized Item findItemByName(String itemName) {
         if (itemName == null) {
             return null;
         }
@@ -124,7 +238,7 @@ public class ShopManager {
      * @param item the item to check
      * @return true if item is available, false otherwise
      */
-    public boolean isItemAvailable(Item item) {
+    public synchronized boolean isItemAvailable(Item item) {
         if (item == null) {
             return false;
         }
@@ -141,18 +255,47 @@ public class ShopManager {
             return;
         }
         
-        if (soldOutItems.remove(item)) {
-            availableItems.add(item);
+        boolean restocked;
+        synchronized (this) {
+            restocked = soldOutItems.remove(item);
+            if (restocked) {
+                availableItems.add(item);
+            }
+        }
+        if (restocked) {
             System.out.println(item.getName() + " has been restocked.");
+            fireStockChanged(item, true);
         } else {
             System.out.println(item.getName() + " is not in the sold out list.");
         }
     }
     
+    /**
+     * Registers a listener for stock changes.
+     * @param listener the listener to add
+     */
+    public void addStockListener(StockListener listener) {
+        stockListeners.add(listener);
+    }
+    
+    /**
+     * Removes a stock listener.
+     * @param listener the listener to remove
+     */
+    public void removeStockListener(StockListener listener) {
+        stockListeners.remove(listener);
+    }
+    
+    private void fireStockChanged(Item item, boolean available) {
+        for (StockListener listener : stockListeners) {
+            listener.onStockChanged(this, item, available);
+        }
+    }
+    
     /**
      * Prints all available items in the shop in a formatted way.
      */
-    public void printShopInventory() {
+    public synchronized void printShopInventory() {
         System.out.println("\n===== SHOP INVENTORY =====");
         
         if (availableItems.isEmpty()) {
@@ -172,7 +315,7 @@ public class ShopManager {
     /**
      * Prints all sold out items.
      */
-    public void printSoldOutItems() {
+    public synchronized void printSoldOutItems() {
         System.out.println("\n===== SOLD OUT ITEMS =====");
         
         if (soldOutItems.isEmpty()) {
@@ -0,0 +1,26 @@
+package patterns.creational;
+
+import model.Item;
+
+/**
+ * Listener told whenever the shop's stock changes, so observers can follow
+ * purchases, sales and restocks without polling ShopManager.
+ *
+ * Called on the thread making the change.
+ */
+public interface StockListener {
+    /**
+     * Called after a single item went in or out of stock.
+     * @param shop the shop whose stock changed
+     * @param item the affected item
+     * @param available true if the item can now be bought
+     */
+    void onStockChanged(ShopManager shop, Item item, boolean available);
+    
+    /**
+     * Called after the whole stock was replaced at once, e.g. when it is
+     * restored from a snapshot.
+     * @param shop the shop whose stock changed
+     */
+    void onStockReplaced(ShopManager shop);
+}
@@ -8,6 +8,8 @@ import model.Item;
  * Decorator that adds attack bonus to an item.
  */
 public class AttackBoostDecorator extends ItemDecorator {
+    private static final int UPGRADE = UpgradeCatalog.getInstance().require("attack");
+    
     private final int attackBonus;
     
     /**
@@ -26,17 +28,17 @@ public class AttackBoostDecorator extends ItemDecorator {
      */
     @Override
     public String getName() {
-        return wrappedItem.getName() + " (+ATK +" + attackBonus + ")";
+        return wrappedItem.getName() + " (+" + UpgradeCatalog.getInstance().getTag(UPGRADE) + " +" + attackBonus + ")";
     }
     
     /**
      * Returns the price including upgrade cost.
-     * Each +1 attack costs 10 gold.
+     * Priced by the "attack" entry of the upgrade catalog.
      * @return modified price
      */
     @Override
     public double getPrice() {
-        return wrappedItem.getPrice() + (attackBonus * 10);
+        return UpgradeCatalog.getInstance().applyPrice(UPGRADE, wrappedItem.getPrice(), attackBonus);
     }
     
     /**
@@ -46,7 +48,7 @@ public class AttackBoostDecorator extends ItemDecorator {
     @Override
     public Map<String, Integer> getStats() {
         Map<String, Integer> stats = new HashMap<>(wrappedItem.getStats());
-        stats.put("Attack", stats.getOrDefault("Attack", 0) + attackBonus);
+        stats.merge(UpgradeCatalog.getInstance().getStat(UPGRADE), attackBonus, Integer::sum);
         return stats;
     }
     
@@ -59,6 +61,33 @@ public class AttackBoostDecorator extends ItemDecorator {
         return wrappedItem.getDescription() + "\n[UPGRADE] +" + attackBonus + " Attack bonus added";
     }
     
+    /**
+     * Returns the attack bonus this upgrade adds.
+     * @return the attack bonus
+     */
+    public int getAttackBonus() {
+        return attackBonus;
+    }
+    
+    /**
+     * Two upgrades are equal when they wrap equal items with the same bonus,
+     * so a rebuilt upgrade chain matches the instance held in an inventory.
+     * @param o the object to compare
+     * @return true if both decorators are equivalent
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AttackBoostDecorator other = (AttackBoostDecorator) o;
+        return wrappedItem.equals(other.wrappedItem) && attackBonus == other.attackBonus;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * wrappedItem.hashCode() + attackBonus;
+    }
+    
     @Override
     public String toString() {
         Map<String, Integer> stats = getStats();
@@ -9,6 +9,8 @@ import java.util.Map;
  * Part of the Decorator pattern - wraps an item and enhances its defense stat.
  */
 public class DefenseBoostDecorator extends ItemDecorator {
+    private static final int UPGRADE = UpgradeCatalog.getInstance().require("defense");
+    
     private final int defenseBonus;
     
     /**
@@ -27,17 +29,17 @@ public class DefenseBoostDecorator extends ItemDecorator {
      */
     @Override
     public String getName() {
-        return wrappedItem.getName() + " (+DEF +" + defenseBonus + ")";
+        return wrappedItem.getName() + " (+" + UpgradeCatalog.getInstance().getTag(UPGRADE) + " +" + defenseBonus + ")";
     }
     
     /**
      * Returns the price including upgrade cost.
-     * Each +1 defense costs 15 gold.
+     * Priced by the "defense" entry of the upgrade catalog.
      * @return modified price
      */
     @Override
     public double getPrice() {
-        return wrappedItem.getPrice() + (defenseBonus * 15);
+        return UpgradeCatalog.getInstance().applyPrice(UPGRADE, wrappedItem.getPrice(), defenseBonus);
     }
     
     /**
@@ -47,7 +49,7 @@ public class DefenseBoostDecorator extends ItemDecorator {
     @Override
     public Map<String, Integer> getStats() {
         Map<String, Integer> stats = new HashMap<>(wrappedItem.getStats());
-        stats.put("Defense", stats.getOrDefault("Defense", 0) + defenseBonus);
+        stats.merge(UpgradeCatalog.getInstance().getStat(UPGRADE), defenseBonus, Integer::sum);
         return stats;
     }
     
@@ -60,6 +62,30 @@ public class DefenseBoostDecorator extends ItemDecorator {
         return wrappedItem.getDescription() + "\n[UPGRADE] +" + defenseBonus + " Defense bonus added";
     }
     
+    /**
+     * Returns the defense bonus this upgrade adds.
+     * @return the defense bonus
+     */
+    public int getDefenseBonus() {
+        return defenseBonus;
+    }
+    
+    /**
+     * Equal when wrapping an equal item with the same defense bonus.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DefenseBoostDecorator other = (DefenseBoostDecorator) o;
+        return wrappedItem.equals(other.wrappedItem) && defenseBonus == other.defenseBonus;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * wrappedItem.hashCode() + defenseBonus;
+    }
+    
     @Override
     public String toString() {
         Map<String, Integer> stats = getStats();
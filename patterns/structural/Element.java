@@ -0,0 +1,165 @@
+package patterns.structural;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import model.Item;
+
+/**
+ * The elements an item can be enchanted with: one per elemental upgrade in
+ * the upgrade catalog, so a new element is added as catalog data alone.
+ *
+ * Elements are created once, in catalog order, when this class is loaded,
+ * and everything an enchanted item reports about one (stat key, name
+ * suffix, description line) is built then, so reading an enchanted item
+ * never compares or formats strings. There is exactly one instance per
+ * element, so elements compare by identity. Items may carry several
+ * elements; which ones cannot be combined is set by the stacking groups
+ * in the catalog (Fire and Ice by default).
+ */
+public final class Element {
+    private static final Element[] VALUES;
+    private static final Element[] BY_UPGRADE;
+    
+    static {
+        UpgradeCatalog catalog = UpgradeCatalog.getInstance();
+        List<Element> elements = new ArrayList<>();
+        BY_UPGRADE = new Element[catalog.size()];
+        for (int i = 0; i < catalog.size(); i++) {
+            if (catalog.isElemental(i)) {
+                BY_UPGRADE[i] = new Element(catalog, i);
+                elements.add(BY_UPGRADE[i]);
+            }
+        }
+        VALUES = elements.toArray(new Element[0]);
+    }
+    
+    private final String id;
+    private final int upgrade;
+    private final String displayName;
+    private final String statKey;
+    private final String nameSuffix;
+    private final String descriptionSuffix;
+    
+    private Element(UpgradeCatalog catalog, int index) {
+        this.id = catalog.getId(index);
+        this.upgrade = index;
+        this.displayName = catalog.getLabel(index);
+        this.statKey = catalog.getStat(index);
+        this.nameSuffix = " [" + catalog.getTag(index) + "]";
+        this.descriptionSuffix = "\n[ENCHANTMENT] Infused with " + displayName + " damage!";
+    }
+    
+    /**
+     * Returns every element, in catalog order.
+     * @return a new array of the elements
+     */
+    public static Element[] values() {
+        return VALUES.clone();
+    }
+    
+    /**
+     * Finds an element by catalog id or display name, ignoring case.
+     * @param name the element name, e.g. "Fire"
+     * @return the element
+     * @throws IllegalArgumentException if no element has that name
+     */
+    public static Element fromName(String name) {
+        for (Element element : VALUES) {
+            if (element.id.equalsIgnoreCase(name) || element.displayName.equalsIgnoreCase(name)) {
+                return element;
+            }
+        }
+        throw new IllegalArgumentException("Unknown element: " + name);
+    }
+    
+    /**
+     * Finds the element enchanted by a catalog upgrade.
+     * @param upgrade the upgrade number
+     * @return the element, or null if the upgrade is not elemental
+     */
+    public static Element forUpgrade(int upgrade) {
+        return upgrade >= 0 && upgrade < BY_UPGRADE.length ? BY_UPGRADE[upgrade] : null;
+    }
+    
+    /**
+     * Returns the elements an item is already enchanted with.
+     * @param item the item, possibly decorated
+     * @return the elements found anywhere in its decorator chain
+     */
+    public static Set<Element> of(Item item) {
+        Set<Element> elements = new LinkedHashSet<>();
+        Item current = item;
+        while (current instanceof ItemDecorator) {
+            if (current instanceof ElementalDamageDecorator) {
+                elements.add(((ElementalDamageDecorator) current).getElement());
+            }
+            current = ((ItemDecorator) current).getWrappedItem();
+        }
+        return elements;
+    }
+    
+    /**
+     * Checks whether this element may not share an item with another.
+     * An element always conflicts with itself, since it cannot be applied twice.
+     * @param other the other element
+     * @return true if the two cannot be combined
+     */
+    public boolean conflictsWith(Element other) {
+        return other == this || !UpgradeCatalog.getInstance().isStackable((1 << upgrade) | (1 << other.upgrade));
+    }
+    
+    /**
+     * Returns this element's upgrade id in the catalog, e.g. "fire".
+     * @return the upgrade id
+     */
+    public String getId() {
+        return id;
+    }
+    
+    /**
+     * Returns this element's upgrade number in the catalog.
+     * @return the upgrade number
+     */
+    public int getUpgrade() {
+        return upgrade;
+    }
+    
+    /**
+     * Returns the element's display name, e.g. "Fire".
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Returns the stat this element adds damage to, e.g. "FireDamage".
+     * @return the stat key
+     */
+    public String getStatKey() {
+        return statKey;
+    }
+    
+    /**
+     * Returns the text appended to an enchanted item's name, e.g. " [FIRE]".
+     * @return the name suffix
+     */
+    public String getNameSuffix() {
+        return nameSuffix;
+    }
+    
+    /**
+     * Returns the line appended to an enchanted item's description.
+     * @return the description suffix
+     */
+    public String getDescriptionSuffix() {
+        return descriptionSuffix;
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -7,19 +7,37 @@ import java.util.Map;
 /**
  * ElementalDamageDecorator adds elemental damage effects to any item.
  * Part of the Decorator pattern - wraps an item and adds elemental properties.
- * Supports Fire, Ice, and Lightning elements.
+ * Supports every {@link Element} in the upgrade catalog; an item may carry
+ * several, as long as none of them conflict.
  */
 public class ElementalDamageDecorator extends ItemDecorator {
-    private final String elementType;
+    private final Element element;
     
     /**
      * Creates a new ElementalDamageDecorator that adds elemental damage to the item.
      * @param item the item to decorate
+     * @param element the element to infuse
+     * @throws IllegalArgumentException if the item already has this element or a conflicting one
+     */
+    public ElementalDamageDecorator(Item item, Element element) {
+        super(item);
+        for (Element existing : Element.of(item)) {
+            if (existing.conflictsWith(element)) {
+                throw new IllegalArgumentException(element.getDisplayName() + " cannot be combined with "
+                                                   + existing.getDisplayName() + " on " + item.getName());
+            }
+        }
+        this.element = element;
+    }
+    
+    /**
+     * Creates a new ElementalDamageDecorator from an element name.
+     * @param item the item to decorate
      * @param elementType the type of element ("Fire", "Ice", "Lightning")
+     * @throws IllegalArgumentException if the element is unknown or conflicts with the item's
      */
     public ElementalDamageDecorator(Item item, String elementType) {
-        super(item);
-        this.elementType = elementType;
+        this(item, Element.fromName(elementType));
     }
     
     /**
@@ -28,36 +46,30 @@ public class ElementalDamageDecorator extends ItemDecorator {
      */
     @Override
     public String getName() {
-        return wrappedItem.getName() + " [" + elementType.toUpperCase() + "]";
+        return wrappedItem.getName() + element.getNameSuffix();
     }
     
     /**
-     * Returns the price with 50% increase for elemental enchantment.
-     * @return modified price (1.5x original)
+     * Returns the price as set by the element's upgrade catalog entry
+     * (1.5x the original by default).
+     * @return modified price
      */
     @Override
     public double getPrice() {
-        return wrappedItem.getPrice() * 1.5;
+        UpgradeCatalog catalog = UpgradeCatalog.getInstance();
+        int upgrade = element.getUpgrade();
+        return catalog.applyPrice(upgrade, wrappedItem.getPrice(), catalog.getAmount(upgrade));
     }
     
     /**
      * Returns the stats with added elemental damage.
-     * Adds 20 points of the corresponding elemental damage type.
+     * The amount comes from the element's catalog entry (20 by default).
      * @return modified stats map with elemental damage
      */
     @Override
     public Map<String, Integer> getStats() {
         Map<String, Integer> stats = new HashMap<>(wrappedItem.getStats());
-        
-        // Add elemental damage based on type
-        if (elementType.equalsIgnoreCase("Fire")) {
-            stats.put("FireDamage", stats.getOrDefault("FireDamage", 0) + 20);
-        } else if (elementType.equalsIgnoreCase("Ice")) {
-            stats.put("IceDamage", stats.getOrDefault("IceDamage", 0) + 20);
-        } else if (elementType.equalsIgnoreCase("Lightning")) {
-            stats.put("LightningDamage", stats.getOrDefault("LightningDamage", 0) + 20);
-        }
-        
+        stats.merge(element.getStatKey(), UpgradeCatalog.getInstance().getAmount(element.getUpgrade()), Integer::sum);
         return stats;
     }
     
@@ -67,7 +79,39 @@ public class ElementalDamageDecorator extends ItemDecorator {
      */
     @Override
     public String getDescription() {
-        return wrappedItem.getDescription() + "\n[ENCHANTMENT] Infused with " + elementType + " damage!";
+        return wrappedItem.getDescription() + element.getDescriptionSuffix();
+    }
+    
+    /**
+     * Returns the element this enchantment infuses.
+     * @return the element
+     */
+    public Element getElement() {
+        return element;
+    }
+    
+    /**
+     * Returns the name of the element this enchantment infuses.
+     * @return the element's display name, e.g. "Fire"
+     */
+    public String getElementType() {
+        return element.getDisplayName();
+    }
+    
+    /**
+     * Equal when wrapping an equal item with the same element.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ElementalDamageDecorator other = (ElementalDamageDecorator) o;
+        return wrappedItem.equals(other.wrappedItem) && element == other.element;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * wrappedItem.hashCode() + element.getUpgrade();
     }
     
     @Override
@@ -9,6 +9,8 @@ import model.Item;
  * Part of the Decorator pattern - wraps an item and enhances its health stat.
  */
 public class HealthBoostDecorator extends ItemDecorator {
+    private static final int UPGRADE = UpgradeCatalog.getInstance().require("health");
+    
     private final int healthBonus;
     
     /**
@@ -27,17 +29,17 @@ public class HealthBoostDecorator extends ItemDecorator {
      */
     @Override
     public String getName() {
-        return wrappedItem.getName() + " (+HP +" + healthBonus + ")";
+        return wrappedItem.getName() + " (+" + UpgradeCatalog.getInstance().getTag(UPGRADE) + " +" + healthBonus + ")";
     }
     
     /**
      * Returns the price including upgrade cost.
-     * Each +1 health costs 2 gold.
+     * Priced by the "health" entry of the upgrade catalog.
      * @return modified price
      */
     @Override
     public double getPrice() {
-        return wrappedItem.getPrice() + (healthBonus * 2);
+        return UpgradeCatalog.getInstance().applyPrice(UPGRADE, wrappedItem.getPrice(), healthBonus);
     }
     
     /**
@@ -47,7 +49,7 @@ public class HealthBoostDecorator extends ItemDecorator {
     @Override
     public Map<String, Integer> getStats() {
         Map<String, Integer> stats = new HashMap<>(wrappedItem.getStats());
-        stats.put("Health", stats.getOrDefault("Health", 0) + healthBonus);
+        stats.merge(UpgradeCatalog.getInstance().getStat(UPGRADE), healthBonus, Integer::sum);
         return stats;
     }
     
@@ -60,6 +62,30 @@ public class HealthBoostDecorator extends ItemDecorator {
         return wrappedItem.getDescription() + "\n[UPGRADE] +" + healthBonus + " Health bonus added";
     }
     
+    /**
+     * Returns the health bonus this upgrade adds.
+     * @return the health bonus
+     */
+    public int getHealthBonus() {
+        return healthBonus;
+    }
+    
+    /**
+     * Equal when wrapping an equal item with the same health bonus.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HealthBoostDecorator other = (HealthBoostDecorator) o;
+        return wrappedItem.equals(other.wrappedItem) && healthBonus == other.healthBonus;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * wrappedItem.hashCode() + healthBonus;
+    }
+    
     @Override
     public String toString() {
         Map<String, Integer> stats = getStats();
@@ -14,6 +14,29 @@ public abstract class ItemDecorator implements Item {
         this.wrappedItem = item;
     }
     
+    /**
+     * Returns the item wrapped by this decorator.
+     * @return the wrapped item (may itself be a decorator)
+     */
+    public Item getWrappedItem() {
+        return wrappedItem;
+    }
+    
+    /**
+     * Returns how many decorators are stacked on top of the base item,
+     * including this one.
+     * @return the decorator chain depth (at least 1)
+     */
+    public int getChainDepth() {
+        int depth = 1;
+        Item current = wrappedItem;
+        while (current instanceof ItemDecorator) {
+            depth++;
+            current = ((ItemDecorator) current).wrappedItem;
+        }
+        return depth;
+    }
+    
     /**
      * Returns the name of the wrapped item.
      * Subclasses can override to modify the name.
@@ -0,0 +1,354 @@
+package patterns.structural;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Singleton catalog of the upgrades that can be applied to items.
+ *
+ * The catalog is read once from {@code upgrades.properties} (next to this
+ * class, or the file named by the {@code shop.upgrades} system property)
+ * and compiled into parallel primitive tables indexed by upgrade number,
+ * in stacking order. The decorators price themselves from these tables,
+ * and the preview engine and the UI read amounts, costs and stacking
+ * rules from them, so every lookup is an array access. Without the
+ * resource on the classpath the built-in defaults, the same data, are used.
+ *
+ * A set of upgrades is a bit mask with bit i standing for upgrade i.
+ */
+public class UpgradeCatalog {
+    public static final String KIND_BOOST = "boost";
+    public static final String KIND_ELEMENTAL = "elemental";
+    public static final int MAX_UPGRADES = 16;
+    
+    private static final String RESOURCE = "upgrades.properties";
+    private static final String PATH_PROPERTY = "shop.upgrades";
+    private static final String[] BOOST_IDS = {"attack", "defense", "health"};
+    
+    private static UpgradeCatalog instance = null;
+    
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final String[] ids;
+    private final String[] labels;
+    private final String[] tags;
+    private final String[] stats;
+    private final boolean[] elemental;
+    private final int[] amounts;
+    private final double[] costs;
+    private final double[] priceFactors;
+    private final double[] pricePerPoint;
+    private final int[] exclusions; // Per upgrade, the mask of upgrades it cannot stack with
+    private final int boostMask;
+    private final int elementalMask;
+    
+    /**
+     * Compiles a catalog from its properties.
+     * @param properties the catalog definition
+     * @throws IllegalArgumentException if the definition is incomplete or invalid
+     */
+    public UpgradeCatalog(Properties properties) {
+        String order = properties.getProperty("order", "").trim();
+        if (order.isEmpty()) {
+            throw new IllegalArgumentException("Upgrade catalog has no 'order' entry");
+        }
+        String[] names = order.split("\\s*,\\s*");
+        if (names.length > MAX_UPGRADES) {
+            throw new IllegalArgumentException("Upgrade catalog has more than " + MAX_UPGRADES + " upgrades");
+        }
+        
+        int size = names.length;
+        ids = new String[size];
+        labels = new String[size];
+        tags = new String[size];
+        stats = new String[size];
+        elemental = new boolean[size];
+        amounts = new int[size];
+        costs = new double[size];
+        priceFactors = new double[size];
+        pricePerPoint = new double[size];
+        exclusions = new int[size];
+        
+        Map<String, Integer> groups = new HashMap<>();
+        int[] groupOf = new int[size];
+        int boosts = 0;
+        int elementals = 0;
+        
+        for (int i = 0; i < size; i++) {
+            String id = names[i];
+            if (indexById.put(id.toLowerCase(), i) != null) {
+                throw new IllegalArgumentException("Upgrade listed twice: " + id);
+            }
+            ids[i] = id;
+            labels[i] = required(properties, id, "label");
+            tags[i] = required(properties, id, "tag");
+            stats[i] = required(properties, id, "stat");
+            amounts[i] = Integer.parseInt(required(properties, id, "amount"));
+            costs[i] = Double.parseDouble(required(properties, id, "cost"));
+            priceFactors[i] = Double.parseDouble(properties.getProperty(id + ".price.factor", "1"));
+            pricePerPoint[i] = Double.parseDouble(properties.getProperty(id + ".price.perPoint", "0"));
+            
+            String kind = required(properties, id, "kind");
+            if (kind.equals(KIND_ELEMENTAL)) {
+                elemental[i] = true;
+                elementals |= 1 << i;
+            } else if (kind.equals(KIND_BOOST) && contains(BOOST_IDS, id)) {
+                boosts |= 1 << i;
+            } else {
+                throw new IllegalArgumentException("Upgrade " + id + " has unsupported kind: " + kind);
+            }
+            
+            String group = properties.getProperty(id + ".group", "").trim();
+            groupOf[i] = group.isEmpty() ? -1 : groups.computeIfAbsent(group, g -> groups.size());
+        }
+        
+        // Every boost decorator needs its entry
+        for (String id : BOOST_IDS) {
+            if (!indexById.containsKey(id)) {
+                throw new IllegalArgumentException("Upgrade catalog is missing the " + id + " upgrade");
+            }
+        }
+        
+        // Upgrades sharing a group exclude each other
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i != j && groupOf[i] >= 0 && groupOf[i] == groupOf[j]) {
+                    exclusions[i] |= 1 << j;
+                }
+            }
+        }
+        this.boostMask = boosts;
+        this.elementalMask = elementals;
+    }
+    
+    /**
+     * Returns the catalog, loading it on first use.
+     * @return the shared catalog
+     * @throws IllegalStateException if the shop.upgrades file cannot be read
+     */
+    public static synchronized UpgradeCatalog getInstance() {
+        if (instance == null) {
+            instance = new UpgradeCatalog(loadProperties());
+            System.out.println("Upgrade catalog loaded with " + instance.size() + " upgrades.");
+        }
+        return instance;
+    }
+    
+    private static Properties loadProperties() {
+        Properties properties = new Properties();
+        String path = System.getProperty(PATH_PROPERTY);
+        try {
+            if (path != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            } else {
+                try (InputStream in = UpgradeCatalog.class.getResourceAsStream(RESOURCE)) {
+                    if (in == null) {
+                        // e.g. classes compiled with plain javac, which does not copy resources
+                        System.out.println("Upgrade catalog resource not found, using built-in upgrades.");
+                        return builtInProperties();
+                    }
+                    properties.load(in);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read upgrade catalog: " + e.getMessage(), e);
+        }
+        return properties;
+    }
+    
+    /**
+     * Returns the default catalog, the same data upgrades.properties ships with.
+     * @return the built-in catalog definition
+     */
+    static Properties builtInProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("order", "attack,defense,health,fire,ice,lightning");
+        define(properties, "attack", KIND_BOOST, "Attack Boost", "ATK", "Attack", 15, 300, 1, 10, null);
+        define(properties, "defense", KIND_BOOST, "Defense Boost", "DEF", "Defense", 20, 400, 1, 15, null);
+        define(properties, "health", KIND_BOOST, "Health Boost", "HP", "Health", 50, 200, 1, 2, null);
+        define(properties, "fire", KIND_ELEMENTAL, "Fire", "FIRE", "FireDamage", 20, 500, 1.5, 0, "temperature");
+        define(properties, "ice", KIND_ELEMENTAL, "Ice", "ICE", "IceDamage", 20, 500, 1.5, 0, "temperature");
+        define(properties, "lightning", KIND_ELEMENTAL, "Lightning", "LIGHTNING", "LightningDamage",
+               20, 500, 1.5, 0, null);
+        return properties;
+    }
+    
+    private static void define(Properties properties, String id, String kind, String label, String tag,
+                               String stat, int amount, double cost, double factor, double perPoint,
+                               String group) {
+        properties.setProperty(id + ".kind", kind);
+        properties.setProperty(id + ".label", label);
+        properties.setProperty(id + ".tag", tag);
+        properties.setProperty(id + ".stat", stat);
+        properties.setProperty(id + ".amount", String.valueOf(amount));
+        properties.setProperty(id + ".cost", String.valueOf(cost));
+        properties.setProperty(id + ".price.factor", String.valueOf(factor));
+        properties.setProperty(id + ".price.perPoint", String.valueOf(perPoint));
+        if (group != null) {
+            properties.setProperty(id + ".group", group);
+        }
+    }
+    
+    private static String required(Properties properties, String id, String field) {
+        String value = properties.getProperty(id + "." + field);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Upgrade " + id + " has no " + field);
+        }
+        return value.trim();
+    }
+    
+    private static boolean contains(String[] ids, String id) {
+        for (String known : ids) {
+            if (known.equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the number of upgrades.
+     * @return the catalog size
+     */
+    public int size() {
+        return ids.length;
+    }
+    
+    /**
+     * Finds an upgrade by id.
+     * @param id the upgrade id (case-insensitive)
+     * @return the upgrade number, or -1 if unknown
+     */
+    public int indexOf(String id) {
+        Integer index = indexById.get(id.toLowerCase());
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * Finds an upgrade by id, failing if it is not in the catalog.
+     * @param id the upgrade id (case-insensitive)
+     * @return the upgrade number
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public int require(String id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown upgrade: " + id);
+        }
+        return index;
+    }
+    
+    /**
+     * Returns an upgrade's id, e.g. "attack".
+     * @param upgrade the upgrade number
+     * @return the id
+     */
+    public String getId(int upgrade) {
+        return ids[upgrade];
+    }
+    
+    /**
+     * Returns an upgrade's display name.
+     * @param upgrade the upgrade number
+     * @return the label
+     */
+    public String getLabel(int upgrade) {
+        return labels[upgrade];
+    }
+    
+    /**
+     * Returns the short name added to upgraded item names.
+     * @param upgrade the upgrade number
+     * @return the tag
+     */
+    public String getTag(int upgrade) {
+        return tags[upgrade];
+    }
+    
+    /**
+     * Returns the stat an upgrade raises.
+     * @param upgrade the upgrade number
+     * @return the stat name
+     */
+    public String getStat(int upgrade) {
+        return stats[upgrade];
+    }
+    
+    /**
+     * Returns how much an upgrade raises its stat.
+     * @param upgrade the upgrade number
+     * @return the stat delta
+     */
+    public int getAmount(int upgrade) {
+        return amounts[upgrade];
+    }
+    
+    /**
+     * Returns the gold paid to apply an upgrade.
+     * @param upgrade the upgrade number
+     * @return the cost
+     */
+    public double getCost(int upgrade) {
+        return costs[upgrade];
+    }
+    
+    /**
+     * Checks whether an upgrade is an elemental enchantment.
+     * @param upgrade the upgrade number
+     * @return true for elemental upgrades
+     */
+    public boolean isElemental(int upgrade) {
+        return elemental[upgrade];
+    }
+    
+    /**
+     * Returns the mask of the attack, defense and health boosts.
+     * @return the boost mask
+     */
+    public int getBoostMask() {
+        return boostMask;
+    }
+    
+    /**
+     * Returns the mask of the elemental enchantments.
+     * @return the elemental mask
+     */
+    public int getElementalMask() {
+        return elementalMask;
+    }
+    
+    /**
+     * Applies an upgrade's pricing to an item value.
+     * @param upgrade the upgrade number
+     * @param price the value before the upgrade
+     * @param amount the stat amount actually added
+     * @return the value after the upgrade
+     */
+    public double applyPrice(int upgrade, double price, int amount) {
+        return price * priceFactors[upgrade] + amount * pricePerPoint[upgrade];
+    }
+    
+    /**
+     * Checks a set of upgrades against the stacking rules.
+     * @param upgrades the upgrade mask
+     * @return true if no two upgrades in the set exclude each other
+     */
+    public boolean isStackable(int upgrades) {
+        for (int i = 0; i < ids.length; i++) {
+            if ((upgrades & (1 << i)) != 0 && (upgrades & exclusions[i]) != 0) {
+                return false;
+            }
+        }
+        return (upgrades & ~((1 << ids.length) - 1)) == 0;
+    }
+}
@@ -0,0 +1,231 @@
+package patterns.structural;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import model.Item;
+
+/**
+ * Computes what an item would become under each combination of catalog
+ * upgrades, without building decorator chains.
+ *
+ * Upgrade sets are UpgradeCatalog bit masks. The first preview requested
+ * for an item fills a table with one entry per stackable combination,
+ * each derived from the combination without its last upgrade in stacking
+ * order, exactly as the decorators stack. Results are cached per item, so
+ * toggling upgrades afterwards is a table lookup. A decorator chain is
+ * only built by {@link #build} when the upgrade is actually committed.
+ *
+ * Large catalogs are filled on demand instead of up front.
+ */
+public class UpgradePreviewEngine {
+    private static final int PRECOMPUTE_LIMIT = 1 << 8;
+    
+    private final UpgradeCatalog catalog;
+    private final Map<Item, Preview[]> cache = new WeakHashMap<>();
+    
+    /**
+     * The result of applying one combination of upgrades to an item.
+     */
+    public static final class Preview {
+        private final String name;
+        private final double price;
+        private final Map<String, Integer> stats;
+        private final double upgradeCost;
+        
+        private Preview(String name, double price, Map<String, Integer> stats, double upgradeCost) {
+            this.name = name;
+            this.price = price;
+            this.stats = Collections.unmodifiableMap(stats);
+            this.upgradeCost = upgradeCost;
+        }
+        
+        /**
+         * Returns the upgraded item's name.
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Returns the upgraded item's price.
+         * @return the price
+         */
+        public double getPrice() {
+            return price;
+        }
+        
+        /**
+         * Returns the upgraded item's stats.
+         * @return an unmodifiable stats map
+         */
+        public Map<String, Integer> getStats() {
+            return stats;
+        }
+        
+        /**
+         * Returns the gold the player pays for this combination.
+         * @return the upgrade cost, 0 when no upgrade is selected
+         */
+        public double getUpgradeCost() {
+            return upgradeCost;
+        }
+    }
+    
+    /**
+     * Creates a preview engine over the shared upgrade catalog.
+     */
+    public UpgradePreviewEngine() {
+        this(UpgradeCatalog.getInstance());
+    }
+    
+    /**
+     * Creates a preview engine over a specific upgrade catalog.
+     * @param catalog the catalog defining the upgrades
+     */
+    public UpgradePreviewEngine(UpgradeCatalog catalog) {
+        this.catalog = catalog;
+    }
+    
+    /**
+     * Returns the catalog the previews are computed from.
+     * @return the upgrade catalog
+     */
+    public UpgradeCatalog getCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Returns the preview for an item under a combination of upgrades.
+     * @param item the item to upgrade
+     * @param upgrades the upgrade mask
+     * @return the preview
+     * @throws IllegalArgumentException if the upgrades cannot be stacked
+     */
+    public synchronized Preview preview(Item item, int upgrades) {
+        if (!catalog.isStackable(upgrades)) {
+            throw new IllegalArgumentException("Upgrades cannot be combined: " + describe(upgrades));
+        }
+        Preview[] previews = cache.get(item);
+        if (previews == null) {
+            previews = new Preview[1 << catalog.size()];
+            previews[0] = new Preview(item.getName(), item.getPrice(), new HashMap<>(item.getStats()), 0);
+            if (previews.length <= PRECOMPUTE_LIMIT) {
+                for (int mask = 1; mask < previews.length; mask++) {
+                    if (catalog.isStackable(mask)) {
+                        compute(previews, mask);
+                    }
+                }
+            }
+            cache.put(item, previews);
+        }
+        return compute(previews, upgrades);
+    }
+    
+    /**
+     * Builds the decorator chain for a combination of upgrades, stacking
+     * them in catalog order.
+     * @param item the item to upgrade
+     * @param upgrades the upgrade mask
+     * @return the outermost decorator, or null if no upgrade is selected
+     * @throws IllegalArgumentException if the upgrades cannot be stacked
+     */
+    public ItemDecorator build(Item item, int upgrades) {
+        if (!catalog.isStackable(upgrades)) {
+            throw new IllegalArgumentException("Upgrades cannot be combined: " + describe(upgrades));
+        }
+        Item result = item;
+        for (int i = 0; i < catalog.size(); i++) {
+            if ((upgrades & (1 << i)) == 0) {
+                continue;
+            }
+            int amount = catalog.getAmount(i);
+            switch (catalog.getId(i)) {
+                case "attack":
+                    result = new AttackBoostDecorator(result, amount);
+                    break;
+                case "defense":
+                    result = new DefenseBoostDecorator(result, amount);
+                    break;
+                case "health":
+                    result = new HealthBoostDecorator(result, amount);
+                    break;
+                default:
+                    // The catalog only admits the three boosts above, so this is an element
+                    result = new ElementalDamageDecorator(result, Element.forUpgrade(i));
+                    break;
+            }
+        }
+        return result == item ? null : (ItemDecorator) result;
+    }
+    
+    /**
+     * Checks whether a combination may be applied to an item: the
+     * upgrades must stack, and no enchantment may repeat or conflict with
+     * an element the item already has.
+     * @param item the item to upgrade, possibly already enchanted
+     * @param upgrades the upgrade mask
+     * @return true if {@link #build} would accept the combination
+     */
+    public boolean isAllowed(Item item, int upgrades) {
+        if (!catalog.isStackable(upgrades)) {
+            return false;
+        }
+        for (Element existing : Element.of(item)) {
+            for (Element element : Element.values()) {
+                if ((upgrades & (1 << element.getUpgrade())) != 0 && existing.conflictsWith(element)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the number of items with cached previews.
+     * @return the cache size
+     */
+    public synchronized int getCachedItemCount() {
+        return cache.size();
+    }
+    
+    /**
+     * Returns a table entry, deriving it from the combination without
+     * the last upgrade in stacking order if it is not there yet.
+     * @param previews the item's table
+     * @param upgrades the upgrade mask
+     * @return the preview
+     */
+    private Preview compute(Preview[] previews, int upgrades) {
+        Preview preview = previews[upgrades];
+        if (preview != null) {
+            return preview;
+        }
+        
+        int last = 31 - Integer.numberOfLeadingZeros(upgrades);
+        Preview from = compute(previews, upgrades & ~(1 << last));
+        int amount = catalog.getAmount(last);
+        Map<String, Integer> stats = new HashMap<>(from.stats);
+        stats.merge(catalog.getStat(last), amount, Integer::sum);
+        String name = catalog.isElemental(last)
+            ? from.name + " [" + catalog.getTag(last) + "]"
+            : from.name + " (+" + catalog.getTag(last) + " +" + amount + ")";
+        
+        preview = new Preview(name, catalog.applyPrice(last, from.price, amount), stats,
+                              from.upgradeCost + catalog.getCost(last));
+        previews[upgrades] = preview;
+        return preview;
+    }
+    
+    private String describe(int upgrades) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < catalog.size(); i++) {
+            if ((upgrades & (1 << i)) != 0) {
+                sb.append(sb.length() > 0 ? ", " : "").append(catalog.getId(i));
+            }
+        }
+        return sb.toString();
+    }
+}
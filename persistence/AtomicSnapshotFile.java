@@ -0,0 +1,331 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-consistent snapshot files.
+ *
+ * A snapshot is never written in place. The payload goes to a temp file
+ * next to the target, split into blocks that each carry a CRC32C, and the
+ * temp file is fsynced before it is renamed over the target. The copy it
+ * replaces is first renamed to a ".bak" file, so a crash at any point
+ * leaves the new or the previous snapshot intact, and {@link #read} falls
+ * back to the previous copy when the target is missing or fails its
+ * checksums.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   u32 magic | u8 version | u32 blockSize
+ *   { u32 length | u32 crc32c(data) | data } *     every block but the last is full
+ *   u32 0 | u64 payloadLength                       end marker
+ * </pre>
+ */
+public final class AtomicSnapshotFile {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    private static final int MAGIC = 0x4C434B53; // "LCKS"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 4;
+    private static final int BLOCK_OVERHEAD = 8; // length + crc
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PREVIOUS_SUFFIX = ".bak";
+    
+    private AtomicSnapshotFile() {
+    }
+    
+    /**
+     * Streams a payload into a temp file and swaps it in on commit.
+     * Closing without committing discards the temp file and leaves the
+     * current snapshot untouched.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer block;
+        private final CRC32C crc = new CRC32C();
+        private long payloadLength;
+        private boolean committed;
+        
+        private Writer(Path target, int blockSize) throws IOException {
+            this.target = target;
+            this.temp = siblingOf(target, TEMP_SUFFIX);
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.block = ByteBuffer.allocate(BLOCK_OVERHEAD + blockSize);
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.put(VERSION);
+            header.putInt(blockSize);
+            header.flip();
+            writeFully(header);
+            block.position(BLOCK_OVERHEAD);
+        }
+        
+        /**
+         * Appends the remaining bytes of a buffer to the payload.
+         * @param data the bytes to append; its position is advanced to its limit
+         * @throws IOException if the temp file cannot be written
+         */
+        public void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                int n = Math.min(data.remaining(), block.remaining());
+                block.put(block.position(), data, data.position(), n);
+                block.position(block.position() + n);
+                data.position(data.position() + n);
+                payloadLength += n;
+                if (!block.hasRemaining()) {
+                    writeBlock();
+                }
+            }
+        }
+        
+        /**
+         * Makes the payload durable and atomically replaces the target with
+         * it, keeping the replaced copy as the fallback.
+         * @throws IOException if the snapshot cannot be committed
+         */
+        public void commit() throws IOException {
+            writeBlock();
+            ByteBuffer end = ByteBuffer.allocate(4 + 8);
+            end.putInt(0);
+            end.putLong(payloadLength);
+            end.flip();
+            writeFully(end);
+            channel.force(true);
+            channel.close();
+            
+            if (Files.exists(target)) {
+                Files.move(target, siblingOf(target, PREVIOUS_SUFFIX),
+                           StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.toAbsolutePath().getParent());
+            committed = true;
+        }
+        
+        /**
+         * Returns the number of payload bytes written so far.
+         * @return payload length
+         */
+        public long getPayloadLength() {
+            return payloadLength;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        
+        private void writeBlock() throws IOException {
+            int length = block.position() - BLOCK_OVERHEAD;
+            if (length == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(block.array(), BLOCK_OVERHEAD, length);
+            block.putInt(0, length);
+            block.putInt(4, (int) crc.getValue());
+            block.flip();
+            writeFully(block);
+            block.clear();
+            block.position(BLOCK_OVERHEAD);
+        }
+        
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+    
+    /**
+     * Starts writing a new snapshot for a target file.
+     * @param target the snapshot file to replace on commit
+     * @return the writer
+     * @throws IOException if the temp file cannot be created
+     */
+    public static Writer open(Path target) throws IOException {
+        return new Writer(target, DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Writes a whole payload as a snapshot in one call.
+     * @param target the snapshot file to replace
+     * @param payload the bytes to store
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(Path target, ByteBuffer payload) throws IOException {
+        try (Writer writer = open(target)) {
+            writer.write(payload);
+            writer.commit();
+        }
+    }
+    
+    /**
+     * Reads and verifies a snapshot, falling back to the previous copy if
+     * the target is missing or damaged.
+     * @param target the snapshot file
+     * @return the payload
+     * @throws IOException if neither copy can be read and verified
+     */
+    public static ByteBuffer read(Path target) throws IOException {
+        return read(target, false);
+    }
+    
+    /**
+     * Reads and verifies a snapshot like {@link #read(Path)}, optionally
+     * accepting a file written before checksums were added.
+     * @param target the snapshot file
+     * @param acceptLegacy true to return unchecksummed contents as they are
+     * @return the payload
+     * @throws IOException if neither copy can be read and verified
+     */
+    public static ByteBuffer read(Path target, boolean acceptLegacy) throws IOException {
+        IOException failure = null;
+        for (Path file : new Path[] {target, siblingOf(target, PREVIOUS_SUFFIX)}) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try {
+                ByteBuffer contents = readFully(file);
+                if (acceptLegacy && !isChecksummed(contents)) {
+                    return contents;
+                }
+                return unwrap(contents, file);
+            } catch (IOException e) {
+                System.out.println("[Snapshot] " + e.getMessage() + ", trying the previous copy");
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new NoSuchFileException(target.toString());
+    }
+    
+    /**
+     * Checks whether file contents start with the checksummed snapshot header.
+     * @param contents the file contents, positioned at the start
+     * @return true if the contents are a checksummed snapshot
+     */
+    public static boolean isChecksummed(ByteBuffer contents) {
+        return contents.remaining() >= HEADER_SIZE && contents.getInt(contents.position()) == MAGIC;
+    }
+    
+    /**
+     * Verifies every block of a checksummed snapshot and returns its payload.
+     * @param contents the whole file contents, positioned at the start
+     * @param file the file the contents came from, for error messages
+     * @return the payload
+     * @throws IOException if the contents are not a snapshot, are truncated or fail a checksum
+     */
+    public static ByteBuffer unwrap(ByteBuffer contents, Path file) throws IOException {
+        if (!isChecksummed(contents)) {
+            throw new IOException("Not a checksummed snapshot: " + file);
+        }
+        contents.getInt();
+        if (contents.get() != VERSION) {
+            throw new IOException("Unsupported snapshot version in " + file);
+        }
+        int blockSize = contents.getInt();
+        
+        CRC32C crc = new CRC32C();
+        List<ByteBuffer> blocks = new ArrayList<>();
+        long total = 0;
+        while (true) {
+            if (contents.remaining() < 4) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            int length = contents.getInt();
+            if (length == 0) {
+                if (contents.remaining() < 8 || contents.getLong() != total) {
+                    throw new IOException("Truncated snapshot: " + file);
+                }
+                break;
+            }
+            if (length < 0 || length > blockSize || contents.remaining() < 4 + length) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            int expected = contents.getInt();
+            ByteBuffer data = contents.slice(contents.position(), length);
+            crc.reset();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != expected) {
+                throw new IOException("Checksum mismatch in block " + blocks.size() + " of " + file);
+            }
+            blocks.add(data);
+            total += length;
+            contents.position(contents.position() + length);
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + file);
+        }
+        
+        ByteBuffer payload = ByteBuffer.allocate((int) total);
+        for (ByteBuffer data : blocks) {
+            payload.put(data);
+        }
+        return payload.flip();
+    }
+    
+    /**
+     * Deletes a snapshot together with its previous copy and any temp file.
+     * @param target the snapshot file
+     * @throws IOException if a file cannot be deleted
+     */
+    public static void delete(Path target) throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(siblingOf(target, PREVIOUS_SUFFIX));
+        Files.deleteIfExists(siblingOf(target, TEMP_SUFFIX));
+    }
+    
+    /**
+     * Reads a whole file into a heap buffer.
+     * @param file the file to read
+     * @return the contents, positioned at the start
+     * @throws IOException if the file cannot be read
+     */
+    public static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file
+            }
+            return buffer.flip();
+        }
+    }
+    
+    /**
+     * Forces a directory entry change (a rename) to disk. Not every
+     * platform can open a directory, so failures are ignored.
+     * @param directory the directory to sync
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort: the rename itself is still atomic
+        }
+    }
+    
+    private static Path siblingOf(Path target, String suffix) {
+        return target.resolveSibling(target.getFileName() + suffix);
+    }
+}
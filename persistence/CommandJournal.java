@@ -0,0 +1,512 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import model.Player;
+import patterns.behavioral.Command;
+import patterns.behavioral.CommandLog;
+import patterns.creational.ShopManager;
+
+/**
+ * Append-only write-ahead journal of player commands.
+ *
+ * Set as a CommandHistory's CommandLog, it records every execute, undo and
+ * redo as a {@link JournalRecord} before the history accepts the change; a
+ * command it cannot encode, or any append after a write failure, is
+ * refused, so the history rolls that change back. Each record is framed as
+ * {@code u32 length | body | u32 crc32(body)} and written through a
+ * FileChannel.
+ *
+ * Appends use group commit: callers queue their record and wait, while a
+ * single writer thread drains everything queued so far with one gathering
+ * write and one fsync. Under load one fsync covers many commands, so the
+ * per-command cost stays small.
+ *
+ * The journal is split into segment files named after the first sequence
+ * number they hold. Once a snapshot covers every record in a segment, the
+ * segment can be deleted with {@link #compact(long)}, and replay can skip
+ * straight to the segments after the snapshot.
+ */
+public class CommandJournal implements CommandLog, AutoCloseable {
+    public static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+    
+    private static final int FRAME_OVERHEAD = 8; // length + crc
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    
+    private final Path directory;
+    private final ShopManager shop;
+    private final long maxSegmentBytes;
+    private final Thread writer;
+    
+    // Guarded by lock
+    private final Object lock = new Object();
+    private final TreeMap<Long, Path> segments; // first seq -> file
+    private FileChannel channel;
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long lastSeq;
+    private long durableSeq;
+    private boolean closed;
+    private IOException failure;
+    
+    private CommandJournal(Path directory, ShopManager shop, long maxSegmentBytes,
+                           TreeMap<Long, Path> segments, FileChannel channel, long lastSeq) {
+        this.directory = directory;
+        this.shop = shop;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.segments = segments;
+        this.channel = channel;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+    }
+    
+    /**
+     * Opens (or creates) a journal directory with the default segment size.
+     * @param directory the directory holding the segment files
+     * @param shop the shop whose catalog identifies items
+     * @return the open journal
+     * @throws IOException if the journal cannot be opened
+     */
+    public static CommandJournal open(Path directory, ShopManager shop) throws IOException {
+        return open(directory, shop, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    /**
+     * Opens (or creates) a journal directory. A torn record left by a crash
+     * at the end of the newest segment is truncated away.
+     * @param directory the directory holding the segment files
+     * @param shop the shop whose catalog identifies items
+     * @param maxSegmentBytes size after which the writer starts a new segment
+     * @return the open journal
+     * @throws IOException if the journal cannot be opened
+     */
+    public static CommandJournal open(Path directory, ShopManager shop, long maxSegmentBytes)
+            throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = listSegments(directory);
+        
+        long lastSeq = 0;
+        FileChannel channel;
+        if (segments.isEmpty()) {
+            channel = openSegment(directory, segments, 1);
+        } else {
+            Path newest = segments.lastEntry().getValue();
+            channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            
+            // Find the end of the last intact record and the highest sequence number
+            long[] scan = new long[2]; // {validLength, lastSeq}
+            forEachRecord(channel, record -> { }, scan);
+            if (scan[0] < channel.size()) {
+                System.out.println("[Journal] Truncating torn tail of " + newest.getFileName() + " at byte " + scan[0]);
+                channel.truncate(scan[0]);
+            }
+            channel.position(scan[0]);
+            lastSeq = scan[0] > 0 ? scan[1] : segments.lastKey() - 1;
+        }
+        
+        CommandJournal journal = new CommandJournal(directory, shop, maxSegmentBytes, segments, channel, lastSeq);
+        journal.writer.start();
+        return journal;
+    }
+    
+    /**
+     * Replays every journaled operation for a player, restoring the state
+     * the player had when the journal was last written.
+     * @param player the player to restore (matched by name)
+     * @return the number of records applied
+     * @throws IOException if the journal cannot be read
+     */
+    public int replay(Player player) throws IOException {
+        return replay(player, 0);
+    }
+    
+    /**
+     * Replays journaled operations for a player with a sequence number above
+     * the given one. Segments that end at or before that sequence number are
+     * not read at all.
+     * @param player the player to restore (matched by name)
+     * @param afterSeq only records with a greater sequence number are applied
+     * @return the number of records applied
+     * @throws IOException if the journal cannot be read
+     */
+    public int replay(Player player, long afterSeq) throws IOException {
+        List<Path> files;
+        synchronized (lock) {
+            // Start from the segment containing afterSeq + 1
+            Long first = segments.floorKey(afterSeq + 1);
+            files = new ArrayList<>(first != null ? segments.tailMap(first).values() : segments.values());
+        }
+        
+        int[] applied = new int[1];
+        for (Path file : files) {
+            try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ)) {
+                forEachRecord(segment, record -> {
+                    if (record.getSeq() > afterSeq && record.getPlayerName().equals(player.getName())) {
+                        if (record.applyTo(player, shop)) {
+                            applied[0]++;
+                        } else {
+                            System.out.println("[Journal] Skipped unresolvable record #" + record.getSeq());
+                        }
+                    }
+                }, new long[2]);
+            }
+        }
+        System.out.println("[Journal] Replayed " + applied[0] + " operations for " + player.getName()
+                           + " from " + files.size() + " segment(s)");
+        return applied[0];
+    }
+    
+    /**
+     * Deletes segments whose records are all covered by a snapshot.
+     * The active segment is never deleted.
+     * @param coveredSeq every record up to and including this sequence
+     *                   number is covered by a snapshot
+     * @return the number of segments deleted
+     * @throws IOException if a segment cannot be deleted
+     */
+    public int compact(long coveredSeq) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (lock) {
+            // A segment is covered when the next segment starts at or before coveredSeq + 1
+            Long next = segments.higherKey(segments.firstKey());
+            while (next != null && next <= coveredSeq + 1) {
+                obsolete.add(segments.pollFirstEntry().getValue());
+                next = segments.higherKey(segments.firstKey());
+            }
+        }
+        
+        for (Path file : obsolete) {
+            Files.deleteIfExists(file);
+        }
+        if (!obsolete.isEmpty()) {
+            System.out.println("[Journal] Compacted " + obsolete.size() + " segment(s) up to #" + coveredSeq);
+        }
+        return obsolete.size();
+    }
+    
+    /**
+     * Appends a record and blocks until it is durable on disk.
+     * @param record the record to append
+     * @return the sequence number assigned to the record
+     */
+    public long append(JournalRecord record) {
+        long seq = enqueue(record);
+        awaitDurable(seq);
+        return seq;
+    }
+    
+    /**
+     * Assigns a record its sequence number and queues it for the writer,
+     * without waiting for it to reach the disk.
+     * @param record the record to append
+     * @return the sequence number assigned to the record
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException if an earlier write failed
+     */
+    public long enqueue(JournalRecord record) {
+        int bodySize = record.encodedSize();
+        ByteBuffer frame = ByteBuffer.allocate(bodySize + FRAME_OVERHEAD);
+        long seq;
+        
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+            // Assign the sequence number and queue under one lock so file order matches seq order
+            seq = ++lastSeq;
+            record.setSeq(seq);
+            frame.putInt(bodySize);
+            record.writeTo(frame);
+            CRC32 crc = new CRC32();
+            crc.update(frame.array(), 4, bodySize);
+            frame.putInt((int) crc.getValue());
+            frame.flip();
+            
+            pending.add(frame);
+            lock.notifyAll();
+        }
+        return seq;
+    }
+    
+    /**
+     * Blocks until every record up to a sequence number is durable on disk.
+     * @param seq the sequence number to wait for
+     * @throws UncheckedIOException if the writer failed before reaching it
+     */
+    @Override
+    public void awaitDurable(long seq) {
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (durableSeq < seq && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableSeq < seq) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+        }
+    }
+    
+    /**
+     * Converts a command to a record and queues it.
+     * @param command the command
+     * @param revert true if the command was undone
+     * @return the record's sequence number
+     * @throws IllegalArgumentException if the command or its items cannot be journaled
+     */
+    @Override
+    public long log(Command command, boolean revert) {
+        JournalRecord record = JournalRecord.fromCommand(command, revert, shop);
+        if (record == null) {
+            throw new IllegalArgumentException("Cannot journal: " + command.getDescription());
+        }
+        return enqueue(record);
+    }
+    
+    /**
+     * Writer thread: drains queued frames in batches, one fsync per batch,
+     * and starts a new segment once the current one is full.
+     */
+    private void writeLoop() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchSeq;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return; // Closed and fully drained
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchSeq = lastSeq;
+            }
+            
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                ByteBuffer last = buffers[buffers.length - 1];
+                while (last.hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(false);
+                
+                if (channel.size() >= maxSegmentBytes) {
+                    rollSegment(batchSeq + 1);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            
+            synchronized (lock) {
+                durableSeq = batchSeq;
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Closes the active segment and starts a new one. Writer thread only.
+     * @param firstSeq the first sequence number the new segment will hold
+     * @throws IOException if the new segment cannot be created
+     */
+    private void rollSegment(long firstSeq) throws IOException {
+        FileChannel next;
+        synchronized (lock) {
+            next = openSegment(directory, segments, firstSeq);
+        }
+        channel.close();
+        channel = next;
+    }
+    
+    /**
+     * Returns the highest sequence number that is durable on disk.
+     * @return the durable sequence number
+     */
+    public long getDurableSeq() {
+        synchronized (lock) {
+            return durableSeq;
+        }
+    }
+    
+    /**
+     * Returns the lowest sequence number the journal can still replay.
+     * Anything below it was compacted away.
+     * @return the first sequence number of the oldest segment
+     */
+    public long getFirstSeq() {
+        synchronized (lock) {
+            return segments.firstKey();
+        }
+    }
+    
+    /**
+     * Returns the highest sequence number assigned so far.
+     * @return the last sequence number
+     */
+    public long getLastSeq() {
+        synchronized (lock) {
+            return lastSeq;
+        }
+    }
+    
+    /**
+     * Returns the number of segment files currently on disk.
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+    
+    /**
+     * Returns the directory holding the journal segments.
+     * @return the journal directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Flushes queued records and closes the journal.
+     * @throws IOException if the active segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+    
+    /**
+     * Creates a new empty segment file and registers it.
+     * @param directory the journal directory
+     * @param segments the segment index to update
+     * @param firstSeq the first sequence number the segment will hold
+     * @return a channel positioned for appending
+     * @throws IOException if the file cannot be created
+     */
+    private static FileChannel openSegment(Path directory, TreeMap<Long, Path> segments, long firstSeq)
+            throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        segments.put(firstSeq, file);
+        return channel;
+    }
+    
+    /**
+     * Lists the segment files in a journal directory by first sequence number.
+     * @param directory the journal directory
+     * @return the segment index
+     * @throws IOException if the directory cannot be listed
+     */
+    private static TreeMap<Long, Path> listSegments(Path directory) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    segments.put(Long.parseLong(number), file);
+                } catch (NumberFormatException e) {
+                    System.out.println("[Journal] Ignoring unexpected file " + name);
+                }
+            }
+        }
+        return segments;
+    }
+    
+    /**
+     * Callback used while scanning the journal.
+     */
+    private interface RecordVisitor {
+        void visit(JournalRecord record);
+    }
+    
+    /**
+     * Scans every intact record from the start of a segment.
+     * @param channel the segment channel
+     * @param visitor receives each decoded record
+     * @param result receives {validLength, lastSeq}
+     * @throws IOException if the channel cannot be read
+     */
+    private static void forEachRecord(FileChannel channel, RecordVisitor visitor, long[] result)
+            throws IOException {
+        long size = channel.size();
+        result[0] = 0;
+        result[1] = 0;
+        if (size == 0) {
+            return;
+        }
+        
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[256];
+        
+        while (map.remaining() >= FRAME_OVERHEAD) {
+            int length = map.getInt();
+            if (length <= 0 || length > map.remaining() - 4) {
+                break; // Torn or corrupt frame
+            }
+            if (body.length < length) {
+                body = new byte[length];
+            }
+            map.get(body, 0, length);
+            int storedCrc = map.getInt();
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+            
+            JournalRecord record = JournalRecord.readFrom(ByteBuffer.wrap(body, 0, length));
+            visitor.visit(record);
+            result[0] = map.position();
+            result[1] = record.getSeq();
+        }
+    }
+}
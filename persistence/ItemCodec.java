@@ -0,0 +1,274 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import model.Item;
+import patterns.creational.ShopManager;
+import patterns.structural.AttackBoostDecorator;
+import patterns.structural.DefenseBoostDecorator;
+import patterns.structural.Element;
+import patterns.structural.ElementalDamageDecorator;
+import patterns.structural.HealthBoostDecorator;
+import patterns.structural.ItemDecorator;
+import patterns.structural.UpgradeCatalog;
+
+/**
+ * Encodes items as compact integer codes for the binary persistence formats.
+ *
+ * A code is {@code [catalogId, kind1, param1, kind2, param2, ...]}: the
+ * ShopManager catalog id of the base item followed by one (kind, param)
+ * pair per decorator, innermost first. Decoding rebuilds an equal decorator
+ * chain on top of the shared catalog instance.
+ */
+public final class ItemCodec {
+    public static final int KIND_ATTACK = 1;
+    public static final int KIND_DEFENSE = 2;
+    public static final int KIND_HEALTH = 3;
+    public static final int KIND_ELEMENTAL = 4;
+    
+    // Element codes below the table size are positions in it, as saved by
+    // earlier versions; any other element is coded as the table size plus
+    // its upgrade number, so catalog-added elements keep their catalog order
+    private static final String[] ELEMENT_IDS = {"fire", "ice", "lightning"};
+    
+    private ItemCodec() {
+    }
+    
+    /**
+     * Encodes an item (possibly decorated) as an integer code.
+     * @param item the item to encode
+     * @param shop the shop whose catalog ids identify base items
+     * @return the code, or null if the base item is not in the catalog
+     */
+    public static int[] encode(Item item, ShopManager shop) {
+        if (item == null) {
+            return null;
+        }
+        
+        // Walk the decorator chain down to the base item
+        int layers = 0;
+        Item base = item;
+        while (base instanceof ItemDecorator) {
+            layers++;
+            base = ((ItemDecorator) base).getWrappedItem();
+        }
+        
+        int baseId = shop.getItemId(base);
+        if (baseId < 0) {
+            return null;
+        }
+        
+        int[] code = new int[1 + layers * 2];
+        code[0] = baseId;
+        
+        // Fill pairs from the outside in so the innermost decorator comes first
+        Item current = item;
+        for (int i = layers - 1; i >= 0; i--) {
+            ItemDecorator decorator = (ItemDecorator) current;
+            int pos = 1 + i * 2;
+            code[pos] = kindOf(decorator);
+            if (code[pos] == 0) {
+                return null; // Unknown decorator type
+            }
+            code[pos + 1] = paramOf(decorator, code[pos]);
+            current = decorator.getWrappedItem();
+        }
+        
+        return code;
+    }
+    
+    /**
+     * Returns the number of bytes {@link #write(ByteBuffer, Item, ShopManager)}
+     * uses for an item, without building its code.
+     * @param item the item to encode
+     * @param shop the shop whose catalog ids identify base items
+     * @return encoded size in bytes, or -1 if the item cannot be encoded
+     */
+    public static int encodedSize(Item item, ShopManager shop) {
+        if (item == null) {
+            return -1;
+        }
+        int layers = 0;
+        Item base = item;
+        while (base instanceof ItemDecorator) {
+            if (kindOf((ItemDecorator) base) == 0) {
+                return -1;
+            }
+            layers++;
+            base = ((ItemDecorator) base).getWrappedItem();
+        }
+        return shop.getItemId(base) >= 0 ? 1 + (1 + layers * 2) * 4 : -1;
+    }
+    
+    /**
+     * Writes an item's code straight into a buffer, exactly as
+     * {@link #write(ByteBuffer, int[])} writes the code from {@link #encode}.
+     * The caller checks {@link #encodedSize(Item, ShopManager)} first.
+     * @param buffer the destination buffer
+     * @param item the item to encode
+     * @param shop the shop whose catalog ids identify base items
+     */
+    public static void write(ByteBuffer buffer, Item item, ShopManager shop) {
+        int layers = 0;
+        Item base = item;
+        while (base instanceof ItemDecorator) {
+            layers++;
+            base = ((ItemDecorator) base).getWrappedItem();
+        }
+        buffer.put((byte) (1 + layers * 2));
+        buffer.putInt(shop.getItemId(base));
+        
+        // Pairs are put by index from the outside in, so the innermost lands first
+        int pairs = buffer.position();
+        Item current = item;
+        for (int i = layers - 1; i >= 0; i--) {
+            ItemDecorator decorator = (ItemDecorator) current;
+            int kind = kindOf(decorator);
+            buffer.putInt(pairs + i * 8, kind);
+            buffer.putInt(pairs + i * 8 + 4, paramOf(decorator, kind));
+            current = decorator.getWrappedItem();
+        }
+        buffer.position(pairs + layers * 8);
+    }
+    
+    /**
+     * Rebuilds an item from its code.
+     * @param code the item code
+     * @param shop the shop whose catalog resolves base ids
+     * @return the item, or null if the code does not resolve
+     */
+    public static Item decode(int[] code, ShopManager shop) {
+        if (code == null || code.length == 0 || code.length % 2 == 0) {
+            return null;
+        }
+        
+        Item item = shop.getItemById(code[0]);
+        if (item == null) {
+            return null;
+        }
+        
+        for (int pos = 1; pos < code.length; pos += 2) {
+            int param = code[pos + 1];
+            switch (code[pos]) {
+                case KIND_ATTACK:
+                    item = new AttackBoostDecorator(item, param);
+                    break;
+                case KIND_DEFENSE:
+                    item = new DefenseBoostDecorator(item, param);
+                    break;
+                case KIND_HEALTH:
+                    item = new HealthBoostDecorator(item, param);
+                    break;
+                case KIND_ELEMENTAL:
+                    Element element = elementFor(param);
+                    if (element == null) {
+                        return null;
+                    }
+                    try {
+                        item = new ElementalDamageDecorator(item, element);
+                    } catch (IllegalArgumentException e) {
+                        return null; // Conflicting enchantments
+                    }
+                    break;
+                default:
+                    return null;
+            }
+        }
+        
+        return item;
+    }
+    
+    /**
+     * Returns the number of bytes {@link #write} uses for a code.
+     * @param code the item code
+     * @return encoded size in bytes
+     */
+    public static int encodedSize(int[] code) {
+        return 1 + code.length * 4;
+    }
+    
+    /**
+     * Writes a code as a length byte followed by its ints.
+     * @param buffer the destination buffer
+     * @param code the item code
+     */
+    public static void write(ByteBuffer buffer, int[] code) {
+        buffer.put((byte) code.length);
+        for (int value : code) {
+            buffer.putInt(value);
+        }
+    }
+    
+    /**
+     * Reads a code written by {@link #write}.
+     * @param buffer the source buffer
+     * @return the item code
+     */
+    public static int[] read(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        int[] code = new int[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = buffer.getInt();
+        }
+        return code;
+    }
+    
+    /**
+     * Returns the code kind of a decorator.
+     * @return the kind, or 0 for a decorator type codes cannot hold
+     */
+    private static int kindOf(ItemDecorator decorator) {
+        if (decorator instanceof AttackBoostDecorator) {
+            return KIND_ATTACK;
+        } else if (decorator instanceof DefenseBoostDecorator) {
+            return KIND_DEFENSE;
+        } else if (decorator instanceof HealthBoostDecorator) {
+            return KIND_HEALTH;
+        } else if (decorator instanceof ElementalDamageDecorator) {
+            return KIND_ELEMENTAL;
+        }
+        return 0;
+    }
+    
+    private static int paramOf(ItemDecorator decorator, int kind) {
+        switch (kind) {
+            case KIND_ATTACK:
+                return ((AttackBoostDecorator) decorator).getAttackBonus();
+            case KIND_DEFENSE:
+                return ((DefenseBoostDecorator) decorator).getDefenseBonus();
+            case KIND_HEALTH:
+                return ((HealthBoostDecorator) decorator).getHealthBonus();
+            default:
+                return elementCode(((ElementalDamageDecorator) decorator).getElement());
+        }
+    }
+    
+    /**
+     * Maps an element to its code.
+     * @param element the element
+     * @return the code
+     */
+    private static int elementCode(Element element) {
+        for (int i = 0; i < ELEMENT_IDS.length; i++) {
+            if (ELEMENT_IDS[i].equals(element.getId())) {
+                return i;
+            }
+        }
+        return ELEMENT_IDS.length + element.getUpgrade();
+    }
+    
+    /**
+     * Maps an element code back to the element.
+     * @param code the element code
+     * @return the element, or null if the catalog has no such element
+     */
+    private static Element elementFor(int code) {
+        if (code < 0) {
+            return null;
+        }
+        if (code < ELEMENT_IDS.length) {
+            int upgrade = UpgradeCatalog.getInstance().indexOf(ELEMENT_IDS[code]);
+            return Element.forUpgrade(upgrade);
+        }
+        return Element.forUpgrade(code - ELEMENT_IDS.length);
+    }
+}
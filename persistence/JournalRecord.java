@@ -0,0 +1,388 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import model.Item;
+import model.Player;
+import patterns.behavioral.BulkUpgradeCommand;
+import patterns.behavioral.BuyCommand;
+import patterns.behavioral.Command;
+import patterns.behavioral.EquipCommand;
+import patterns.behavioral.SellCommand;
+import patterns.behavioral.UnequipCommand;
+import patterns.behavioral.UpgradeCommand;
+import patterns.creational.ShopManager;
+
+/**
+ * One entry of the command journal: the effect of a command applied to
+ * (or reverted from) a player.
+ *
+ * Body layout (big-endian):
+ * <pre>
+ *   u64 seq | u8 op | u8 revert | u8 nameLen | name (UTF-8)
+ *   i64 goldCents | itemCode | [targetCode, upgrades only]
+ *   i64 goldCents | u16 count | { itemCode | targetCode } * count   (bulk upgrades)
+ * </pre>
+ * Gold is stored in fixed-point hundredths so replay is exact.
+ */
+public class JournalRecord {
+    public static final byte OP_BUY = 1;
+    public static final byte OP_SELL = 2;
+    public static final byte OP_EQUIP = 3;
+    public static final byte OP_UNEQUIP = 4;
+    public static final byte OP_UPGRADE = 5;
+    public static final byte OP_BULK_UPGRADE = 6;
+    
+    private static final int MAX_BULK_ITEMS = 0xFFFF;
+    
+    private long seq;
+    private final byte op;
+    private final boolean revert;
+    private final String playerName;
+    private final byte[] playerNameBytes;
+    private final long goldCents;
+    private final int[] itemCode;
+    private final int[] targetCode;
+    private final int[][] bulkItemCodes;
+    private final int[][] bulkTargetCodes;
+    
+    /**
+     * Creates a journal record.
+     * @param op the operation code (OP_*)
+     * @param revert true if the operation was undone rather than applied
+     * @param playerName the player the operation affected
+     * @param goldCents gold moved by the operation, in hundredths
+     * @param itemCode code of the item acted on
+     * @param targetCode code of the resulting item for upgrades, otherwise null
+     */
+    public JournalRecord(byte op, boolean revert, String playerName, long goldCents,
+                         int[] itemCode, int[] targetCode) {
+        this(op, revert, playerName, goldCents, itemCode, targetCode, null, null);
+    }
+    
+    /**
+     * Creates a bulk upgrade journal record.
+     * @param revert true if the bulk upgrade was undone rather than applied
+     * @param playerName the player the operation affected
+     * @param goldCents total gold moved by the operation, in hundredths
+     * @param itemCodes codes of the items upgraded
+     * @param targetCodes codes of the resulting items, index-aligned with itemCodes
+     */
+    public JournalRecord(boolean revert, String playerName, long goldCents,
+                         int[][] itemCodes, int[][] targetCodes) {
+        this(OP_BULK_UPGRADE, revert, playerName, goldCents, null, null, itemCodes, targetCodes);
+        if (itemCodes.length != targetCodes.length || itemCodes.length > MAX_BULK_ITEMS) {
+            throw new IllegalArgumentException("Invalid bulk upgrade item count: " + itemCodes.length);
+        }
+    }
+    
+    private JournalRecord(byte op, boolean revert, String playerName, long goldCents,
+                          int[] itemCode, int[] targetCode, int[][] bulkItemCodes, int[][] bulkTargetCodes) {
+        this.op = op;
+        this.revert = revert;
+        this.playerName = playerName;
+        this.playerNameBytes = playerName.getBytes(StandardCharsets.UTF_8);
+        this.goldCents = goldCents;
+        this.itemCode = itemCode;
+        this.targetCode = targetCode;
+        this.bulkItemCodes = bulkItemCodes;
+        this.bulkTargetCodes = bulkTargetCodes;
+        
+        if (playerNameBytes.length > 255) {
+            throw new IllegalArgumentException("Player name too long for journal: " + playerName);
+        }
+    }
+    
+    /**
+     * Builds a record describing a command's effect.
+     * @param command the executed or undone command
+     * @param revert true if the command was undone
+     * @param shop the shop whose catalog identifies items
+     * @return the record, or null if the command type or its items cannot be journaled
+     */
+    public static JournalRecord fromCommand(Command command, boolean revert, ShopManager shop) {
+        if (command instanceof BuyCommand) {
+            BuyCommand buy = (BuyCommand) command;
+            return create(OP_BUY, revert, buy.getPlayer(), buy.getGoldSpent(),
+                          ItemCodec.encode(buy.getItem(), shop), null);
+        }
+        if (command instanceof SellCommand) {
+            SellCommand sell = (SellCommand) command;
+            return create(OP_SELL, revert, sell.getPlayer(), sell.getGoldReceived(),
+                          ItemCodec.encode(sell.getItem(), shop), null);
+        }
+        if (command instanceof EquipCommand) {
+            EquipCommand equip = (EquipCommand) command;
+            return create(OP_EQUIP, revert, equip.getPlayer(), 0,
+                          ItemCodec.encode(equip.getItem(), shop), null);
+        }
+        if (command instanceof UnequipCommand) {
+            UnequipCommand unequip = (UnequipCommand) command;
+            return create(OP_UNEQUIP, revert, unequip.getPlayer(), 0,
+                          ItemCodec.encode(unequip.getItem(), shop), null);
+        }
+        if (command instanceof UpgradeCommand) {
+            UpgradeCommand upgrade = (UpgradeCommand) command;
+            int[] target = ItemCodec.encode(upgrade.getUpgradedItem(), shop);
+            if (target == null) {
+                return null;
+            }
+            return create(OP_UPGRADE, revert, upgrade.getPlayer(), upgrade.getUpgradeCost(),
+                          ItemCodec.encode(upgrade.getBaseItem(), shop), target);
+        }
+        if (command instanceof BulkUpgradeCommand) {
+            return fromBulkUpgrade((BulkUpgradeCommand) command, revert, shop);
+        }
+        return null;
+    }
+    
+    private static JournalRecord fromBulkUpgrade(BulkUpgradeCommand bulk, boolean revert, ShopManager shop) {
+        List<Item> bases = bulk.getBaseItems();
+        List<Item> targets = bulk.getUpgradedItems();
+        if (bases.size() > MAX_BULK_ITEMS) {
+            return null;
+        }
+        int[][] itemCodes = new int[bases.size()][];
+        int[][] targetCodes = new int[bases.size()][];
+        for (int i = 0; i < itemCodes.length; i++) {
+            itemCodes[i] = ItemCodec.encode(bases.get(i), shop);
+            targetCodes[i] = ItemCodec.encode(targets.get(i), shop);
+            if (itemCodes[i] == null || targetCodes[i] == null) {
+                return null;
+            }
+        }
+        return new JournalRecord(revert, bulk.getPlayer().getName(), Math.round(bulk.getTotalCost() * 100),
+                                 itemCodes, targetCodes);
+    }
+    
+    private static JournalRecord create(byte op, boolean revert, Player player, double gold,
+                                        int[] itemCode, int[] targetCode) {
+        if (itemCode == null) {
+            return null;
+        }
+        return new JournalRecord(op, revert, player.getName(), Math.round(gold * 100),
+                                 itemCode, targetCode);
+    }
+    
+    /**
+     * Applies this record's effect to a player, mirroring the command's
+     * execute() or undo() without observer notifications.
+     * @param player the player to update
+     * @param shop the shop whose catalog resolves item codes
+     * @return true if the record was applied, false if an item could not be resolved
+     */
+    public boolean applyTo(Player player, ShopManager shop) {
+        if (op == OP_BULK_UPGRADE) {
+            return applyBulkUpgrade(player, shop);
+        }
+        Item item = ItemCodec.decode(itemCode, shop);
+        if (item == null) {
+            return false;
+        }
+        double gold = goldCents / 100.0;
+        
+        switch (op) {
+            case OP_BUY:
+                if (!revert) {
+                    player.removeGold(gold);
+                    player.addItem(item);
+                } else {
+                    player.addGold(gold);
+                    player.getInventory().removeItem(item);
+                }
+                return true;
+            
+            case OP_SELL:
+                if (!revert) {
+                    player.removeItemFromInventory(item);
+                    player.addGold(gold);
+                } else {
+                    player.addItem(item);
+                    player.removeGold(gold);
+                }
+                return true;
+            
+            case OP_EQUIP:
+            case OP_UNEQUIP:
+                // Unequip is the inverse of equip, and reverting flips it again
+                if ((op == OP_EQUIP) != revert) {
+                    player.getInventory().equipItem(item);
+                } else {
+                    player.getInventory().unequipItem(item);
+                }
+                return true;
+            
+            case OP_UPGRADE:
+                Item target = ItemCodec.decode(targetCode, shop);
+                if (target == null) {
+                    return false;
+                }
+                if (!revert) {
+                    player.removeGold(gold);
+                    player.getInventory().removeItem(item);
+                    player.getInventory().addItem(target);
+                } else {
+                    player.addGold(gold);
+                    player.getInventory().removeItem(target);
+                    player.getInventory().addItem(item);
+                }
+                return true;
+            
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Swaps every item of a bulk upgrade record in place and moves the
+     * total gold, all or nothing, like BulkUpgradeCommand.
+     */
+    private boolean applyBulkUpgrade(Player player, ShopManager shop) {
+        List<Item> items = new ArrayList<>(bulkItemCodes.length);
+        List<Item> targets = new ArrayList<>(bulkItemCodes.length);
+        for (int i = 0; i < bulkItemCodes.length; i++) {
+            Item item = ItemCodec.decode(bulkItemCodes[i], shop);
+            Item target = ItemCodec.decode(bulkTargetCodes[i], shop);
+            if (item == null || target == null) {
+                return false;
+            }
+            items.add(item);
+            targets.add(target);
+        }
+        double gold = goldCents / 100.0;
+        
+        if (!revert) {
+            if (!player.getInventory().replaceItems(items, targets)) {
+                return false;
+            }
+            player.removeGold(gold);
+        } else {
+            if (!player.getInventory().replaceItems(targets, items)) {
+                return false;
+            }
+            player.addGold(gold);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the size of this record's body in bytes.
+     * @return encoded body size
+     */
+    public int encodedSize() {
+        if (op == OP_BULK_UPGRADE) {
+            int size = 8 + 1 + 1 + 1 + playerNameBytes.length + 8 + 2;
+            for (int i = 0; i < bulkItemCodes.length; i++) {
+                size += ItemCodec.encodedSize(bulkItemCodes[i]) + ItemCodec.encodedSize(bulkTargetCodes[i]);
+            }
+            return size;
+        }
+        int size = 8 + 1 + 1 + 1 + playerNameBytes.length + 8 + ItemCodec.encodedSize(itemCode);
+        if (op == OP_UPGRADE) {
+            size += ItemCodec.encodedSize(targetCode);
+        }
+        return size;
+    }
+    
+    /**
+     * Writes this record's body.
+     * @param buffer the destination buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(seq);
+        buffer.put(op);
+        buffer.put((byte) (revert ? 1 : 0));
+        buffer.put((byte) playerNameBytes.length);
+        buffer.put(playerNameBytes);
+        buffer.putLong(goldCents);
+        if (op == OP_BULK_UPGRADE) {
+            buffer.putShort((short) bulkItemCodes.length);
+            for (int i = 0; i < bulkItemCodes.length; i++) {
+                ItemCodec.write(buffer, bulkItemCodes[i]);
+                ItemCodec.write(buffer, bulkTargetCodes[i]);
+            }
+            return;
+        }
+        ItemCodec.write(buffer, itemCode);
+        if (op == OP_UPGRADE) {
+            ItemCodec.write(buffer, targetCode);
+        }
+    }
+    
+    /**
+     * Reads a record body written by {@link #writeTo}.
+     * @param buffer the source buffer
+     * @return the record
+     */
+    public static JournalRecord readFrom(ByteBuffer buffer) {
+        long seq = buffer.getLong();
+        byte op = buffer.get();
+        boolean revert = buffer.get() != 0;
+        byte[] name = new byte[buffer.get() & 0xFF];
+        buffer.get(name);
+        long goldCents = buffer.getLong();
+        String playerName = new String(name, StandardCharsets.UTF_8);
+        
+        if (op == OP_BULK_UPGRADE) {
+            int count = buffer.getShort() & 0xFFFF;
+            int[][] itemCodes = new int[count][];
+            int[][] targetCodes = new int[count][];
+            for (int i = 0; i < count; i++) {
+                itemCodes[i] = ItemCodec.read(buffer);
+                targetCodes[i] = ItemCodec.read(buffer);
+            }
+            JournalRecord record = new JournalRecord(revert, playerName, goldCents, itemCodes, targetCodes);
+            record.seq = seq;
+            return record;
+        }
+        
+        int[] itemCode = ItemCodec.read(buffer);
+        int[] targetCode = op == OP_UPGRADE ? ItemCodec.read(buffer) : null;
+        
+        JournalRecord record = new JournalRecord(op, revert, playerName, goldCents, itemCode, targetCode);
+        record.seq = seq;
+        return record;
+    }
+    
+    /**
+     * Returns the journal sequence number assigned when the record was appended.
+     * @return the sequence number
+     */
+    public long getSeq() {
+        return seq;
+    }
+    
+    /**
+     * Sets the journal sequence number. Assigned by CommandJournal on append.
+     * @param seq the sequence number
+     */
+    void setSeq(long seq) {
+        this.seq = seq;
+    }
+    
+    /**
+     * Returns the operation code.
+     * @return one of the OP_* constants
+     */
+    public byte getOp() {
+        return op;
+    }
+    
+    /**
+     * Returns whether this record reverts its operation (an undo).
+     * @return true for undo records
+     */
+    public boolean isRevert() {
+        return revert;
+    }
+    
+    /**
+     * Returns the name of the affected player.
+     * @return player name
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+}
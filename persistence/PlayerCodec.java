@@ -0,0 +1,178 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import model.Item;
+import model.Player;
+import patterns.creational.ShopManager;
+
+/**
+ * Compact binary encoding of a player's level, wallet and inventory.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   u8 nameLen | name (UTF-8) | u8 level | i64 goldCents
+ *   u16 equippedCount | itemCode... | u16 backpackCount | itemCode...
+ * </pre>
+ * Items are written with {@link ItemCodec}, so only catalog ids and
+ * upgrade parameters are stored; their codes go straight into the output
+ * buffer, without building code arrays. The player is read and written
+ * under its inventory lock, which commands hold while changing gold and items together, so
+ * every record is a consistent snapshot even while the player is in use.
+ * A player holding an item that cannot be encoded is not written at all,
+ * so a save never silently loses items.
+ */
+public final class PlayerCodec {
+    
+    private PlayerCodec() {
+    }
+    
+    /**
+     * Encodes a player's current state.
+     * @param player the player to encode
+     * @param shop the shop whose catalog identifies items
+     * @return the encoded bytes
+     * @throws IOException if an item is not in the shop catalog
+     * @throws IllegalArgumentException if the name or level does not fit the format
+     */
+    public static byte[] encode(Player player, ShopManager shop) throws IOException {
+        byte[] name = nameBytes(player);
+        synchronized (player.getInventory()) {
+            State state = new State(player);
+            ByteBuffer buffer = ByteBuffer.allocate(state.encodedSize(name, player, shop));
+            state.write(buffer, name, shop);
+            return buffer.array();
+        }
+    }
+    
+    /**
+     * Writes a player's current state straight into a buffer, so many
+     * players can share one output buffer. Nothing is written if the
+     * buffer has too little room.
+     * @param buffer the destination buffer
+     * @param player the player to encode
+     * @param shop the shop whose catalog identifies items
+     * @return true if the player was written, false if it did not fit
+     * @throws IOException if an item is not in the shop catalog
+     * @throws IllegalArgumentException if the name or level does not fit the format
+     */
+    public static boolean writeTo(ByteBuffer buffer, Player player, ShopManager shop) throws IOException {
+        byte[] name = nameBytes(player);
+        synchronized (player.getInventory()) {
+            State state = new State(player);
+            if (buffer.remaining() < state.encodedSize(name, player, shop)) {
+                return false;
+            }
+            state.write(buffer, name, shop);
+            return true;
+        }
+    }
+    
+    /**
+     * Reads the player name at the start of an encoded player.
+     * @param buffer the source buffer, positioned at the record start
+     * @return the player name
+     */
+    public static String readName(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.get() & 0xFF];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Reads the rest of an encoded player (after {@link #readName}) into a
+     * player instance, replacing its level, gold and inventory.
+     * @param buffer the source buffer, positioned after the name
+     * @param player the player to restore
+     * @param shop the shop whose catalog resolves item codes
+     */
+    public static void readState(ByteBuffer buffer, Player player, ShopManager shop) {
+        int level = buffer.get() & 0xFF;
+        long goldCents = buffer.getLong();
+        List<Item> equipped = readItems(buffer, shop);
+        List<Item> backpack = readItems(buffer, shop);
+        
+        if (player.getLevel() != level) {
+            player.setLevel(level);
+        }
+        player.setGold(goldCents / 100.0);
+        player.getInventory().restore(equipped, backpack);
+    }
+    
+    private static byte[] nameBytes(Player player) {
+        byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > 255) {
+            throw new IllegalArgumentException("Player name too long to encode: " + player.getName());
+        }
+        return name;
+    }
+    
+    /**
+     * A player's state read once under the inventory lock, so the size
+     * check and the write see the same items. Used only while the lock is held.
+     */
+    private static final class State {
+        private final int level;
+        private final long goldCents;
+        private final List<Item> equipped;
+        private final List<Item> backpack;
+        
+        State(Player player) {
+            this.level = player.getLevel();
+            if (level < 0 || level > 255) {
+                throw new IllegalArgumentException("Player level out of range to encode: " + level);
+            }
+            this.goldCents = Math.round(player.getGold() * 100);
+            this.equipped = player.getInventory().getEquippedItems();
+            this.backpack = player.getInventory().getBackpackItems();
+        }
+        
+        int encodedSize(byte[] name, Player player, ShopManager shop) throws IOException {
+            return 1 + name.length + 1 + 8 + itemsSize(player, equipped, shop) + itemsSize(player, backpack, shop);
+        }
+        
+        void write(ByteBuffer buffer, byte[] name, ShopManager shop) {
+            buffer.put((byte) name.length);
+            buffer.put(name);
+            buffer.put((byte) level);
+            buffer.putLong(goldCents);
+            writeItems(buffer, equipped, shop);
+            writeItems(buffer, backpack, shop);
+        }
+    }
+    
+    private static int itemsSize(Player player, List<Item> items, ShopManager shop) throws IOException {
+        int size = 2;
+        for (Item item : items) {
+            int itemSize = ItemCodec.encodedSize(item, shop);
+            if (itemSize < 0) {
+                throw new IOException("Cannot encode " + player.getName() + ": " + item.getName()
+                                      + " is not in the shop catalog");
+            }
+            size += itemSize;
+        }
+        return size;
+    }
+    
+    private static void writeItems(ByteBuffer buffer, List<Item> items, ShopManager shop) {
+        buffer.putShort((short) items.size());
+        for (Item item : items) {
+            ItemCodec.write(buffer, item, shop);
+        }
+    }
+    
+    private static List<Item> readItems(ByteBuffer buffer, ShopManager shop) {
+        int count = buffer.getShort() & 0xFFFF;
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = ItemCodec.decode(ItemCodec.read(buffer), shop);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+}
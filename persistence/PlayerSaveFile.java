@@ -0,0 +1,150 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import model.Player;
+import patterns.creational.ShopManager;
+
+/**
+ * One-shot save file holding many players at once.
+ *
+ * Players are encoded with {@link PlayerCodec} straight into a reusable
+ * direct buffer that is handed to an {@link AtomicSnapshotFile} writer
+ * whenever it fills, so saving builds nothing but the bytes themselves.
+ * The file is checksummed and swapped in atomically; loading verifies it
+ * and falls back to the previous save if it is damaged.
+ *
+ * Payload layout (big-endian):
+ * <pre>
+ *   u32 magic | u8 version | u32 playerCount
+ *   { u32 length | PlayerCodec bytes } * playerCount
+ * </pre>
+ * The length prefix lets readers skip players they are not interested in.
+ */
+public final class PlayerSaveFile {
+    private static final int MAGIC = 0x4C534156; // "LSAV"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 4;
+    private static final int BUFFER_SIZE = 1 << 20;
+    
+    private PlayerSaveFile() {
+    }
+    
+    /**
+     * Writes players to a save file, replacing any existing file only once
+     * the new one is complete and on disk.
+     * @param file the file to write
+     * @param players the players to save
+     * @param shop the shop whose catalog identifies items
+     * @return the number of payload bytes written
+     * @throws IOException if the file cannot be written
+     */
+    public static long save(Path file, Collection<Player> players, ShopManager shop) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long written;
+        
+        try (AtomicSnapshotFile.Writer out = AtomicSnapshotFile.open(file)) {
+            buffer.putInt(MAGIC);
+            buffer.put(VERSION);
+            buffer.putInt(players.size());
+            
+            for (Player player : players) {
+                if (buffer.remaining() < 4) {
+                    flush(out, buffer);
+                }
+                int start = buffer.position();
+                buffer.position(start + 4);
+                if (!PlayerCodec.writeTo(buffer, player, shop)) {
+                    buffer.position(start);
+                    flush(out, buffer);
+                    buffer.position(4);
+                    if (!PlayerCodec.writeTo(buffer, player, shop)) {
+                        // Larger than the whole buffer: write it on its own
+                        byte[] record = PlayerCodec.encode(player, shop);
+                        buffer.clear();
+                        buffer.putInt(record.length);
+                        flush(out, buffer);
+                        out.write(ByteBuffer.wrap(record));
+                        continue;
+                    }
+                    start = 0;
+                }
+                buffer.putInt(start, buffer.position() - start - 4);
+            }
+            flush(out, buffer);
+            out.commit();
+            written = out.getPayloadLength();
+        }
+        
+        System.out.println("[Save] Wrote " + players.size() + " player(s) to " + file.getFileName()
+                           + " (" + written + " bytes)");
+        return written;
+    }
+    
+    /**
+     * Reads every player from a save file into new Player instances.
+     * @param file the file to read
+     * @param shop the shop whose catalog resolves item codes
+     * @return the players, in the order they were saved
+     * @throws IOException if the file cannot be read or is not a save file
+     */
+    public static List<Player> load(Path file, ShopManager shop) throws IOException {
+        List<Player> players = new ArrayList<>();
+        load(file, shop, name -> {
+            Player player = new Player(name, 1, 0);
+            players.add(player);
+            return player;
+        });
+        return players;
+    }
+    
+    /**
+     * Reads a save file into players chosen by name, such as already open
+     * sessions. Each player's level, gold and inventory are replaced.
+     * @param file the file to read
+     * @param shop the shop whose catalog resolves item codes
+     * @param players maps a saved name to the player to restore, or null to skip it
+     * @return the number of players restored
+     * @throws IOException if the file cannot be read or is not a save file
+     */
+    public static int load(Path file, ShopManager shop, Function<String, Player> players) throws IOException {
+        ByteBuffer buffer = AtomicSnapshotFile.read(file);
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("Not a save file: " + file);
+            }
+            int count = buffer.getInt();
+            int restored = 0;
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                
+                Player player = players.apply(PlayerCodec.readName(record));
+                if (player != null) {
+                    PlayerCodec.readState(record, player, shop);
+                    restored++;
+                }
+            }
+            return restored;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt save file: " + file, e);
+        }
+    }
+    
+    /**
+     * Hands the buffered bytes to the writer and clears the buffer.
+     */
+    private static void flush(AtomicSnapshotFile.Writer out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        out.write(buffer);
+        buffer.clear();
+    }
+}
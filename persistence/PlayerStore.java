@@ -0,0 +1,491 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import model.Player;
+import model.PlayerChangeListener;
+import patterns.creational.ShopManager;
+
+/**
+ * Embedded key-value store of player records, keyed by player name.
+ *
+ * Records are appended to a single log file, framed like the command
+ * journal as {@code u32 length | body | u32 crc32(body)}. The body is a
+ * type byte followed by a PlayerCodec record (put) or just the player name
+ * (delete). An in-memory index maps each name to its newest record; it is
+ * rebuilt by scanning the log on open, and a torn tail left by a crash is
+ * truncated away.
+ *
+ * Tracked players mark themselves dirty through their PlayerChangeListener.
+ * A background flusher periodically encodes only the dirty players and
+ * appends them with one write and one fsync, so autosave cost follows
+ * activity rather than the number of players. A player that cannot be
+ * encoded keeps its previous record and stays dirty, without holding up
+ * the rest of the batch. Once superseded records
+ * outweigh the live ones, the log is rewritten with only the newest record
+ * per player and swapped in with an atomic rename.
+ */
+public class PlayerStore implements PlayerChangeListener, AutoCloseable {
+    public static final long DEFAULT_FLUSH_MILLIS = 1000;
+    public static final long MIN_COMPACT_BYTES = 1024 * 1024;
+    
+    private static final String LOG_FILE = "players.log";
+    private static final String COMPACT_FILE = "players.log.compact";
+    private static final int FRAME_OVERHEAD = 8; // length + crc
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    
+    private final Path directory;
+    private final ShopManager shop;
+    private final Set<Player> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+    
+    // Guarded by this
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileChannel channel;
+    private long liveBytes;
+    
+    /**
+     * Where the newest record of a player sits in the log.
+     */
+    private static final class Entry {
+        final long position; // Start of the frame
+        final int length;    // Whole frame, including length and crc
+        
+        Entry(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+    
+    private PlayerStore(Path directory, ShopManager shop, long flushMillis) {
+        this.directory = directory;
+        this.shop = shop;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "player-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Opens (or creates) a store with the default flush interval.
+     * @param directory the directory holding the log file
+     * @param shop the shop whose catalog identifies items
+     * @return the open store
+     * @throws IOException if the log cannot be opened
+     */
+    public static PlayerStore open(Path directory, ShopManager shop) throws IOException {
+        return open(directory, shop, DEFAULT_FLUSH_MILLIS);
+    }
+    
+    /**
+     * Opens (or creates) a store and rebuilds its index from the log.
+     * @param directory the directory holding the log file
+     * @param shop the shop whose catalog identifies items
+     * @param flushMillis how often dirty players are written
+     * @return the open store
+     * @throws IOException if the log cannot be opened
+     */
+    public static PlayerStore open(Path directory, ShopManager shop, long flushMillis) throws IOException {
+        if (flushMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        Files.createDirectories(directory);
+        // A compaction that never reached its rename is simply discarded
+        Files.deleteIfExists(directory.resolve(COMPACT_FILE));
+        
+        PlayerStore store = new PlayerStore(directory, shop, flushMillis);
+        synchronized (store) {
+            store.channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                                             StandardOpenOption.READ, StandardOpenOption.WRITE);
+            store.rebuildIndex();
+        }
+        System.out.println("[Store] Opened " + store.size() + " player(s) from " + directory);
+        return store;
+    }
+    
+    /**
+     * Starts autosaving a player: every change marks it dirty and the
+     * flusher writes it with the next batch.
+     * @param player the player to track
+     */
+    public void track(Player player) {
+        player.addChangeListener(this);
+    }
+    
+    /**
+     * Stops autosaving a player. Unsaved changes are dropped.
+     * @param player the player to stop tracking
+     */
+    public void untrack(Player player) {
+        player.removeChangeListener(this);
+        dirty.remove(player);
+    }
+    
+    @Override
+    public void onPlayerChanged(Player player) {
+        if (!closed) {
+            dirty.add(player);
+        }
+    }
+    
+    /**
+     * Restores a player's level, gold and inventory from its newest record.
+     * @param player the player to restore (matched by name)
+     * @return true if the store held the player, false otherwise
+     * @throws IOException if the record cannot be read
+     */
+    public boolean load(Player player) throws IOException {
+        ByteBuffer frame;
+        synchronized (this) {
+            Entry entry = index.get(player.getName());
+            if (entry == null) {
+                return false;
+            }
+            frame = ByteBuffer.allocate(entry.length);
+            while (frame.hasRemaining()) {
+                if (channel.read(frame, entry.position + frame.position()) < 0) {
+                    throw new IOException("Player store log ends inside a record");
+                }
+            }
+        }
+        
+        frame.position(4 + 1);
+        PlayerCodec.readName(frame);
+        PlayerCodec.readState(frame, player, shop);
+        dirty.remove(player); // Restoring is not a change worth writing back
+        return true;
+    }
+    
+    /**
+     * Writes a player now instead of waiting for the flusher.
+     * @param player the player to save
+     * @throws IOException if the record cannot be written or the player
+     *         cannot be encoded; the previous record is kept then
+     */
+    public void save(Player player) throws IOException {
+        dirty.remove(player);
+        List<Player> batch = new ArrayList<>(1);
+        batch.add(player);
+        IOException failure = append(batch, new ArrayList<>(1));
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * Deletes a player's record.
+     * @param name the player name
+     * @return true if the store held the player, false otherwise
+     * @throws IOException if the delete cannot be written
+     */
+    public synchronized boolean remove(String name) throws IOException {
+        Entry entry = index.get(name);
+        if (entry == null) {
+            return false;
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[1 + nameBytes.length];
+        payload[0] = (byte) nameBytes.length;
+        System.arraycopy(nameBytes, 0, payload, 1, nameBytes.length);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_OVERHEAD + 1 + payload.length);
+        putFrame(frame, TYPE_DELETE, payload);
+        frame.flip();
+        writeDurably(frame);
+        index.remove(name);
+        liveBytes -= entry.length;
+        return true;
+    }
+    
+    /**
+     * Writes every dirty player in one batch with a single fsync.
+     * @return the number of players written
+     * @throws IOException if the batch cannot be written, or some player in
+     *         it cannot be encoded; players not written stay dirty
+     */
+    public int flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        // A player changed again while being encoded is simply dirty once more
+        List<Player> batch = new ArrayList<>(dirty.size());
+        for (Iterator<Player> it = dirty.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        List<Player> unencodable = new ArrayList<>();
+        IOException failure;
+        try {
+            failure = append(batch, unencodable);
+        } catch (IOException e) {
+            dirty.addAll(batch);
+            dirty.addAll(unencodable);
+            throw e;
+        }
+        if (failure != null) {
+            dirty.addAll(unencodable);
+            throw failure;
+        }
+        return batch.size();
+    }
+    
+    /**
+     * Rewrites the log with only the newest record per player.
+     * @throws IOException if the compacted log cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        Path log = directory.resolve(LOG_FILE);
+        Path compacted = directory.resolve(COMPACT_FILE);
+        long before = channel.size();
+        
+        Map<String, Entry> moved = new HashMap<>(index.size() * 2);
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (Map.Entry<String, Entry> record : index.entrySet()) {
+                Entry entry = record.getValue();
+                long copied = 0;
+                while (copied < entry.length) {
+                    copied += channel.transferTo(entry.position + copied, entry.length - copied, out);
+                }
+                moved.put(record.getKey(), new Entry(position, entry.length));
+                position += entry.length;
+            }
+            out.force(true);
+        }
+        
+        channel.close();
+        try {
+            Files.move(compacted, log, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            AtomicSnapshotFile.syncDirectory(directory);
+            index.clear();
+            index.putAll(moved);
+        } finally {
+            channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        System.out.println("[Store] Compacted log from " + before + " to " + channel.size() + " bytes");
+    }
+    
+    /**
+     * Returns the number of players in the store.
+     * @return player count
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * Checks whether the store holds a player.
+     * @param name the player name
+     * @return true if a record exists
+     */
+    public synchronized boolean contains(String name) {
+        return index.containsKey(name);
+    }
+    
+    /**
+     * Returns the number of players waiting for the next flush.
+     * @return dirty player count
+     */
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+    
+    /**
+     * Returns the current size of the log file.
+     * @return log size in bytes
+     * @throws IOException if the size cannot be read
+     */
+    public synchronized long getLogBytes() throws IOException {
+        return channel.size();
+    }
+    
+    /**
+     * Returns the bytes taken by the newest record of every player.
+     * @return live bytes in the log
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+    
+    /**
+     * Stops the flusher, writes the remaining dirty players and closes the log.
+     * @throws IOException if the final flush or close fails
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.out.println("[Store] Failed to autosave players: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Encodes players and appends them as one write. Encoding happens under
+     * the lock too, so a stale record can never land after a newer one.
+     * Players that cannot be encoded are taken out of the list and left
+     * with their previous record.
+     * @param players the players to write; on return, only those written
+     * @param unencodable receives the players that could not be encoded
+     * @return the first encoding failure, or null if every player was written
+     * @throws IOException if the batch cannot be written
+     */
+    private synchronized IOException append(List<Player> players, List<Player> unencodable)
+            throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Player store is closed");
+        }
+        
+        List<byte[]> records = new ArrayList<>(players.size());
+        IOException failure = null;
+        int size = 0;
+        for (Iterator<Player> it = players.iterator(); it.hasNext(); ) {
+            Player player = it.next();
+            byte[] record;
+            try {
+                record = PlayerCodec.encode(player, shop);
+            } catch (IOException e) {
+                it.remove();
+                unencodable.add(player);
+                if (failure == null) {
+                    failure = e;
+                }
+                continue;
+            }
+            records.add(record);
+            size += FRAME_OVERHEAD + 1 + record.length;
+        }
+        if (records.isEmpty()) {
+            return failure;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            putFrame(batch, TYPE_PUT, record);
+        }
+        batch.flip();
+        
+        long position = writeDurably(batch);
+        for (int i = 0; i < players.size(); i++) {
+            int length = FRAME_OVERHEAD + 1 + records.get(i).length;
+            Entry previous = index.put(players.get(i).getName(), new Entry(position, length));
+            liveBytes += length - (previous != null ? previous.length : 0);
+            position += length;
+        }
+        
+        long logBytes = channel.size();
+        if (logBytes >= MIN_COMPACT_BYTES && logBytes - liveBytes > liveBytes) {
+            compact();
+        }
+        return failure;
+    }
+    
+    /**
+     * Appends a buffer at the end of the log and forces it to disk.
+     * @return the log position the buffer was written at
+     */
+    private long writeDurably(ByteBuffer buffer) throws IOException {
+        long position = channel.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        return position;
+    }
+    
+    /**
+     * Frames a body made of a type byte followed by its payload.
+     */
+    private static void putFrame(ByteBuffer buffer, byte type, byte[] payload) {
+        int bodySize = 1 + payload.length;
+        int start = buffer.position();
+        buffer.putInt(bodySize);
+        buffer.put(type);
+        buffer.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start + 4).limit(start + 4 + bodySize));
+        buffer.putInt((int) crc.getValue());
+    }
+    
+    /**
+     * Scans the log, indexing the newest record per player and truncating
+     * anything after the last intact frame.
+     */
+    private void rebuildIndex() throws IOException {
+        long size = channel.size();
+        ByteBuffer log = ByteBuffer.allocate((int) size);
+        while (log.hasRemaining() && channel.read(log, log.position()) >= 0) {
+            // Read the whole log
+        }
+        log.flip();
+        
+        CRC32 crc = new CRC32();
+        int valid = 0;
+        while (log.remaining() >= FRAME_OVERHEAD) {
+            int start = log.position();
+            int bodySize = log.getInt();
+            if (bodySize < 2 || bodySize > log.remaining() - 4) {
+                break;
+            }
+            ByteBuffer body = log.slice(start + 4, bodySize);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != log.getInt(start + 4 + bodySize)) {
+                break;
+            }
+            
+            byte type = body.get();
+            String name = PlayerCodec.readName(body);
+            int length = FRAME_OVERHEAD + bodySize;
+            Entry previous = type == TYPE_PUT ? index.put(name, new Entry(start, length)) : index.remove(name);
+            liveBytes += (type == TYPE_PUT ? length : 0) - (previous != null ? previous.length : 0);
+            
+            log.position(start + length);
+            valid = log.position();
+        }
+        
+        if (valid < size) {
+            System.out.println("[Store] Truncating torn tail of " + LOG_FILE + " at byte " + valid);
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+}
@@ -0,0 +1,166 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import model.Item;
+import patterns.creational.ShopManager;
+import patterns.structural.ItemDecorator;
+
+/**
+ * Compact binary encoding of the shop's catalog and stock.
+ *
+ * Base catalog items are defined in code at startup, so they are stored as
+ * a fingerprint (name and price) that must still match on load. Decorated
+ * items the shop took in later are stored with {@link ItemCodec} and
+ * registered again, in the same order, so every catalog id comes back
+ * unchanged. Stock is stored as lists of catalog ids.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   u32 catalogSize
+ *   { u8 kind | kind 0: u8 nameLen | name (UTF-8) | i64 priceCents
+ *             | kind 1: itemCode } * catalogSize
+ *   u32 availableCount | u32 id... | u32 soldOutCount | u32 id...
+ * </pre>
+ */
+public final class ShopCodec {
+    private static final byte KIND_DEFINED = 0;
+    private static final byte KIND_DECORATED = 1;
+    
+    private ShopCodec() {
+    }
+    
+    /**
+     * Encodes the shop's catalog and stock.
+     * @param shop the shop to encode
+     * @return the encoded bytes
+     */
+    public static byte[] encode(ShopManager shop) {
+        int catalogSize = shop.getCatalogSize();
+        List<Item> available = shop.getAvailableItems();
+        List<Item> soldOut = shop.getSoldOutItems();
+        
+        List<Object> entries = new ArrayList<>(catalogSize);
+        int size = 4 + 4 + available.size() * 4 + 4 + soldOut.size() * 4;
+        for (int id = 0; id < catalogSize; id++) {
+            Item item = shop.getItemById(id);
+            int[] code = item instanceof ItemDecorator ? ItemCodec.encode(item, shop) : null;
+            if (code != null) {
+                entries.add(code);
+                size += 1 + ItemCodec.encodedSize(code);
+            } else {
+                byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+                if (name.length > 255) {
+                    throw new IllegalArgumentException("Item name too long to encode: " + item.getName());
+                }
+                entries.add(name);
+                size += 1 + 1 + name.length + 8;
+            }
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(catalogSize);
+        for (int id = 0; id < catalogSize; id++) {
+            Object entry = entries.get(id);
+            if (entry instanceof int[]) {
+                buffer.put(KIND_DECORATED);
+                ItemCodec.write(buffer, (int[]) entry);
+            } else {
+                buffer.put(KIND_DEFINED);
+                buffer.put((byte) ((byte[]) entry).length);
+                buffer.put((byte[]) entry);
+                buffer.putLong(Math.round(shop.getItemById(id).getPrice() * 100));
+            }
+        }
+        writeIds(buffer, available, shop);
+        writeIds(buffer, soldOut, shop);
+        return buffer.array();
+    }
+    
+    /**
+     * Restores a shop's catalog additions and stock from an encoding.
+     * Nothing changes if the code-defined catalog no longer matches.
+     * @param buffer the source buffer, positioned at the record start
+     * @param shop the shop to restore
+     * @throws IllegalArgumentException if the catalog does not match or an item cannot be decoded
+     */
+    public static void readInto(ByteBuffer buffer, ShopManager shop) {
+        int catalogSize = buffer.getInt();
+        List<Item> additions = new ArrayList<>();
+        for (int id = 0; id < catalogSize; id++) {
+            byte kind = buffer.get();
+            Item current = shop.getItemById(id);
+            if (kind == KIND_DEFINED) {
+                byte[] name = new byte[buffer.get() & 0xFF];
+                buffer.get(name);
+                long priceCents = buffer.getLong();
+                if (current == null || !current.getName().equals(new String(name, StandardCharsets.UTF_8))
+                        || Math.round(current.getPrice() * 100) != priceCents) {
+                    throw new IllegalArgumentException("Shop catalog changed at id " + id);
+                }
+            } else if (kind == KIND_DECORATED) {
+                int[] code = ItemCodec.read(buffer);
+                if (current == null) {
+                    Item item = ItemCodec.decode(code, shop);
+                    if (item == null || id != shop.getCatalogSize() + additions.size()) {
+                        throw new IllegalArgumentException("Cannot restore catalog item " + id);
+                    }
+                    additions.add(item);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown catalog entry kind " + kind);
+            }
+        }
+        
+        int[] available = readIds(buffer, catalogSize);
+        int[] soldOut = readIds(buffer, catalogSize);
+        
+        // Items added to the code-defined catalog since the encoding stay in stock
+        List<Item> newlyStocked = new ArrayList<>();
+        for (Item item : shop.getAvailableItems()) {
+            if (shop.getItemId(item) >= catalogSize) {
+                newlyStocked.add(item);
+            }
+        }
+        
+        // Everything decoded; now apply it
+        for (Item item : additions) {
+            shop.addToCatalog(item);
+        }
+        List<Item> stocked = resolve(available, shop);
+        stocked.addAll(newlyStocked);
+        shop.restoreStock(stocked, resolve(soldOut, shop));
+    }
+    
+    private static void writeIds(ByteBuffer buffer, List<Item> items, ShopManager shop) {
+        buffer.putInt(items.size());
+        for (Item item : items) {
+            buffer.putInt(shop.getItemId(item));
+        }
+    }
+    
+    private static int[] readIds(ByteBuffer buffer, int catalogSize) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new IllegalArgumentException("Invalid stock size: " + count);
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = buffer.getInt();
+            if (ids[i] < 0 || ids[i] >= catalogSize) {
+                throw new IllegalArgumentException("Unknown catalog id in stock: " + ids[i]);
+            }
+        }
+        return ids;
+    }
+    
+    private static List<Item> resolve(int[] ids, ShopManager shop) {
+        List<Item> items = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            items.add(shop.getItemById(id));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,384 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Player;
+import model.PlayerChangeListener;
+import patterns.behavioral.Command;
+import patterns.behavioral.CommandHistory;
+import patterns.behavioral.HistoryListener;
+import patterns.creational.ShopManager;
+
+/**
+ * Periodically snapshots tracked players so recovery only replays the
+ * journal tail.
+ *
+ * A snapshot is taken every N commands or every T seconds (whichever comes
+ * first, and only if something changed). Tracked players are also
+ * listened to directly, so a change made outside the history, such as a
+ * level change, is picked up by the next periodic snapshot. Each player is
+ * captured while
+ * holding its CommandHistory lock, together with the journal sequence
+ * number at that moment, so the snapshot and the journal agree exactly.
+ * After a snapshot is written, journal segments it fully covers are
+ * compacted away.
+ *
+ * Snapshots also carry the shop's catalog additions and stock (see
+ * ShopCodec), restored with {@link #restoreShop()}. Files are written with
+ * {@link AtomicSnapshotFile}, so a crash mid-write never damages an
+ * existing snapshot, and one that fails its checksums is skipped in favour
+ * of the previous one.
+ *
+ * Snapshot payload layout (big-endian):
+ * <pre>
+ *   u32 magic | u8 version | u32 shopLength | ShopCodec bytes | u32 playerCount
+ *   { u64 seq | u32 length | PlayerCodec bytes } * playerCount
+ * </pre>
+ * Version 1 files, written before checksums and the shop section, are
+ * still read.
+ *
+ * Compaction assumes every player written to the journal is tracked here.
+ */
+public class SnapshotManager implements HistoryListener, PlayerChangeListener, AutoCloseable {
+    private static final int MAGIC = 0x4C534E50; // "LSNP"
+    private static final byte VERSION = 2;
+    private static final byte LEGACY_VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int SNAPSHOTS_KEPT = 2;
+    
+    private final Path directory;
+    private final CommandJournal journal;
+    private final ShopManager shop;
+    private final int commandsPerSnapshot;
+    private final List<TrackedPlayer> tracked = new CopyOnWriteArrayList<>();
+    private final AtomicInteger commandsSinceSnapshot = new AtomicInteger();
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+    private final AtomicBoolean playersChanged = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    
+    /**
+     * A player whose state is snapshotted, with the history that serializes its mutations.
+     */
+    private static class TrackedPlayer {
+        final Player player;
+        final CommandHistory history;
+        
+        TrackedPlayer(Player player, CommandHistory history) {
+            this.player = player;
+            this.history = history;
+        }
+    }
+    
+    /**
+     * Creates a snapshot manager.
+     * @param directory directory holding the snapshot files
+     * @param journal the journal the snapshots are taken against
+     * @param shop the shop whose catalog identifies items
+     * @param commandsPerSnapshot snapshot after this many commands (N)
+     * @param secondsPerSnapshot snapshot at least this often when dirty (T)
+     * @throws IOException if the directory cannot be created
+     */
+    public SnapshotManager(Path directory, CommandJournal journal, ShopManager shop,
+                           int commandsPerSnapshot, long secondsPerSnapshot) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.journal = journal;
+        this.shop = shop;
+        this.commandsPerSnapshot = Math.max(1, commandsPerSnapshot);
+        
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            if (commandsSinceSnapshot.get() > 0 || playersChanged.get()) {
+                snapshotQuietly();
+            }
+        }, secondsPerSnapshot, secondsPerSnapshot, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Starts snapshotting a player. The manager listens to the history to
+     * count commands and locks it while capturing the player, and listens
+     * to the player for changes made outside the history.
+     * @param player the player to snapshot
+     * @param history the history all of the player's commands go through
+     */
+    public void track(Player player, CommandHistory history) {
+        tracked.add(new TrackedPlayer(player, history));
+        history.addHistoryListener(this);
+        player.addChangeListener(this);
+    }
+    
+    /**
+     * Restores a player from the newest readable snapshot holding it, then
+     * replays the journal records written after it.
+     * @param player the player to restore (matched by name)
+     * @return the number of journal records replayed
+     * @throws IOException if the journal cannot be read, or if no snapshot
+     *         holds the player and the journal no longer has its early records
+     */
+    public int restore(Player player) throws IOException {
+        long coveredSeq = -1;
+        List<Path> files = new ArrayList<>(listSnapshots().descendingMap().values());
+        
+        for (Path file : files) {
+            try {
+                long seq = loadPlayer(file, player);
+                if (seq >= 0) {
+                    coveredSeq = seq;
+                    System.out.println("[Snapshot] Restored " + player.getName() + " from "
+                                       + file.getFileName() + " (journal #" + seq + ")");
+                    break;
+                }
+                System.out.println("[Snapshot] " + player.getName() + " not in " + file.getFileName()
+                                   + ", trying older one");
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+                System.out.println("[Snapshot] Unreadable snapshot " + file.getFileName() + ", trying older one");
+            }
+        }
+        
+        if (coveredSeq < 0) {
+            // Without a snapshot the whole journal is needed; a compacted one would rebuild a partial player
+            if (journal.getFirstSeq() > 1) {
+                throw new IOException("No snapshot holds " + player.getName()
+                                      + " and the journal was compacted up to #" + (journal.getFirstSeq() - 1));
+            }
+            coveredSeq = 0;
+        }
+        return journal.replay(player, coveredSeq);
+    }
+    
+    /**
+     * Restores the shop's catalog additions and stock from the newest
+     * readable snapshot. Call before restoring players, once the
+     * code-defined catalog is in place.
+     * @return true if a snapshot with shop state was found and applied
+     * @throws IOException if the snapshot directory cannot be listed
+     */
+    public boolean restoreShop() throws IOException {
+        for (Path file : listSnapshots().descendingMap().values()) {
+            try {
+                ByteBuffer buffer = readSnapshot(file);
+                if (buffer.get() == LEGACY_VERSION) {
+                    return false; // Older snapshots never held shop state
+                }
+                int shopLength = buffer.getInt();
+                ShopCodec.readInto(buffer.slice(buffer.position(), shopLength), shop);
+                System.out.println("[Snapshot] Restored shop stock from " + file.getFileName());
+                return true;
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+                System.out.println("[Snapshot] Cannot restore shop from " + file.getFileName() + ": "
+                                   + e.getMessage());
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Writes a snapshot of every tracked player and compacts the journal.
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void snapshotNow() throws IOException {
+        if (tracked.isEmpty()) {
+            return;
+        }
+        commandsSinceSnapshot.set(0);
+        playersChanged.set(false);
+        
+        // Capture each player under its history lock so state and seq agree
+        List<byte[]> records = new ArrayList<>(tracked.size());
+        long[] seqs = new long[tracked.size()];
+        long minSeq = Long.MAX_VALUE;
+        long maxSeq = 0;
+        byte[] shopState = ShopCodec.encode(shop);
+        int size = 4 + 1 + 4 + shopState.length + 4;
+        for (int i = 0; i < tracked.size(); i++) {
+            TrackedPlayer entry = tracked.get(i);
+            synchronized (entry.history) {
+                seqs[i] = journal.getLastSeq();
+                records.add(PlayerCodec.encode(entry.player, shop));
+            }
+            minSeq = Math.min(minSeq, seqs[i]);
+            maxSeq = Math.max(maxSeq, seqs[i]);
+            size += 8 + 4 + records.get(i).length;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(shopState.length);
+        buffer.put(shopState);
+        buffer.putInt(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            buffer.putLong(seqs[i]);
+            buffer.putInt(records.get(i).length);
+            buffer.put(records.get(i));
+        }
+        buffer.flip();
+        
+        // Captured state may include queued records; never let a snapshot get ahead of the disk
+        journal.awaitDurable(maxSeq);
+        Path file = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, maxSeq, SNAPSHOT_SUFFIX));
+        AtomicSnapshotFile.write(file, buffer);
+        System.out.println("[Snapshot] Wrote " + file.getFileName() + " (" + size + " bytes, "
+                           + records.size() + " player(s))");
+        
+        // Keep a previous snapshot as a fallback, drop anything older
+        TreeMap<Long, Path> snapshots = listSnapshots();
+        while (snapshots.size() > SNAPSHOTS_KEPT) {
+            AtomicSnapshotFile.delete(snapshots.pollFirstEntry().getValue());
+        }
+        
+        journal.compact(minSeq);
+    }
+    
+    @Override
+    public void onPlayerChanged(Player player) {
+        playersChanged.set(true);
+    }
+    
+    @Override
+    public void onExecuted(Command command) {
+        countCommand();
+    }
+    
+    @Override
+    public void onUndone(Command command) {
+        countCommand();
+    }
+    
+    @Override
+    public void onRedone(Command command) {
+        countCommand();
+    }
+    
+    /**
+     * Counts a state change and queues a snapshot once N have accumulated.
+     * The snapshot runs on the scheduler thread, never on the caller, since
+     * the caller holds a history lock.
+     */
+    private void countCommand() {
+        if (commandsSinceSnapshot.incrementAndGet() >= commandsPerSnapshot
+                && snapshotQueued.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                snapshotQueued.set(false);
+                snapshotQuietly();
+            });
+        }
+    }
+    
+    private void snapshotQuietly() {
+        try {
+            snapshotNow();
+        } catch (IOException | RuntimeException e) {
+            // Also keeps a periodic task alive, which would otherwise stop on an exception
+            System.out.println("[Snapshot] Failed to write snapshot: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Stops periodic snapshots and writes a final one if anything changed.
+     * @throws IOException if the final snapshot cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (TrackedPlayer entry : tracked) {
+            entry.player.removeChangeListener(this);
+        }
+        if (commandsSinceSnapshot.get() > 0 || playersChanged.get()) {
+            snapshotNow();
+        }
+    }
+    
+    /**
+     * Loads one player's state from a snapshot file.
+     * @param file the snapshot file
+     * @param player the player to restore
+     * @return the journal seq the player's state covers, or -1 if the player is not in the file
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    private long loadPlayer(Path file, Player player) throws IOException {
+        ByteBuffer buffer = readSnapshot(file);
+        if (buffer.get() != LEGACY_VERSION) {
+            int shopLength = buffer.getInt();
+            buffer.position(buffer.position() + shopLength);
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            long seq = buffer.getLong();
+            int length = buffer.getInt();
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            buffer.position(buffer.position() + length);
+            
+            if (PlayerCodec.readName(record).equals(player.getName())) {
+                PlayerCodec.readState(record, player, shop);
+                return seq;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Reads a snapshot file, verifying its checksums unless it predates them
+     * and falling back to its previous copy if it is damaged.
+     * @param file the snapshot file
+     * @return the payload, positioned at the version byte
+     * @throws IOException if the file cannot be read, fails verification or is not a snapshot
+     */
+    private ByteBuffer readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = AtomicSnapshotFile.read(file, true);
+        if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        byte version = buffer.get(buffer.position());
+        if (version != VERSION && version != LEGACY_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + file);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Lists snapshot files by the journal seq they cover.
+     * @return the snapshot index
+     * @throws IOException if the directory cannot be listed
+     */
+    private TreeMap<Long, Path> listSnapshots() throws IOException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String number = name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length());
+                try {
+                    snapshots.put(Long.parseLong(number), file);
+                } catch (NumberFormatException e) {
+                    System.out.println("[Snapshot] Ignoring unexpected file " + name);
+                }
+            }
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Persistence for the shop system.
+ * Binary item, player and shop encodings, one-shot save files for many
+ * players, an autosaving player store, the write-ahead command journal and
+ * periodic snapshots, written atomically with checksums, used to restore
+ * player and shop state after a restart.
+ */
+package persistence;
@@ -0,0 +1,49 @@
+package ui;
+
+import model.Item;
+
+/**
+ * One backpack slot change reported by an onItemAdded or onItemRemoved
+ * event, queued by a panel until its next refresh.
+ */
+public final class BackpackDelta {
+    private final Item item;
+    private final int slot;
+    private final boolean added;
+    
+    /**
+     * Creates a delta.
+     * @param item the item that entered or left the slot
+     * @param slot the backpack index
+     * @param added true for an insertion, false for a removal
+     */
+    public BackpackDelta(Item item, int slot, boolean added) {
+        this.item = item;
+        this.slot = slot;
+        this.added = added;
+    }
+    
+    /**
+     * Returns the item that entered or left the slot.
+     * @return the item
+     */
+    public Item getItem() {
+        return item;
+    }
+    
+    /**
+     * Returns the backpack index: where the item now is, or where it was.
+     * @return the slot
+     */
+    public int getSlot() {
+        return slot;
+    }
+    
+    /**
+     * Returns whether the item was inserted rather than removed.
+     * @return true for an insertion
+     */
+    public boolean isAdded() {
+        return added;
+    }
+}
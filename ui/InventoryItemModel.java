@@ -0,0 +1,216 @@
+package ui;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import model.Inventory;
+import model.Item;
+
+/**
+ * Combo box model listing a player's backpack items followed by their
+ * equipped items.
+ *
+ * The model mirrors the inventory's two slot lists. {@link #sync()} diffs
+ * each list against the inventory by item identity and fires one
+ * interval event per run of added or removed slots, so a buy, sell, equip
+ * or upgrade touches only the rows that changed and the combo box never
+ * has to be emptied and refilled. The selected item is kept across syncs;
+ * if it leaves the inventory, the item that took its row is selected.
+ * Single backpack slot changes reported by observer events can be applied
+ * directly with {@link #applyBackpackDelta}, without reading the inventory.
+ * Used from the EDT.
+ */
+public class InventoryItemModel extends AbstractListModel<Item> implements ComboBoxModel<Item> {
+    private final Inventory inventory;
+    private final List<Item> backpack = new ArrayList<>();
+    private final List<Item> equipped = new ArrayList<>();
+    private Item selected;
+    
+    /**
+     * Creates a model showing the given inventory.
+     * @param inventory the inventory to mirror
+     */
+    public InventoryItemModel(Inventory inventory) {
+        this.inventory = inventory;
+        sync();
+    }
+    
+    /**
+     * Brings the model up to date with the inventory.
+     */
+    public void sync() {
+        List<Item> newBackpack;
+        List<Item> newEquipped;
+        synchronized (inventory) {
+            // Read both lists together so a moving item is never in neither or both
+            newBackpack = inventory.getBackpackItems();
+            newEquipped = inventory.getEquippedItems();
+        }
+        
+        int selectedIndex = indexOf(selected);
+        apply(backpack, newBackpack, 0);
+        apply(equipped, newEquipped, backpack.size());
+        
+        if (selected != null ? indexOf(selected) < 0 : getSize() > 0) {
+            int size = getSize();
+            setSelectedItem(size == 0 ? null : getElementAt(Math.min(Math.max(selectedIndex, 0), size - 1)));
+        }
+    }
+    
+    /**
+     * Applies one backpack slot change, firing a single-row event.
+     * @param delta the change
+     * @return false if the change does not fit the rows shown; nothing was changed then
+     */
+    public boolean applyBackpackDelta(BackpackDelta delta) {
+        int slot = delta.getSlot();
+        if (delta.isAdded()) {
+            if (slot < 0 || slot > backpack.size()) {
+                return false;
+            }
+            backpack.add(slot, delta.getItem());
+            fireIntervalAdded(this, slot, slot);
+            if (selected == null) {
+                setSelectedItem(delta.getItem());
+            }
+            return true;
+        }
+        
+        if (slot < 0 || slot >= backpack.size() || backpack.get(slot) != delta.getItem()) {
+            return false;
+        }
+        backpack.remove(slot);
+        fireIntervalRemoved(this, slot, slot);
+        if (selected == delta.getItem() && indexOf(selected) < 0) {
+            int size = getSize();
+            setSelectedItem(size == 0 ? null : getElementAt(Math.min(slot, size - 1)));
+        }
+        return true;
+    }
+    
+    /**
+     * Checks whether the rows shown are exactly the inventory's slots.
+     * @return true if both sections match the inventory by identity
+     */
+    public boolean matchesInventory() {
+        synchronized (inventory) {
+            return sameItems(backpack, inventory.getBackpackItems())
+                   && sameItems(equipped, inventory.getEquippedItems());
+        }
+    }
+    
+    private static boolean sameItems(List<Item> shown, List<Item> actual) {
+        if (shown.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < shown.size(); i++) {
+            if (shown.get(i) != actual.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Updates one section to match its new contents, firing events for
+     * the slots that changed.
+     * @param shown the section as currently shown
+     * @param target the section's new contents
+     * @param offset model index of the section's first slot
+     */
+    private void apply(List<Item> shown, List<Item> target, int offset) {
+        // Unchanged head and tail are skipped without events
+        int prefix = 0;
+        int limit = Math.min(shown.size(), target.size());
+        while (prefix < limit && shown.get(prefix) == target.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && shown.get(shown.size() - 1 - suffix) == target.get(target.size() - 1 - suffix)) {
+            suffix++;
+        }
+        int shownEnd = shown.size() - suffix;
+        int targetEnd = target.size() - suffix;
+        if (prefix == shownEnd && prefix == targetEnd) {
+            return;
+        }
+        
+        // Items still needed further on in the target, by identity
+        Map<Item, Integer> remaining = new IdentityHashMap<>();
+        for (int j = prefix; j < targetEnd; j++) {
+            remaining.merge(target.get(j), 1, Integer::sum);
+        }
+        
+        // Walk the changed middle: keep matches, drop slots whose item is
+        // no longer needed, insert the rest; each run fires one interval
+        int pos = prefix;
+        int j = prefix;
+        int end = shownEnd;
+        while (pos < end || j < targetEnd) {
+            if (pos < end && j < targetEnd && shown.get(pos) == target.get(j)) {
+                remaining.merge(target.get(j), -1, Integer::sum);
+                pos++;
+                j++;
+            } else if (pos < end && remaining.getOrDefault(shown.get(pos), 0) <= 0) {
+                int run = pos + 1;
+                while (run < end && remaining.getOrDefault(shown.get(run), 0) <= 0) {
+                    run++;
+                }
+                shown.subList(pos, run).clear();
+                end -= run - pos;
+                fireIntervalRemoved(this, offset + pos, offset + run - 1);
+            } else {
+                int start = pos;
+                do {
+                    Item item = target.get(j++);
+                    remaining.merge(item, -1, Integer::sum);
+                    shown.add(pos++, item);
+                    end++;
+                } while (j < targetEnd && (pos == end || (shown.get(pos) != target.get(j)
+                         && remaining.getOrDefault(shown.get(pos), 0) > 0)));
+                fireIntervalAdded(this, offset + start, offset + pos - 1);
+            }
+        }
+    }
+    
+    private int indexOf(Item item) {
+        for (int i = 0; i < backpack.size(); i++) {
+            if (backpack.get(i) == item) {
+                return i;
+            }
+        }
+        for (int i = 0; i < equipped.size(); i++) {
+            if (equipped.get(i) == item) {
+                return backpack.size() + i;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public int getSize() {
+        return backpack.size() + equipped.size();
+    }
+    
+    @Override
+    public Item getElementAt(int index) {
+        return index < backpack.size() ? backpack.get(index) : equipped.get(index - backpack.size());
+    }
+    
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item != selected) {
+            selected = (Item) item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+    
+    @Override
+    public Item getSelectedItem() {
+        return selected;
+    }
+}
@@ -1,7 +1,14 @@
 package ui;
 
 import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import model.*;
@@ -11,58 +18,88 @@ import patterns.structural.*;
 
 /**
  * Panel showing player's inventory with equip/unequip functionality.
+ *
+ * Each item in the inventory keeps one view (panel, button, listener)
+ * for as long as it stays in the inventory. A refresh reconciles the
+ * views against the model: views are matched to items by identity (the
+ * n-th copy of an item to its n-th view), moved between or within the
+ * sections only where the order differs, created for new items and
+ * dropped for items that left. Equipping an item therefore moves one
+ * existing component instead of rebuilding both sections.
+ *
+ * Buying or selling reports single backpack slots; those deltas are
+ * queued and applied to the backpack section directly, and a full
+ * reconcile only runs if they no longer line up with the inventory.
  */
-public class InventoryPanel extends JPanel implements ShopObserver {
+public class InventoryPanel extends JPanel implements ShopObserver, Refreshable {
     private Player player;
     private ShoppingFacade facade;
     private ShopObservable observable;
     private CommandHistory cmdHistory;
+    private OperationExecutor operations;
     private JPanel equippedPanel;
     private JPanel backpackPanel;
+    private JLabel equippedEmptyLabel;
+    private JLabel backpackEmptyLabel;
+    // Views currently shown, in component order
+    private List<ItemView> shownEquipped = new ArrayList<>();
+    private List<ItemView> shownBackpack = new ArrayList<>();
+    // Backpack slot changes reported since the last refresh, from any thread
+    private final ConcurrentLinkedQueue<BackpackDelta> pendingDeltas = new ConcurrentLinkedQueue<>();
     
-    public InventoryPanel(Player player, ShoppingFacade facade, ShopObservable observable, CommandHistory cmdHistory) {
+    /**
+     * The components showing one inventory item, reused while the item stays.
+     */
+    private class ItemView {
+        final Item item;
+        final JPanel panel;
+        
+        ItemView(Item item) {
+            this.item = item;
+            this.panel = createItemButton(item);
+        }
+    }
+    
+    public InventoryPanel(Player player, ShoppingFacade facade, ShopObservable observable,
+                          CommandHistory cmdHistory, OperationExecutor operations) {
         this.player = player;
         this.facade = facade;
         this.observable = observable;
         this.cmdHistory = cmdHistory;
+        this.operations = operations;
         
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
-        setBackground(new Color(35, 35, 40));
+        setBackground(Theme.PANEL_BACKGROUND);
         setBorder(new EmptyBorder(20, 20, 20, 20));
         
         // Equipped items section
         JLabel equippedTitle = new JLabel("EQUIPPED ITEMS");
-        equippedTitle.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        equippedTitle.setForeground(new Color(100, 220, 220));
+        equippedTitle.setFont(Theme.BOLD_18);
+        equippedTitle.setForeground(Theme.ACCENT_TEXT);
         equippedTitle.setAlignmentX(Component.LEFT_ALIGNMENT);
         
         equippedPanel = new JPanel();
         equippedPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 12, 12));
-        equippedPanel.setBackground(new Color(45, 45, 50));
-        equippedPanel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(0, 200, 200), 2),
-            BorderFactory.createEmptyBorder(10, 10, 10, 10)
-        ));
+        equippedPanel.setBackground(Theme.CARD_BACKGROUND);
+        equippedPanel.setBorder(Theme.SECTION_BORDER);
         equippedPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         equippedPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 220));
-        updateEquippedItems();
+        equippedEmptyLabel = createEmptyLabel("No items equipped");
         
         // Backpack section
         JLabel backpackTitle = new JLabel("BACKPACK");
-        backpackTitle.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        backpackTitle.setForeground(new Color(100, 220, 220));
+        backpackTitle.setFont(Theme.BOLD_18);
+        backpackTitle.setForeground(Theme.ACCENT_TEXT);
         backpackTitle.setAlignmentX(Component.LEFT_ALIGNMENT);
         
         backpackPanel = new JPanel();
         backpackPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 12, 12));
-        backpackPanel.setBackground(new Color(45, 45, 50));
-        backpackPanel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(0, 200, 200), 2),
-            BorderFactory.createEmptyBorder(10, 10, 10, 10)
-        ));
+        backpackPanel.setBackground(Theme.CARD_BACKGROUND);
+        backpackPanel.setBorder(Theme.SECTION_BORDER);
         backpackPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         backpackPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 300));
-        updateBackpackItems();
+        backpackEmptyLabel = createEmptyLabel("Backpack empty");
+        reconcile();
         
         add(equippedTitle);
         add(Box.createVerticalStrut(5));
@@ -75,72 +112,184 @@ public class InventoryPanel extends JPanel implements ShopObserver {
     }
     
     /**
-     * Updates the equipped items display.
+     * Brings both sections in line with the inventory, reusing every view
+     * whose item is still there.
      */
-    private void updateEquippedItems() {
-        equippedPanel.removeAll();
-        List<Item> equippedItems = player.getInventory().getEquippedItems();
+    private void reconcile() {
+        Inventory inventory = player.getInventory();
+        List<Item> equippedItems = inventory.getEquippedItems();
+        List<Item> backpackItems = inventory.getBackpackItems();
         
-        for (Item item : equippedItems) {
-            JPanel itemPanel = createItemButton(item, true);
-            equippedPanel.add(itemPanel);
-        }
+        // Pool the shown views by item, preferring a view already in the right section
+        Map<Item, Deque<ItemView>> equippedPool = pool(shownEquipped);
+        Map<Item, Deque<ItemView>> backpackPool = pool(shownBackpack);
+        List<ItemView> equipped = claim(equippedItems, equippedPool, backpackPool);
+        List<ItemView> backpack = claim(backpackItems, backpackPool, equippedPool);
         
-        if (equippedItems.isEmpty()) {
-            JLabel emptyLabel = new JLabel("No items equipped");
-            emptyLabel.setForeground(Color.GRAY);
-            equippedPanel.add(emptyLabel);
+        // Views left in the pools belong to items that left the inventory
+        boolean equippedChanged = sync(equippedPanel, equipped, equippedEmptyLabel);
+        boolean backpackChanged = sync(backpackPanel, backpack, backpackEmptyLabel);
+        shownEquipped = equipped;
+        shownBackpack = backpack;
+        
+        if (equippedChanged) {
+            equippedPanel.revalidate();
+            equippedPanel.repaint();
+        }
+        if (backpackChanged) {
+            backpackPanel.revalidate();
+            backpackPanel.repaint();
+        }
+    }
+    
+    /**
+     * Applies the queued backpack deltas to the backpack section.
+     * @return false if a delta did not fit the views shown or the result
+     *         differs from the inventory; the section must be reconciled then
+     */
+    private boolean applyDeltas() {
+        boolean changed = false;
+        BackpackDelta delta;
+        while ((delta = pendingDeltas.poll()) != null) {
+            int slot = delta.getSlot();
+            if (delta.isAdded()) {
+                if (slot < 0 || slot > shownBackpack.size()) {
+                    return false;
+                }
+                if (shownBackpack.isEmpty()) {
+                    backpackPanel.remove(backpackEmptyLabel);
+                }
+                ItemView view = new ItemView(delta.getItem());
+                shownBackpack.add(slot, view);
+                backpackPanel.add(view.panel, slot);
+            } else {
+                if (slot < 0 || slot >= shownBackpack.size() || shownBackpack.get(slot).item != delta.getItem()) {
+                    return false;
+                }
+                shownBackpack.remove(slot);
+                backpackPanel.remove(slot);
+                if (shownBackpack.isEmpty()) {
+                    backpackPanel.add(backpackEmptyLabel);
+                }
+            }
+            changed = true;
         }
         
-        equippedPanel.revalidate();
-        equippedPanel.repaint();
+        if (!backpackMatchesInventory()) {
+            return false;
+        }
+        if (changed) {
+            backpackPanel.revalidate();
+            backpackPanel.repaint();
+        }
+        return true;
     }
     
     /**
-     * Updates the backpack items display.
+     * Checks the backpack section against the inventory by identity; a
+     * delta can arrive after a reconcile already picked up its change.
      */
-    private void updateBackpackItems() {
-        backpackPanel.removeAll();
+    private boolean backpackMatchesInventory() {
         List<Item> backpackItems = player.getInventory().getBackpackItems();
-        
-        for (Item item : backpackItems) {
-            JPanel itemPanel = createItemButton(item, false);
-            backpackPanel.add(itemPanel);
+        if (backpackItems.size() != shownBackpack.size()) {
+            return false;
         }
-        
-        if (backpackItems.isEmpty()) {
-            JLabel emptyLabel = new JLabel("Backpack empty");
-            emptyLabel.setForeground(Color.GRAY);
-            backpackPanel.add(emptyLabel);
+        for (int i = 0; i < backpackItems.size(); i++) {
+            if (backpackItems.get(i) != shownBackpack.get(i).item) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static Map<Item, Deque<ItemView>> pool(List<ItemView> views) {
+        Map<Item, Deque<ItemView>> pool = new IdentityHashMap<>();
+        for (ItemView view : views) {
+            pool.computeIfAbsent(view.item, k -> new ArrayDeque<>()).add(view);
+        }
+        return pool;
+    }
+    
+    /**
+     * Picks a view for each item, taking existing ones from the pools
+     * before creating new ones.
+     */
+    private List<ItemView> claim(List<Item> items, Map<Item, Deque<ItemView>> preferred,
+                                 Map<Item, Deque<ItemView>> fallback) {
+        List<ItemView> views = new ArrayList<>(items.size());
+        for (Item item : items) {
+            ItemView view = take(preferred, item);
+            if (view == null) {
+                view = take(fallback, item);
+            }
+            views.add(view != null ? view : new ItemView(item));
+        }
+        return views;
+    }
+    
+    private static ItemView take(Map<Item, Deque<ItemView>> pool, Item item) {
+        Deque<ItemView> views = pool.get(item);
+        return views != null ? views.poll() : null;
+    }
+    
+    /**
+     * Makes a section show exactly the given views, in order, touching only
+     * the positions that differ.
+     * @return true if the section changed
+     */
+    private static boolean sync(JPanel section, List<ItemView> views, JLabel emptyLabel) {
+        boolean changed = false;
+        if (views.isEmpty()) {
+            if (section.getComponentCount() != 1 || section.getComponent(0) != emptyLabel) {
+                section.removeAll();
+                section.add(emptyLabel);
+                changed = true;
+            }
+            return changed;
         }
         
-        backpackPanel.revalidate();
-        backpackPanel.repaint();
+        for (int i = 0; i < views.size(); i++) {
+            JPanel panel = views.get(i).panel;
+            if (i < section.getComponentCount() && section.getComponent(i) == panel) {
+                continue;
+            }
+            section.add(panel, i); // Moves it if it is elsewhere in this or another section
+            changed = true;
+        }
+        while (section.getComponentCount() > views.size()) {
+            section.remove(section.getComponentCount() - 1);
+            changed = true;
+        }
+        return changed;
+    }
+    
+    private JLabel createEmptyLabel(String text) {
+        JLabel emptyLabel = new JLabel(text);
+        emptyLabel.setForeground(Color.GRAY);
+        return emptyLabel;
     }
     
     /**
      * Creates a panel with button for an inventory item.
      * @param item The item
-     * @param isEquipped Whether the item is currently equipped
      * @return JPanel containing item button
      */
-    private JPanel createItemButton(Item item, boolean isEquipped) {
+    private JPanel createItemButton(Item item) {
+        Theme.RarityStyle style = Theme.rarity(item.getRarity());
+        ItemRenderCache.Entry text = ItemRenderCache.get(item);
+        
         JPanel itemPanel = new JPanel();
         itemPanel.setLayout(new BoxLayout(itemPanel, BoxLayout.Y_AXIS));
-        itemPanel.setBackground(new Color(45, 45, 50));
-        itemPanel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(getRarityColor(item.getRarity()).darker(), 2),
-            BorderFactory.createEmptyBorder(5, 5, 5, 5)
-        ));
+        itemPanel.setBackground(Theme.CARD_BACKGROUND);
+        itemPanel.setBorder(style.getSlotBorder());
         
         // Main item button (equip/unequip)
-        JButton btn = new JButton("<html><center>" + item.getName() + 
-                                   "<br><small>" + item.getRarity() + "</small></center></html>");
-        btn.setBackground(getRarityColor(item.getRarity()));
+        JButton btn = new JButton(text.getButtonHtml());
+        btn.setBackground(style.getFill());
         btn.setForeground(Color.BLACK);
         btn.setFocusPainted(false);
-        btn.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        btn.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        btn.setCursor(Theme.HAND_CURSOR);
+        btn.setFont(Theme.BOLD_12);
         btn.setAlignmentX(Component.CENTER_ALIGNMENT);
         
         // Auto-adjust width based on text length
@@ -149,35 +298,48 @@ public class InventoryPanel extends JPanel implements ShopObserver {
         int buttonWidth = Math.max(110, textWidth + 45);
         btn.setPreferredSize(new Dimension(buttonWidth, 65));
         btn.setMaximumSize(new Dimension(buttonWidth, 65));
-        btn.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        btn.setBorder(Theme.SLOT_BUTTON_PADDING);
         
         // Add tooltip with stats
-        btn.setToolTipText(formatStatsTooltip(item));
+        btn.setToolTipText(text.getTooltip());
         
         // Unified mouse listener for all interactions
         btn.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
-                btn.setBackground(getRarityColor(item.getRarity()).brighter());
+                btn.setBackground(style.getFillHover());
             }
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                btn.setBackground(getRarityColor(item.getRarity()));
+                btn.setBackground(style.getFill());
             }
             public void mouseClicked(java.awt.event.MouseEvent evt) {
+                if (!btn.isEnabled()) {
+                    return; // Already working on this item
+                }
+                Callable<Void> task;
                 if (javax.swing.SwingUtilities.isLeftMouseButton(evt)) {
-                    // Left-click: equip/unequip - check actual current state
-                    boolean currentlyEquipped = player.getInventory().getEquippedItems().contains(item);
-                    if (currentlyEquipped) {
-                        UnequipCommand cmd = new UnequipCommand(player, item, observable);
-                        cmdHistory.executeCommand(cmd);
-                    } else {
-                        EquipCommand cmd = new EquipCommand(player, item, observable);
-                        cmdHistory.executeCommand(cmd);
-                    }
+                    // Left-click: equip/unequip - check actual current state once it runs
+                    task = () -> {
+                        boolean currentlyEquipped = player.getInventory().getEquippedItems().contains(item);
+                        if (currentlyEquipped) {
+                            cmdHistory.executeCommand(new UnequipCommand(player, item, observable));
+                        } else {
+                            cmdHistory.executeCommand(new EquipCommand(player, item, observable));
+                        }
+                        return null;
+                    };
                 } else if (javax.swing.SwingUtilities.isRightMouseButton(evt)) {
                     // Right-click: sell instantly
-                    Command sellCmd = new SellCommand(player, item, observable);
-                    cmdHistory.executeCommand(sellCmd);
+                    task = () -> {
+                        cmdHistory.executeCommand(new SellCommand(player, item, observable));
+                        return null;
+                    };
+                } else {
+                    return;
                 }
+                
+                // Show the button as pending until the worker is done with it
+                btn.setEnabled(false);
+                operations.submit(task).whenComplete((result, error) -> btn.setEnabled(true));
             }
         });
         
@@ -186,53 +348,36 @@ public class InventoryPanel extends JPanel implements ShopObserver {
         return itemPanel;
     }
     
-    /**
-     * Gets the color for a rarity.
-     * @param rarity The rarity string
-     * @return Color for the rarity
-     */
-    private Color getRarityColor(String rarity) {
-        switch(rarity.toUpperCase()) {
-            case "COMMON":
-                return new Color(120, 120, 120);
-            case "UNCOMMON":
-                return new Color(0, 180, 0);
-            case "RARE":
-                return new Color(0, 100, 255);
-            case "EPIC":
-                return new Color(160, 32, 240);
-            case "LEGENDARY":
-                return new Color(200, 180, 0);
-            default:
-                return Color.GRAY;
+    @Override
+    public void refresh(int dirtyFlags) {
+        if ((dirtyFlags & (RefreshScheduler.INVENTORY | RefreshScheduler.EQUIPMENT)) == 0
+                && applyDeltas()) {
+            return;
         }
+        pendingDeltas.clear(); // The reconcile reads the inventory itself
+        reconcile();
     }
     
-    /**
-     * Formats item stats for tooltip.
-     * @param item The item
-     * @return Formatted stats string
-     */
-    private String formatStatsTooltip(Item item) {
-        StringBuilder sb = new StringBuilder("<html>");
-        sb.append("<b>").append(item.getName()).append("</b><br>");
-        sb.append("Price: ").append(String.format("%.0f", item.getPrice())).append(" gold<br>");
-        sb.append("<br>Stats:<br>");
-        
-        item.getStats().forEach((stat, value) -> {
-            if (value != 0) {
-                sb.append(stat).append(": +").append(value).append("<br>");
-            }
-        });
-        
-        sb.append("</html>");
-        return sb.toString();
+    @Override
+    public void onItemAdded(Item item, Player player, int slot) {
+        pendingDeltas.add(new BackpackDelta(item, slot, true));
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onItemRemoved(Item item, Player player, int slot) {
+        pendingDeltas.add(new BackpackDelta(item, slot, false));
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onGoldDelta(Player player, double delta) {
+        // Not directly relevant
     }
     
     @Override
     public void onInventoryChanged(Player player) {
-        updateEquippedItems();
-        updateBackpackItems();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.INVENTORY);
     }
     
     @Override
@@ -247,14 +392,12 @@ public class InventoryPanel extends JPanel implements ShopObserver {
     
     @Override
     public void onItemEquipped(Item item, Player player) {
-        updateEquippedItems();
-        updateBackpackItems();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.EQUIPMENT);
     }
     
     @Override
     public void onItemUnequipped(Item item, Player player) {
-        updateEquippedItems();
-        updateBackpackItems();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.EQUIPMENT);
     }
 }
 
@@ -1,7 +1,6 @@
 package ui;
 
 import java.awt.*;
-import java.util.Map;
 import javax.swing.*;
 import model.*;
 import patterns.behavioral.*;
@@ -9,6 +8,9 @@ import patterns.structural.*;
 
 /**
  * Single item card with name, price, stats, and buy button.
+ *
+ * A card can be rebound to another item with {@link #bind(Item)}, which
+ * lets the shop grid recycle a small pool of cards while scrolling.
  */
 public class ItemCardPanel extends JPanel {
     private Item item;
@@ -16,7 +18,13 @@ public class ItemCardPanel extends JPanel {
     private ShoppingFacade facade;
     private ShopObservable observable;
     private CommandHistory cmdHistory;
+    private OperationExecutor operations;
+    private Item pendingItem; // Item whose purchase is still running
     private JButton buyButton;
+    private JLabel nameLabel;
+    private JLabel priceLabel;
+    private JLabel rarityLabel;
+    private JTextArea statsArea;
     
     /**
      * Creates an item card panel.
@@ -25,72 +33,65 @@ public class ItemCardPanel extends JPanel {
      * @param facade Shopping facade for operations
      * @param observable Observable for notifications
      * @param cmdHistory Command history for undo/redo
+     * @param operations Executor running purchases off the EDT
      */
-    public ItemCardPanel(Item item, Player player, ShoppingFacade facade, ShopObservable observable, CommandHistory cmdHistory) {
-        this.item = item;
+    public ItemCardPanel(Item item, Player player, ShoppingFacade facade, ShopObservable observable,
+                         CommandHistory cmdHistory, OperationExecutor operations) {
         this.player = player;
         this.facade = facade;
         this.observable = observable;
         this.cmdHistory = cmdHistory;
+        this.operations = operations;
         
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
-        setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(getRarityColor(item), 2),
-            BorderFactory.createEmptyBorder(8, 8, 8, 8)
-        ));
-        setBackground(new Color(45, 45, 50));
+        setBackground(Theme.CARD_BACKGROUND);
         setOpaque(true);
         setPreferredSize(new Dimension(260, 190));
         setMaximumSize(new Dimension(260, 190));
         
         // Create card components
-        JLabel nameLabel = new JLabel(item.getName());
-        nameLabel.setFont(new Font("Segoe UI", Font.BOLD, 15));
-        nameLabel.setForeground(getRarityColor(item));
+        nameLabel = new JLabel();
+        nameLabel.setFont(Theme.BOLD_15);
         nameLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
-        JLabel priceLabel = new JLabel(String.format("%.0f", item.getPrice()) + " gold");
-        priceLabel.setForeground(new Color(100, 220, 220));
-        priceLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        priceLabel = new JLabel();
+        priceLabel.setForeground(Theme.ACCENT_TEXT);
+        priceLabel.setFont(Theme.BOLD_13);
         priceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
-        JLabel rarityLabel = new JLabel("[" + item.getRarity() + "]");
-        rarityLabel.setForeground(getRarityColor(item));
-        rarityLabel.setFont(new Font("Segoe UI", Font.ITALIC, 11));
+        rarityLabel = new JLabel();
+        rarityLabel.setFont(Theme.ITALIC_11);
         rarityLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
-        JTextArea statsArea = new JTextArea(formatStats(item));
+        statsArea = new JTextArea();
         statsArea.setForeground(Color.LIGHT_GRAY);
-        statsArea.setBackground(new Color(40, 40, 40));
-        statsArea.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        statsArea.setBackground(Theme.DARK_BACKGROUND);
+        statsArea.setFont(Theme.MONO_11);
         statsArea.setEditable(false);
         statsArea.setLineWrap(true);
         statsArea.setWrapStyleWord(true);
         statsArea.setAlignmentX(Component.CENTER_ALIGNMENT);
         
         buyButton = new JButton("BUY");
-        buyButton.setBackground(new Color(0, 200, 200));
+        buyButton.setBackground(Theme.ACCENT);
         buyButton.setForeground(Color.BLACK);
         buyButton.setFocusPainted(false);
-        buyButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        buyButton.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        buyButton.setCursor(Theme.HAND_CURSOR);
+        buyButton.setFont(Theme.BOLD_13);
         buyButton.setAlignmentX(Component.CENTER_ALIGNMENT);
         buyButton.setMaximumSize(new Dimension(220, 35));
-        buyButton.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(0, 180, 180), 2),
-            BorderFactory.createEmptyBorder(5, 15, 5, 15)
-        ));
+        buyButton.setBorder(Theme.BUY_BUTTON_BORDER);
         
         // Add hover effect
         buyButton.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
                 if (buyButton.isEnabled()) {
-                    buyButton.setBackground(new Color(0, 220, 220));
+                    buyButton.setBackground(Theme.ACCENT_HOVER);
                 }
             }
             public void mouseExited(java.awt.event.MouseEvent evt) {
                 if (buyButton.isEnabled()) {
-                    buyButton.setBackground(new Color(0, 200, 200));
+                    buyButton.setBackground(Theme.ACCENT);
                 }
             }
         });
@@ -110,46 +111,101 @@ public class ItemCardPanel extends JPanel {
         add(buyButton);
         add(Box.createVerticalStrut(10));
         
-        updateButtonState();
+        bind(item);
     }
     
     /**
-     * Handles buy button click.
+     * Shows a different item on this card.
+     * @param item The item to display
      */
-    private void onBuyClick() {
-        // Validate purchase first
-        ValidationChain chain = new ValidationChain();
-        PurchaseRequest request = new PurchaseRequest(player, item);
+    public void bind(Item item) {
+        this.item = item;
+        Theme.RarityStyle style = Theme.rarity(item.getRarity());
+        ItemRenderCache.Entry text = ItemRenderCache.get(item);
         
-        if (!chain.validate(request)) {
-            JOptionPane.showMessageDialog(this,
-                "Cannot purchase " + item.getName() + "!\n" +
-                "Check: Sufficient gold, inventory space, level requirement.",
-                "Purchase Failed",
-                JOptionPane.WARNING_MESSAGE);
-            return;
-        }
+        setBorder(style.getCardBorder());
+        nameLabel.setText(item.getName());
+        nameLabel.setForeground(style.getText());
+        priceLabel.setText(text.getPriceText());
+        rarityLabel.setText("[" + item.getRarity() + "]");
+        rarityLabel.setForeground(style.getText());
+        statsArea.setText(text.getStatsText());
         
-        // Execute buy command
-        BuyCommand cmd = new BuyCommand(player, item, observable);
-        cmdHistory.executeCommand(cmd);
+        updateButtonState();
+    }
+    
+    /**
+     * Handles buy button click. Validation and the purchase run on the
+     * player's worker; the result is reported back on the EDT.
+     */
+    private void onBuyClick() {
+        Item target = item; // The card may be rebound before the purchase finishes
+        pendingItem = target;
+        updateButtonState();
         
-        JOptionPane.showMessageDialog(this,
-            "Successfully purchased " + item.getName() + "!",
-            "Purchase Successful",
-            JOptionPane.INFORMATION_MESSAGE);
+        operations.submit(() -> {
+            // Validate purchase first
+            ValidationChain chain = new ValidationChain();
+            PurchaseRequest request = new PurchaseRequest(player, target);
+            if (!chain.validate(request)) {
+                return false;
+            }
+            
+            // Execute buy command
+            BuyCommand cmd = new BuyCommand(player, target, observable);
+            cmdHistory.executeCommand(cmd);
+            return true;
+        }).whenComplete((purchased, error) -> {
+            if (pendingItem == target) {
+                pendingItem = null;
+            }
+            updateButtonState();
+            
+            if (error != null) {
+                JOptionPane.showMessageDialog(this,
+                    "Could not purchase " + target.getName() + ": " + error.getMessage(),
+                    "Purchase Failed",
+                    JOptionPane.ERROR_MESSAGE);
+            } else if (!purchased) {
+                JOptionPane.showMessageDialog(this,
+                    "Cannot purchase " + target.getName() + "!\n" +
+                    "Check: Sufficient gold, inventory space, level requirement.",
+                    "Purchase Failed",
+                    JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this,
+                    "Successfully purchased " + target.getName() + "!",
+                    "Purchase Successful",
+                    JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+    
+    /**
+     * Returns the item shown on this card.
+     * @return the item
+     */
+    public Item getItem() {
+        return item;
     }
     
     /**
      * Updates button state based on player gold and inventory.
      */
     public void updateButtonState() {
+        if (item == pendingItem) {
+            buyButton.setEnabled(false);
+            buyButton.setBackground(Theme.DISABLED);
+            buyButton.setText("BUYING...");
+            return;
+        }
+        
         boolean canAfford = player.getGold() >= item.getPrice();
         boolean hasSpace = player.getInventory().hasSpace();
         
         if (!canAfford || !hasSpace) {
             buyButton.setEnabled(false);
-            buyButton.setBackground(new Color(80, 80, 80));
+            buyButton.setBackground(Theme.DISABLED);
             if (!canAfford) {
                 buyButton.setText("TOO EXPENSIVE");
             } else {
@@ -157,51 +213,8 @@ public class ItemCardPanel extends JPanel {
             }
         } else {
             buyButton.setEnabled(true);
-            buyButton.setBackground(new Color(0, 200, 200));
+            buyButton.setBackground(Theme.ACCENT);
             buyButton.setText("BUY");
         }
     }
-    
-    /**
-     * Gets the color associated with item rarity.
-     * @param item The item
-     * @return Color for the rarity
-     */
-    private Color getRarityColor(Item item) {
-        switch(item.getRarity().toUpperCase()) {
-            case "COMMON":
-                return Color.WHITE;
-            case "UNCOMMON":
-                return new Color(0, 255, 0);
-            case "RARE":
-                return new Color(0, 100, 255);
-            case "EPIC":
-                return new Color(160, 32, 240);
-            case "LEGENDARY":
-                return Color.YELLOW;
-            default:
-                return Color.GRAY;
-        }
-    }
-    
-    /**
-     * Formats item stats for display.
-     * @param item The item
-     * @return Formatted stats string
-     */
-    private String formatStats(Item item) {
-        Map<String, Integer> stats = item.getStats();
-        StringBuilder sb = new StringBuilder();
-        
-        for (Map.Entry<String, Integer> entry : stats.entrySet()) {
-            if (entry.getValue() != 0) {
-                sb.append("+").append(entry.getValue())
-                  .append(" ").append(entry.getKey()).append("\n");
-            }
-        }
-        
-        return sb.toString().trim();
-    }
 }
-
-
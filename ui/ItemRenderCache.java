@@ -0,0 +1,104 @@
+package ui;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import model.Item;
+
+/**
+ * Pre-rendered display strings per item.
+ *
+ * Items are immutable, so the text shown for them (stat lines, tooltip
+ * HTML, button HTML, price) is built once per item and reused by every
+ * card and button that shows it. Entries are weakly keyed and disappear
+ * with their items. Used from the EDT.
+ */
+public final class ItemRenderCache {
+    private static final Map<Item, Entry> CACHE = new WeakHashMap<>();
+    
+    /**
+     * The cached strings for one item.
+     */
+    public static final class Entry {
+        private final String statsText;
+        private final String tooltip;
+        private final String buttonHtml;
+        private final String priceText;
+        private final String selectorText;
+        
+        Entry(Item item) {
+            StringBuilder stats = new StringBuilder();
+            StringBuilder tip = new StringBuilder("<html>");
+            tip.append("<b>").append(item.getName()).append("</b><br>");
+            tip.append("Price: ").append(String.format("%.0f", item.getPrice())).append(" gold<br>");
+            tip.append("<br>Stats:<br>");
+            
+            for (Map.Entry<String, Integer> entry : item.getStats().entrySet()) {
+                if (entry.getValue() != 0) {
+                    stats.append("+").append(entry.getValue())
+                         .append(" ").append(entry.getKey()).append("\n");
+                    tip.append(entry.getKey()).append(": +").append(entry.getValue()).append("<br>");
+                }
+            }
+            tip.append("</html>");
+            
+            this.statsText = stats.toString().trim();
+            this.tooltip = tip.toString();
+            this.buttonHtml = "<html><center>" + item.getName()
+                              + "<br><small>" + item.getRarity() + "</small></center></html>";
+            this.priceText = String.format("%.0f", item.getPrice()) + " gold";
+            this.selectorText = item.getName() + " [" + item.getRarity() + "]";
+        }
+        
+        /**
+         * Returns one "+N Stat" line per non-zero stat.
+         * @return the stat text
+         */
+        public String getStatsText() {
+            return statsText;
+        }
+        
+        /**
+         * Returns the HTML tooltip with name, price and stats.
+         * @return the tooltip
+         */
+        public String getTooltip() {
+            return tooltip;
+        }
+        
+        /**
+         * Returns the HTML label of an inventory button.
+         * @return the button text
+         */
+        public String getButtonHtml() {
+            return buttonHtml;
+        }
+        
+        /**
+         * Returns the price label, e.g. "600 gold".
+         * @return the price text
+         */
+        public String getPriceText() {
+            return priceText;
+        }
+        
+        /**
+         * Returns the item selector label, e.g. "Iron Sword [COMMON]".
+         * @return the selector text
+         */
+        public String getSelectorText() {
+            return selectorText;
+        }
+    }
+    
+    private ItemRenderCache() {
+    }
+    
+    /**
+     * Returns the cached strings for an item, rendering them on first use.
+     * @param item the item
+     * @return the cache entry
+     */
+    public static synchronized Entry get(Item item) {
+        return CACHE.computeIfAbsent(item, Entry::new);
+    }
+}
@@ -1,44 +1,85 @@
 package ui;
 
 import java.awt.*;
-import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import model.*;
 import patterns.behavioral.*;
 import patterns.creational.ShopManager;
 
 /**
  * Panel displaying event log for shop transactions.
+ *
+ * Log lines go into a fixed-capacity ring buffer, so the log never grows
+ * past its capacity however long the session runs. Logging is safe from
+ * any thread and never touches Swing: the first line logged after a flush
+ * starts a one-shot timer, and when it fires on the EDT all lines logged
+ * since are appended to the text area in one edit, the oldest lines are
+ * trimmed and the view scrolls once. If more lines arrived than the ring
+ * holds, the document is simply replaced with the ring's contents.
  */
 public class LogPanel extends JPanel implements ShopObserver {
+    public static final int DEFAULT_CAPACITY = 500;
+    public static final int FLUSH_MILLIS = 100;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    
     private JTextArea logTextArea;
-    private List<String> events;
-    private SimpleDateFormat dateFormat;
+    private final Timer flushTimer;
+    private final int capacity;
+    
+    // Ring of the newest lines, guarded by itself
+    private final String[] lines;
+    private int head;
+    private int size;
+    private long written;        // Lines ever logged
+    private long flushed;        // Lines already in the document
+    private boolean resync;      // Document must be rebuilt from the ring
+    private boolean flushScheduled;
+    
+    private int documentLines;   // Only touched on the EDT
     
     /**
-     * Creates the log panel.
+     * Creates the log panel with the default capacity.
      */
     public LogPanel() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates the log panel.
+     * @param capacity maximum number of lines kept
+     */
+    public LogPanel(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Log capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.lines = new String[capacity];
+        
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createTitledBorder(
-            BorderFactory.createLineBorder(new Color(0, 220, 120), 2),
+            BorderFactory.createLineBorder(Theme.LOG_BORDER, 2),
             "Event Log",
             0,
             0,
-            new Font("Segoe UI", Font.BOLD, 13),
-            new Color(100, 220, 220)
+            Theme.BOLD_13,
+            Theme.ACCENT_TEXT
         ));
         setPreferredSize(new Dimension(0, 160));
-        setBackground(new Color(25, 25, 30));
+        setBackground(Theme.LOG_BACKGROUND);
         
         logTextArea = new JTextArea();
         logTextArea.setEditable(false);
-        logTextArea.setBackground(new Color(25, 25, 30));
-        logTextArea.setForeground(new Color(120, 255, 140));
-        logTextArea.setFont(new Font("Consolas", Font.PLAIN, 12));
+        logTextArea.setBackground(Theme.LOG_BACKGROUND);
+        logTextArea.setForeground(Theme.LOG_TEXT);
+        logTextArea.setFont(Theme.LOG_FONT);
         logTextArea.setLineWrap(true);
         logTextArea.setWrapStyleWord(true);
         
@@ -47,26 +88,91 @@ public class LogPanel extends JPanel implements ShopObserver {
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
         
-        events = new ArrayList<>();
-        dateFormat = new SimpleDateFormat("HH:mm:ss");
+        flushTimer = new Timer(FLUSH_MILLIS, e -> flush());
+        flushTimer.setRepeats(false);
+        flushTimer.setCoalesce(false); // Never drop a firing, see RefreshScheduler
         
         addLog("System initialized. Welcome to the League of Legends Shop!");
     }
     
     /**
-     * Adds a log message.
+     * Adds a log message. Safe to call from any thread.
      * @param message The message to log
      */
-    private void addLog(String message) {
-        String timestamp = dateFormat.format(new Date());
-        String logEntry = "[" + timestamp + "] " + message;
-        events.add(logEntry);
-        logTextArea.append(logEntry + "\n");
+    public void addLog(String message) {
+        String logEntry = "[" + TIME_FORMAT.format(LocalTime.now()) + "] " + message;
         
-        // Auto-scroll to bottom
+        synchronized (lines) {
+            lines[(head + size) % capacity] = logEntry;
+            if (size < capacity) {
+                size++;
+            } else {
+                head = (head + 1) % capacity; // Overwrite the oldest line
+            }
+            written++;
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        flushTimer.restart();
+    }
+    
+    /**
+     * Moves the lines logged since the last flush into the text area.
+     * Runs on the EDT.
+     */
+    private void flush() {
+        StringBuilder text = new StringBuilder();
+        int newLines;
+        boolean rebuild;
+        
+        synchronized (lines) {
+            flushScheduled = false;
+            long unflushed = written - flushed;
+            rebuild = resync || unflushed > size;
+            newLines = rebuild ? size : (int) unflushed;
+            for (int i = size - newLines; i < size; i++) {
+                text.append(lines[(head + i) % capacity]).append('\n');
+            }
+            flushed = written;
+            resync = false;
+        }
+        
+        if (rebuild) {
+            logTextArea.setText(text.toString());
+            documentLines = newLines;
+        } else if (newLines > 0) {
+            logTextArea.append(text.toString());
+            documentLines += newLines;
+            trimDocument();
+        } else {
+            return;
+        }
+        
+        // Auto-scroll to bottom, once per batch
         logTextArea.setCaretPosition(logTextArea.getDocument().getLength());
     }
     
+    /**
+     * Removes the oldest lines from the text area so it holds no more than
+     * the ring's capacity.
+     */
+    private void trimDocument() {
+        int excess = documentLines - capacity;
+        if (excess <= 0) {
+            return;
+        }
+        Document document = logTextArea.getDocument();
+        Element root = document.getDefaultRootElement();
+        try {
+            document.remove(0, root.getElement(excess - 1).getEndOffset());
+            documentLines = capacity;
+        } catch (BadLocationException e) {
+            System.out.println("[Log] Could not trim log: " + e.getMessage());
+        }
+    }
+    
     @Override
     public void onPlayerGoldChanged(Player player) {
         addLog("Gold changed -> " + String.format("%.0f", player.getGold()) + " gold");
@@ -94,20 +200,65 @@ public class LogPanel extends JPanel implements ShopObserver {
         addLog("Unequipped: " + item.getName() + " [" + item.getRarity() + "]");
     }
     
+    @Override
+    public void onItemAdded(Item item, Player player, int slot) {
+        addLog("Added to backpack: " + item.getName() + " (slot " + (slot + 1) + ")");
+    }
+    
+    @Override
+    public void onItemRemoved(Item item, Player player, int slot) {
+        addLog("Removed from backpack: " + item.getName() + " (slot " + (slot + 1) + ")");
+    }
+    
+    @Override
+    public void onGoldDelta(Player player, double delta) {
+        addLog("Gold changed -> " + String.format("%.0f", player.getGold()) + " gold ("
+               + String.format("%+.0f", delta) + ")");
+    }
+    
+    @Override
+    public void onItemsReplaced(Player player, int itemCount, double goldDelta) {
+        addLog("Replaced " + itemCount + " backpack items -> " + String.format("%.0f", player.getGold())
+               + " gold (" + String.format("%+.0f", goldDelta) + ")");
+    }
+    
+    @Override
+    public void onCatalogStockChanged(Item item, ShopManager shop, boolean available) {
+        addLog(item.getName() + (available ? " is back in stock" : " is sold out"));
+    }
+    
     /**
-     * Gets all logged events.
+     * Gets the logged events still held by the ring, oldest first.
      * @return List of event strings
      */
     public List<String> getEvents() {
-        return new ArrayList<>(events);
+        synchronized (lines) {
+            List<String> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                events.add(lines[(head + i) % capacity]);
+            }
+            return events;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of lines the log keeps.
+     * @return the ring capacity
+     */
+    public int getCapacity() {
+        return capacity;
     }
     
     /**
-     * Clears the event log.
+     * Clears the event log. Safe to call from any thread.
      */
     public void clearLog() {
-        events.clear();
-        logTextArea.setText("");
+        synchronized (lines) {
+            Arrays.fill(lines, null);
+            head = 0;
+            size = 0;
+            resync = true;
+        }
         addLog("Event log cleared.");
     }
 }
@@ -4,6 +4,7 @@ import java.awt.*;
 import javax.swing.*;
 import model.*;
 import patterns.behavioral.*;
+import patterns.creational.ShopManager;
 import patterns.structural.*;
 
 /**
@@ -14,6 +15,7 @@ public class MainFrame extends JFrame {
     private ShoppingFacade facade;
     private ShopObservable observable;
     private CommandHistory cmdHistory;
+    private OperationExecutor operations;
     
     private JTabbedPane tabbedPane;
     private ShopPanel shopPanel;
@@ -23,14 +25,35 @@ public class MainFrame extends JFrame {
     private LogPanel logPanel;
     
     public MainFrame(Player player, ShoppingFacade facade) {
+        this(player, facade, new CommandHistory());
+    }
+    
+    /**
+     * Creates the main window around an existing command history, e.g. one
+     * that is already wired to the command journal.
+     * @param player the player
+     * @param facade shopping facade for operations
+     * @param cmdHistory command history for undo/redo
+     */
+    public MainFrame(Player player, ShoppingFacade facade, CommandHistory cmdHistory) {
         this.player = player;
         this.facade = facade;
-        this.observable = new ShopObservable();
-        this.cmdHistory = new CommandHistory();
+        // Panels that blow the latency budget are moved to a later EDT turn;
+        // -Dshop.dispatcher=ring hands events to consumer threads instead
+        this.observable = new ShopObservable(ShopObservable.configuredDispatcher(
+            () -> new SynchronousDispatcher(ObserverStats.DEFAULT_BUDGET_NANOS, SwingUtilities::invokeLater)));
+        this.cmdHistory = cmdHistory;
+        this.operations = new OperationExecutor(player, cmdHistory);
         
         // Setup frame properties
         setTitle("League of Legends - Shop System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent evt) {
+                operations.close(); // Let queued operations finish before exiting
+                observable.printLatencyReport();
+            }
+        });
         setSize(1400, 850);
         setLocationRelativeTo(null);
         setResizable(true);
@@ -47,7 +70,7 @@ public class MainFrame extends JFrame {
     private void initComponents() {
         // Set main layout
         setLayout(new BorderLayout());
-        getContentPane().setBackground(new Color(20, 20, 20));
+        getContentPane().setBackground(Theme.FRAME_BACKGROUND);
         
         // Create top panel with player stats
         JPanel topPanel = createTopPanel();
@@ -55,13 +78,13 @@ public class MainFrame extends JFrame {
         
         // Create tabbed pane with 3 tabs
         tabbedPane = new JTabbedPane();
-        tabbedPane.setBackground(new Color(30, 30, 30));
-        tabbedPane.setForeground(new Color(0, 200, 200));
-        tabbedPane.setFont(new Font("Arial", Font.BOLD, 14));
+        tabbedPane.setBackground(Theme.HEADER_BACKGROUND);
+        tabbedPane.setForeground(Theme.ACCENT);
+        tabbedPane.setFont(Theme.HEADER_14);
         
-        shopPanel = new ShopPanel(player, facade, observable, cmdHistory);
-        inventoryPanel = new InventoryPanel(player, facade, observable, cmdHistory);
-        upgradesPanel = new UpgradesPanel(player, facade, observable, cmdHistory);
+        shopPanel = new ShopPanel(player, facade, observable, cmdHistory, operations);
+        inventoryPanel = new InventoryPanel(player, facade, observable, cmdHistory, operations);
+        upgradesPanel = new UpgradesPanel(player, facade, observable, cmdHistory, operations);
         
         tabbedPane.addTab("SHOP", shopPanel);
         tabbedPane.addTab("INVENTORY", inventoryPanel);
@@ -73,12 +96,19 @@ public class MainFrame extends JFrame {
         logPanel = new LogPanel();
         add(logPanel, BorderLayout.SOUTH);
         
-        // Register observers
-        observable.registerObserver(shopPanel);
-        observable.registerObserver(inventoryPanel);
-        observable.registerObserver(upgradesPanel);
-        observable.registerObserver(statsPanel);
-        observable.registerObserver(logPanel);
+        // Register observers for the topics they display; the frame keeps them alive
+        observable.registerObserver(shopPanel, true,
+            ShopEvent.Topic.GOLD, ShopEvent.Topic.INVENTORY, ShopEvent.Topic.SHOP);
+        observable.registerObserver(inventoryPanel, true,
+            ShopEvent.Topic.INVENTORY, ShopEvent.Topic.EQUIPMENT);
+        observable.registerObserver(upgradesPanel, true,
+            ShopEvent.Topic.GOLD, ShopEvent.Topic.INVENTORY, ShopEvent.Topic.EQUIPMENT);
+        observable.registerObserver(statsPanel, true,
+            ShopEvent.Topic.GOLD, ShopEvent.Topic.INVENTORY);
+        observable.registerObserver(logPanel, true);
+        
+        // Purchases, sales and restocks reach the panels as stock events
+        ShopManager.getInstance().addStockListener(observable);
     }
     
     /**
@@ -88,11 +118,11 @@ public class MainFrame extends JFrame {
     private JPanel createTopPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BorderLayout());
-        panel.setBackground(new Color(30, 30, 30));
-        panel.setBorder(BorderFactory.createMatteBorder(0, 0, 2, 0, new Color(0, 200, 200)));
+        panel.setBackground(Theme.HEADER_BACKGROUND);
+        panel.setBorder(BorderFactory.createMatteBorder(0, 0, 2, 0, Theme.ACCENT));
         
         // Create stats panel with command history
-        statsPanel = new PlayerStatsPanel(player, cmdHistory);
+        statsPanel = new PlayerStatsPanel(player, cmdHistory, operations);
         panel.add(statsPanel, BorderLayout.CENTER);
         
         return panel;
@@ -106,6 +136,14 @@ public class MainFrame extends JFrame {
         return observable;
     }
     
+    /**
+     * Gets the executor that runs UI operations off the EDT.
+     * @return The OperationExecutor instance
+     */
+    public OperationExecutor getOperations() {
+        return operations;
+    }
+    
     /**
      * Gets the command history for undo/redo operations.
      * @return The CommandHistory instance
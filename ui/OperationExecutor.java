@@ -0,0 +1,141 @@
+package ui;
+
+import engine.PlayerCommandExecutor;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntConsumer;
+import javax.swing.SwingUtilities;
+import model.Player;
+import patterns.behavioral.Command;
+import patterns.behavioral.CommandHistory;
+
+/**
+ * Runs shop operations for the UI's player on a worker thread.
+ *
+ * Tasks go through the player's PlayerCommandExecutor mailbox, so they run
+ * one at a time in click order while the EDT stays free. The returned
+ * futures complete on the EDT, which lets callers update components and
+ * show dialogs from their completion handlers. Observer notifications
+ * raised by the commands already reach the panels safely: panels only
+ * mark themselves dirty and redraw on the EDT via RefreshScheduler.
+ *
+ * Submitting never blocks the EDT; when the mailbox is full the future
+ * fails with a RejectedExecutionException instead.
+ */
+public class OperationExecutor implements AutoCloseable {
+    private final Player player;
+    private final CommandHistory history;
+    private final PlayerCommandExecutor executor;
+    private final List<IntConsumer> pendingListeners = new CopyOnWriteArrayList<>();
+    private int pendingCount; // Only touched on the EDT
+    
+    /**
+     * Creates an executor for a player.
+     * @param player the player all operations act on
+     * @param history the player's command history
+     */
+    public OperationExecutor(Player player, CommandHistory history) {
+        this.player = player;
+        this.history = history;
+        // A zero offer timeout turns a full mailbox into a rejection instead of a stall
+        this.executor = new PlayerCommandExecutor(PlayerCommandExecutor.DEFAULT_MAILBOX_CAPACITY, 0);
+    }
+    
+    /**
+     * Registers a listener told, on the EDT, whenever the number of
+     * operations in flight changes.
+     * @param listener receives the new pending count
+     */
+    public void addPendingListener(IntConsumer listener) {
+        pendingListeners.add(listener);
+    }
+    
+    /**
+     * Returns the number of operations submitted but not yet completed.
+     * Call on the EDT.
+     * @return pending operation count
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+    
+    /**
+     * Runs a task on the player's worker. Call on the EDT.
+     * @param task the task to run
+     * @param <T> the task result type
+     * @return a future completed on the EDT with the task's result or failure
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        setPending(pendingCount + 1);
+        
+        try {
+            executor.submit(player, task).whenComplete((value, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    setPending(pendingCount - 1);
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                }));
+        } catch (RejectedExecutionException e) {
+            System.out.println("[UI] Operation rejected: " + e.getMessage());
+            setPending(pendingCount - 1);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+    
+    /**
+     * Executes a command through the history on the player's worker.
+     * @param command the command to execute
+     * @return a future completed on the EDT once the command has run
+     */
+    public CompletableFuture<Void> execute(Command command) {
+        return submit(() -> {
+            history.executeCommand(command);
+            return null;
+        });
+    }
+    
+    /**
+     * Undoes the most recent command on the player's worker.
+     * @return a future completed on the EDT once the undo has run
+     */
+    public CompletableFuture<Void> undo() {
+        return submit(() -> {
+            history.undo();
+            return null;
+        });
+    }
+    
+    /**
+     * Redoes the most recently undone command on the player's worker.
+     * @return a future completed on the EDT once the redo has run
+     */
+    public CompletableFuture<Void> redo() {
+        return submit(() -> {
+            history.redo();
+            return null;
+        });
+    }
+    
+    /**
+     * Stops accepting operations and waits for queued ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+    
+    private void setPending(int count) {
+        pendingCount = count;
+        for (IntConsumer listener : pendingListeners) {
+            listener.accept(count);
+        }
+    }
+}
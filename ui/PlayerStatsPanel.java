@@ -1,6 +1,8 @@
 package ui;
 
 import java.awt.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
 import javax.swing.*;
 import model.*;
 import patterns.behavioral.*;
@@ -8,39 +10,52 @@ import patterns.creational.ShopManager;
 
 /**
  * Panel displaying player statistics and undo/redo buttons.
+ *
+ * Gold and item count deltas from observer events are summed until the
+ * next refresh and added to the values shown, without reading the player.
  */
-public class PlayerStatsPanel extends JPanel implements ShopObserver {
+public class PlayerStatsPanel extends JPanel implements ShopObserver, Refreshable {
     private Player player;
     private CommandHistory cmdHistory;
+    private OperationExecutor operations;
     private JLabel nameLabel;
     private JLabel levelLabel;
     private JLabel goldLabel;
     private JLabel inventoryLabel;
     private JButton undoButton;
+    private JLabel busyLabel;
+    // Values shown in the labels, updated on the EDT
+    private double shownGold;
+    private int shownItems;
+    // Changes reported since the last refresh, from any thread
+    private final DoubleAdder pendingGold = new DoubleAdder();
+    private final AtomicInteger pendingItems = new AtomicInteger();
     
-    public PlayerStatsPanel(Player player, CommandHistory cmdHistory) {
+    public PlayerStatsPanel(Player player, CommandHistory cmdHistory, OperationExecutor operations) {
         this.player = player;
         this.cmdHistory = cmdHistory;
+        this.operations = operations;
         setLayout(new FlowLayout(FlowLayout.LEFT, 20, 10));
-        setBackground(new Color(30, 30, 30));
+        setBackground(Theme.HEADER_BACKGROUND);
         
         // Player name and level
         nameLabel = new JLabel("Player: " + player.getName() + " (Lvl " + player.getLevel() + ")");
-        nameLabel.setFont(new Font("Segoe UI", Font.BOLD, 15));
-        nameLabel.setForeground(new Color(100, 220, 220));
+        nameLabel.setFont(Theme.BOLD_15);
+        nameLabel.setForeground(Theme.ACCENT_TEXT);
         
         // Gold display
-        goldLabel = new JLabel("Gold: " + String.format("%.0f", player.getGold()));
-        goldLabel.setFont(new Font("Segoe UI", Font.BOLD, 15));
-        goldLabel.setForeground(new Color(100, 220, 220));
+        shownGold = player.getGold();
+        goldLabel = new JLabel("Gold: " + String.format("%.0f", shownGold));
+        goldLabel.setFont(Theme.BOLD_15);
+        goldLabel.setForeground(Theme.ACCENT_TEXT);
         
         // Inventory status
         int backpackSize = player.getInventory().getBackpackItems().size();
         int equippedSize = player.getInventory().getEquippedItems().size();
-        int totalItems = backpackSize + equippedSize;
-        inventoryLabel = new JLabel("Inventory: " + totalItems + "/6");
-        inventoryLabel.setFont(new Font("Segoe UI", Font.BOLD, 15));
-        inventoryLabel.setForeground(new Color(100, 220, 220));
+        shownItems = backpackSize + equippedSize;
+        inventoryLabel = new JLabel("Inventory: " + shownItems + "/6");
+        inventoryLabel.setFont(Theme.BOLD_15);
+        inventoryLabel.setForeground(Theme.ACCENT_TEXT);
         
         // Add components with separators
         add(nameLabel);
@@ -52,34 +67,39 @@ public class PlayerStatsPanel extends JPanel implements ShopObserver {
         
         // Undo button
         undoButton = new JButton("UNDO");
-        undoButton.setFont(new Font("Segoe UI", Font.BOLD, 12));
-        undoButton.setBackground(new Color(80, 80, 100));
-        undoButton.setForeground(new Color(40, 40, 40));
+        undoButton.setFont(Theme.BOLD_12);
+        undoButton.setBackground(Theme.UNDO_BACKGROUND);
+        undoButton.setForeground(Theme.DARK_BACKGROUND);
         undoButton.setFocusPainted(false);
-        undoButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        undoButton.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(100, 100, 120), 1),
-            BorderFactory.createEmptyBorder(5, 10, 5, 10)
-        ));
+        undoButton.setCursor(Theme.HAND_CURSOR);
+        undoButton.setBorder(Theme.UNDO_BUTTON_BORDER);
         undoButton.addActionListener(e -> {
             if (cmdHistory.canUndo()) {
-                cmdHistory.undo();
-                updateButtonStates();
+                undoButton.setEnabled(false);
+                operations.undo().whenComplete((result, error) -> updateButtonStates());
             }
         });
         undoButton.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
                 if (undoButton.isEnabled()) {
-                    undoButton.setBackground(new Color(100, 100, 120));
+                    undoButton.setBackground(Theme.UNDO_HOVER);
                 }
             }
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                undoButton.setBackground(new Color(80, 80, 100));
+                undoButton.setBackground(Theme.UNDO_BACKGROUND);
             }
         });
         
         add(undoButton);
         
+        // Shown while operations are running on the worker
+        busyLabel = new JLabel("Working...");
+        busyLabel.setFont(Theme.ITALIC_13);
+        busyLabel.setForeground(Theme.BUSY_TEXT);
+        busyLabel.setVisible(false);
+        add(busyLabel);
+        operations.addPendingListener(count -> busyLabel.setVisible(count > 0));
+        
         updateButtonStates();
     }
     
@@ -90,9 +110,9 @@ public class PlayerStatsPanel extends JPanel implements ShopObserver {
         undoButton.setEnabled(cmdHistory.canUndo());
         
         if (!undoButton.isEnabled()) {
-            undoButton.setBackground(new Color(50, 50, 60));
+            undoButton.setBackground(Theme.UNDO_DISABLED);
         } else {
-            undoButton.setBackground(new Color(80, 80, 100));
+            undoButton.setBackground(Theme.UNDO_BACKGROUND);
         }
     }
     
@@ -103,23 +123,71 @@ public class PlayerStatsPanel extends JPanel implements ShopObserver {
     private JComponent createSeparator() {
         JSeparator sep = new JSeparator(JSeparator.VERTICAL);
         sep.setPreferredSize(new Dimension(2, 20));
-        sep.setForeground(new Color(0, 200, 200));
+        sep.setForeground(Theme.ACCENT);
         return sep;
     }
     
     @Override
-    public void onPlayerGoldChanged(Player player) {
-        goldLabel.setText("Gold: " + String.format("%.0f", player.getGold()));
+    public void refresh(int dirtyFlags) {
+        if ((dirtyFlags & RefreshScheduler.GOLD) != 0) {
+            pendingGold.reset(); // Re-read below, so queued deltas are already in it
+            shownGold = player.getGold();
+            goldLabel.setText("Gold: " + String.format("%.0f", shownGold));
+        } else if ((dirtyFlags & RefreshScheduler.DELTAS) != 0) {
+            double delta = pendingGold.sumThenReset();
+            if (delta != 0) {
+                shownGold += delta;
+                goldLabel.setText("Gold: " + String.format("%.0f", shownGold));
+            }
+        }
+        if ((dirtyFlags & RefreshScheduler.INVENTORY) != 0) {
+            pendingItems.set(0);
+            int backpackSize = player.getInventory().getBackpackItems().size();
+            int equippedSize = player.getInventory().getEquippedItems().size();
+            shownItems = backpackSize + equippedSize;
+            inventoryLabel.setText("Inventory: " + shownItems + "/6");
+        } else if ((dirtyFlags & RefreshScheduler.DELTAS) != 0) {
+            int delta = pendingItems.getAndSet(0);
+            if (delta != 0) {
+                shownItems += delta;
+                inventoryLabel.setText("Inventory: " + shownItems + "/6");
+            }
+        }
         updateButtonStates();
     }
     
+    @Override
+    public void onPlayerGoldChanged(Player player) {
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.GOLD);
+    }
+    
     @Override
     public void onInventoryChanged(Player player) {
-        int backpackSize = player.getInventory().getBackpackItems().size();
-        int equippedSize = player.getInventory().getEquippedItems().size();
-        int totalItems = backpackSize + equippedSize;
-        inventoryLabel.setText("Inventory: " + totalItems + "/6");
-        updateButtonStates();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.INVENTORY);
+    }
+    
+    @Override
+    public void onGoldDelta(Player player, double delta) {
+        pendingGold.add(delta);
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onItemAdded(Item item, Player player, int slot) {
+        pendingItems.incrementAndGet();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onItemRemoved(Item item, Player player, int slot) {
+        pendingItems.decrementAndGet();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onItemsReplaced(Player player, int itemCount, double goldDelta) {
+        // Items are swapped in place, so only the gold changes
+        onGoldDelta(player, goldDelta);
     }
     
     @Override
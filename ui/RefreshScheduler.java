@@ -0,0 +1,106 @@
+package ui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.Timer;
+
+/**
+ * Coalesces observer events into at most one refresh per component per frame.
+ *
+ * Observer callbacks only raise dirty flags here, from any thread. The
+ * first flag raised in a frame starts a one-shot Swing timer; when it
+ * fires on the EDT, every component with pending flags gets a single
+ * refresh call with all of them OR-ed together. A burst of commands
+ * between two frames therefore costs one redraw per panel, however many
+ * events it produced.
+ */
+public class RefreshScheduler {
+    public static final int GOLD = 1;
+    public static final int INVENTORY = 1 << 1;
+    public static final int EQUIPMENT = 1 << 2;
+    public static final int SHOP = 1 << 3;
+    public static final int STOCK = 1 << 4;
+    public static final int DELTAS = 1 << 5; // The component queued incremental changes of its own
+    public static final int DEFAULT_FRAME_MILLIS = 16;
+    
+    private static RefreshScheduler instance;
+    
+    private final Map<Refreshable, Integer> pending = new LinkedHashMap<>();
+    private final Timer timer;
+    private boolean scheduled; // Guarded by pending
+    private long frameCount;
+    
+    /**
+     * Creates a scheduler.
+     * @param frameMillis delay between the first dirty flag and the refresh
+     */
+    public RefreshScheduler(int frameMillis) {
+        this.timer = new Timer(frameMillis, e -> runFrame());
+        this.timer.setRepeats(false);
+        // A coalescing timer drops a firing that lands while the previous
+        // frame is still running, which would leave scheduled stuck at true
+        this.timer.setCoalesce(false);
+    }
+    
+    /**
+     * Returns the shared scheduler used by the shop panels.
+     * @return the scheduler instance
+     */
+    public static synchronized RefreshScheduler getInstance() {
+        if (instance == null) {
+            instance = new RefreshScheduler(DEFAULT_FRAME_MILLIS);
+        }
+        return instance;
+    }
+    
+    /**
+     * Marks part of a component as stale. Safe to call from any thread.
+     * @param target the component to refresh
+     * @param flags the dirty flags to raise
+     */
+    public void markDirty(Refreshable target, int flags) {
+        synchronized (pending) {
+            pending.merge(target, flags, (a, b) -> a | b);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        timer.restart();
+    }
+    
+    /**
+     * Returns how many frames have been refreshed so far.
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        synchronized (pending) {
+            return frameCount;
+        }
+    }
+    
+    /**
+     * Refreshes every dirty component once. Runs on the EDT.
+     */
+    private void runFrame() {
+        Map<Refreshable, Integer> frame;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            frame = new LinkedHashMap<>(pending);
+            pending.clear();
+            scheduled = false;
+            frameCount++;
+        }
+        
+        for (Map.Entry<Refreshable, Integer> entry : frame.entrySet()) {
+            try {
+                entry.getKey().refresh(entry.getValue());
+            } catch (RuntimeException e) {
+                System.out.println("[Refresh] " + entry.getKey().getClass().getSimpleName()
+                                   + " failed to refresh: " + e);
+            }
+        }
+    }
+}
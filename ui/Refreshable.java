@@ -0,0 +1,13 @@
+package ui;
+
+/**
+ * A component whose display is brought up to date by the RefreshScheduler.
+ */
+public interface Refreshable {
+    /**
+     * Redraws whatever the accumulated dirty flags cover. Always called on
+     * the event dispatch thread, at most once per frame.
+     * @param dirtyFlags the RefreshScheduler flags raised since the last refresh
+     */
+    void refresh(int dirtyFlags);
+}
@@ -3,8 +3,9 @@ package ui;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.*;
-import javax.swing.border.EmptyBorder;
 import model.*;
 import patterns.behavioral.*;
 import patterns.creational.ShopManager;
@@ -12,83 +13,119 @@ import patterns.structural.*;
 
 /**
  * Panel displaying available shop items.
+ *
+ * Items are shown in a VirtualItemGrid, so only the cards in view exist
+ * and a refresh touches just those. A stock change edits the shown item
+ * list in place instead of reloading the whole catalog.
  */
-public class ShopPanel extends JPanel implements ShopObserver {
+public class ShopPanel extends JPanel implements ShopObserver, Refreshable {
     private Player player;
     private ShoppingFacade facade;
     private ShopObservable observable;
     private CommandHistory cmdHistory;
-    private JPanel itemsGridPanel;
-    private List<ItemCardPanel> itemCards;
+    private VirtualItemGrid itemsGrid;
+    private final List<Item> shownItems = new ArrayList<>();
+    private final Queue<ShopEvent> pendingStock = new ConcurrentLinkedQueue<>();
     
-    public ShopPanel(Player player, ShoppingFacade facade, ShopObservable observable, CommandHistory cmdHistory) {
+    public ShopPanel(Player player, ShoppingFacade facade, ShopObservable observable, CommandHistory cmdHistory,
+                     OperationExecutor operations) {
         this.player = player;
         this.facade = facade;
         this.observable = observable;
         this.cmdHistory = cmdHistory;
         
         setLayout(new BorderLayout());
-        setBackground(new Color(40, 40, 40));
+        setBackground(Theme.DARK_BACKGROUND);
         setBorder(BorderFactory.createTitledBorder(
-            BorderFactory.createLineBorder(new Color(0, 200, 200), 2),
+            BorderFactory.createLineBorder(Theme.ACCENT, 2),
             "Available Items",
             0,
             0,
-            new Font("Arial", Font.BOLD, 16),
-            new Color(0, 200, 200)
+            Theme.HEADER_16,
+            Theme.ACCENT
         ));
         
-        // Create scroll pane with grid
-        itemsGridPanel = new JPanel(new GridLayout(0, 4, 15, 15));
-        itemsGridPanel.setBackground(new Color(35, 35, 40));
-        itemsGridPanel.setBorder(new EmptyBorder(15, 15, 15, 15));
+        // Create scroll pane with a virtualized grid of pooled cards
+        itemsGrid = new VirtualItemGrid(item -> new ItemCardPanel(item, player, facade, observable, cmdHistory, operations));
+        itemsGrid.setBackground(Theme.PANEL_BACKGROUND);
         
-        itemCards = new ArrayList<>();
+        shownItems.addAll(ShopManager.getInstance().getAvailableItems());
+        itemsGrid.setItems(shownItems);
         
-        // Get items from shop and create cards
-        ShopManager shop = ShopManager.getInstance();
-        for (Item item : shop.getAvailableItems()) {
-            ItemCardPanel card = new ItemCardPanel(item, player, facade, observable, cmdHistory);
-            itemCards.add(card);
-            itemsGridPanel.add(card);
-        }
-        
-        JScrollPane scrollPane = new JScrollPane(itemsGridPanel);
+        JScrollPane scrollPane = new JScrollPane(itemsGrid);
         scrollPane.setBorder(null);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         add(scrollPane, BorderLayout.CENTER);
     }
     
     @Override
-    public void onPlayerGoldChanged(Player player) {
-        // Update card availability based on gold
-        for (ItemCardPanel card : itemCards) {
-            card.updateButtonState();
+    public void refresh(int dirtyFlags) {
+        boolean itemsChanged = false;
+        
+        if ((dirtyFlags & RefreshScheduler.SHOP) != 0) {
+            pendingStock.clear();
+            shownItems.clear();
+            shownItems.addAll(ShopManager.getInstance().getAvailableItems());
+            itemsChanged = true;
+        } else {
+            ShopEvent change;
+            while ((change = pendingStock.poll()) != null) {
+                itemsChanged |= applyStockChange(change.getItem(), change.isAvailable());
+            }
+        }
+        
+        if (itemsChanged) {
+            itemsGrid.setItems(shownItems); // Rebinds the visible cards
+        }
+        // Gold and free space only matter to the cards in view
+        itemsGrid.updateVisibleCards();
+    }
+    
+    /**
+     * Adds or removes a single catalog item from the shown list.
+     * @param item the item whose stock changed
+     * @param available true if the item is now in stock
+     * @return true if the list changed
+     */
+    private boolean applyStockChange(Item item, boolean available) {
+        int index = -1;
+        for (int i = 0; i < shownItems.size(); i++) {
+            if (shownItems.get(i) == item) {
+                index = i;
+                break;
+            }
+        }
+        
+        if (available && index < 0) {
+            shownItems.add(item); // Restocked items go to the end of the shop's list
+            return true;
+        }
+        if (!available && index >= 0) {
+            shownItems.remove(index);
+            return true;
         }
+        return false;
+    }
+    
+    @Override
+    public void onPlayerGoldChanged(Player player) {
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.GOLD);
     }
     
     @Override
     public void onInventoryChanged(Player player) {
-        // Update card availability based on inventory space
-        for (ItemCardPanel card : itemCards) {
-            card.updateButtonState();
-        }
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.INVENTORY);
     }
     
     @Override
     public void onShopInventoryChanged(ShopManager shop) {
-        // Refresh all item cards
-        itemsGridPanel.removeAll();
-        itemCards.clear();
-        
-        for (Item item : shop.getAvailableItems()) {
-            ItemCardPanel card = new ItemCardPanel(item, player, facade, observable, cmdHistory);
-            itemCards.add(card);
-            itemsGridPanel.add(card);
-        }
-        
-        itemsGridPanel.revalidate();
-        itemsGridPanel.repaint();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.SHOP);
+    }
+    
+    @Override
+    public void onCatalogStockChanged(Item item, ShopManager shop, boolean available) {
+        pendingStock.add(ShopEvent.stockChanged(shop, item, available));
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.STOCK);
     }
     
     @Override
@@ -0,0 +1,178 @@
+package ui;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Font;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.BorderFactory;
+import javax.swing.border.Border;
+
+/**
+ * Shared colors, fonts, borders and cursors for the shop UI.
+ *
+ * Every component takes its styling from these constants instead of
+ * allocating its own, so building a card, refreshing a button or handling
+ * a hover reuses the same objects. Rarity styling is a table lookup; the
+ * raw rarity strings are normalized once and cached.
+ */
+public final class Theme {
+    // Backgrounds
+    public static final Color FRAME_BACKGROUND = new Color(20, 20, 20);
+    public static final Color LOG_BACKGROUND = new Color(25, 25, 30);
+    public static final Color HEADER_BACKGROUND = new Color(30, 30, 30);
+    public static final Color PANEL_BACKGROUND = new Color(35, 35, 40);
+    public static final Color DARK_BACKGROUND = new Color(40, 40, 40);
+    public static final Color CARD_BACKGROUND = new Color(45, 45, 50);
+    public static final Color MUTED_BACKGROUND = new Color(60, 60, 60);
+    public static final Color LIGHT_BACKGROUND = new Color(200, 200, 200);
+    
+    // Accents and text
+    public static final Color ACCENT = new Color(0, 200, 200);
+    public static final Color ACCENT_HOVER = new Color(0, 220, 220);
+    public static final Color ACCENT_BORDER = new Color(0, 180, 180);
+    public static final Color ACCENT_TEXT = new Color(100, 220, 220);
+    public static final Color LIGHT_TEXT = new Color(220, 220, 220);
+    public static final Color BUSY_TEXT = new Color(200, 200, 120);
+    public static final Color LOG_TEXT = new Color(120, 255, 140);
+    public static final Color LOG_BORDER = new Color(0, 220, 120);
+    public static final Color DISABLED = new Color(80, 80, 80);
+    public static final Color DANGER = new Color(150, 0, 0);
+    
+    // Undo button
+    public static final Color UNDO_BACKGROUND = new Color(80, 80, 100);
+    public static final Color UNDO_HOVER = new Color(100, 100, 120);
+    public static final Color UNDO_DISABLED = new Color(50, 50, 60);
+    
+    // Fonts
+    public static final Font BOLD_12 = new Font("Segoe UI", Font.BOLD, 12);
+    public static final Font BOLD_13 = new Font("Segoe UI", Font.BOLD, 13);
+    public static final Font BOLD_15 = new Font("Segoe UI", Font.BOLD, 15);
+    public static final Font BOLD_18 = new Font("Segoe UI", Font.BOLD, 18);
+    public static final Font BOLD_22 = new Font("Segoe UI", Font.BOLD, 22);
+    public static final Font PLAIN_14 = new Font("Segoe UI", Font.PLAIN, 14);
+    public static final Font ITALIC_11 = new Font("Segoe UI", Font.ITALIC, 11);
+    public static final Font ITALIC_13 = new Font("Segoe UI", Font.ITALIC, 13);
+    public static final Font HEADER_14 = new Font("Arial", Font.BOLD, 14);
+    public static final Font HEADER_16 = new Font("Arial", Font.BOLD, 16);
+    public static final Font NOTE_12 = new Font("Arial", Font.ITALIC, 12);
+    public static final Font MONO_11 = new Font("Monospaced", Font.PLAIN, 11);
+    public static final Font LOG_FONT = new Font("Consolas", Font.PLAIN, 12);
+    
+    public static final Cursor HAND_CURSOR = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+    
+    // Borders
+    public static final Border SECTION_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(ACCENT, 2),
+        BorderFactory.createEmptyBorder(10, 10, 10, 10)
+    );
+    public static final Border BUY_BUTTON_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(ACCENT_BORDER, 2),
+        BorderFactory.createEmptyBorder(5, 15, 5, 15)
+    );
+    public static final Border UPGRADE_BUTTON_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(ACCENT_BORDER, 2),
+        BorderFactory.createEmptyBorder(8, 20, 8, 20)
+    );
+    public static final Border UNDO_BUTTON_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(UNDO_HOVER, 1),
+        BorderFactory.createEmptyBorder(5, 10, 5, 10)
+    );
+    public static final Border SLOT_BUTTON_PADDING = BorderFactory.createEmptyBorder(5, 10, 5, 10);
+    
+    /**
+     * How one rarity is drawn: text color on shop cards, fill color on
+     * inventory buttons, and the borders and hover color derived from them.
+     */
+    public static final class RarityStyle {
+        private final Color text;
+        private final Color fill;
+        private final Color fillHover;
+        private final Border cardBorder;
+        private final Border slotBorder;
+        
+        RarityStyle(Color text, Color fill) {
+            this.text = text;
+            this.fill = fill;
+            this.fillHover = fill.brighter();
+            this.cardBorder = BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(text, 2),
+                BorderFactory.createEmptyBorder(8, 8, 8, 8)
+            );
+            this.slotBorder = BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(fill.darker(), 2),
+                BorderFactory.createEmptyBorder(5, 5, 5, 5)
+            );
+        }
+        
+        /**
+         * Returns the text color used on shop cards.
+         * @return the color
+         */
+        public Color getText() {
+            return text;
+        }
+        
+        /**
+         * Returns the button fill used in the inventory.
+         * @return the color
+         */
+        public Color getFill() {
+            return fill;
+        }
+        
+        /**
+         * Returns the inventory button fill while hovered.
+         * @return the color
+         */
+        public Color getFillHover() {
+            return fillHover;
+        }
+        
+        /**
+         * Returns the border of a shop card.
+         * @return the border
+         */
+        public Border getCardBorder() {
+            return cardBorder;
+        }
+        
+        /**
+         * Returns the border around an inventory button.
+         * @return the border
+         */
+        public Border getSlotBorder() {
+            return slotBorder;
+        }
+    }
+    
+    private static final Map<String, RarityStyle> RARITIES = new HashMap<>();
+    private static final RarityStyle UNKNOWN_RARITY = new RarityStyle(Color.GRAY, Color.GRAY);
+    private static final Map<String, RarityStyle> RARITY_CACHE = new ConcurrentHashMap<>();
+    
+    static {
+        RARITIES.put("COMMON", new RarityStyle(Color.WHITE, new Color(120, 120, 120)));
+        RARITIES.put("UNCOMMON", new RarityStyle(new Color(0, 255, 0), new Color(0, 180, 0)));
+        RARITIES.put("RARE", new RarityStyle(new Color(0, 100, 255), new Color(0, 100, 255)));
+        RARITIES.put("EPIC", new RarityStyle(new Color(160, 32, 240), new Color(160, 32, 240)));
+        RARITIES.put("LEGENDARY", new RarityStyle(Color.YELLOW, new Color(200, 180, 0)));
+    }
+    
+    private Theme() {
+    }
+    
+    /**
+     * Looks up the style of a rarity, ignoring case.
+     * @param rarity the item's rarity string
+     * @return the style, grey for unknown rarities
+     */
+    public static RarityStyle rarity(String rarity) {
+        if (rarity == null) {
+            return UNKNOWN_RARITY;
+        }
+        return RARITY_CACHE.computeIfAbsent(rarity,
+            r -> RARITIES.getOrDefault(r.toUpperCase(Locale.ROOT), UNKNOWN_RARITY));
+    }
+}
@@ -1,7 +1,9 @@
 package ui;
 
 import java.awt.*;
-import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import model.*;
@@ -12,30 +14,41 @@ import patterns.structural.*;
 /**
  * Panel for upgrading items with decorators.
  * Allows selecting items and applying various enhancements.
+ *
+ * Backpack slot deltas from observer events are applied to the item
+ * model row by row, and a gold change only re-checks affordability
+ * against the cost already shown.
  */
-public class UpgradesPanel extends JPanel implements ShopObserver {
+public class UpgradesPanel extends JPanel implements ShopObserver, Refreshable {
     private Player player;
     private ShoppingFacade facade;
     private ShopObservable observable;
     private CommandHistory cmdHistory;
+    private OperationExecutor operations;
+    private boolean upgrading; // An upgrade is running on the worker
     
-    private JComboBox<ItemWrapper> itemSelector;
-    private JCheckBox attackBoostCB;
-    private JCheckBox defenseBoostCB;
-    private JCheckBox healthBoostCB;
-    private JComboBox<String> elementalCombo;
+    private InventoryItemModel itemModel;
+    private JComboBox<Item> itemSelector;
+    private JCheckBox[] upgradeBoxes; // Indexed by catalog upgrade
     private JButton upgradeButton;
+    private JButton upgradeAllButton;
     private JLabel costLabel;
+    private JTextArea previewArea;
+    private final UpgradePreviewEngine previews = new UpgradePreviewEngine();
+    private double shownCost; // Cost of the selected upgrades, as shown
+    // Backpack slot changes reported since the last refresh, from any thread
+    private final ConcurrentLinkedQueue<BackpackDelta> pendingDeltas = new ConcurrentLinkedQueue<>();
     
     /**
-     * Wrapper class to display items in combo box.
+     * Renders items by their cached selector text, and "No items" when
+     * the inventory is empty.
      */
-    private static class ItemWrapper {
-        Item item;
-        ItemWrapper(Item item) { this.item = item; }
+    private static class ItemRenderer extends DefaultListCellRenderer {
         @Override
-        public String toString() { 
-            return item != null ? item.getName() + " [" + item.getRarity() + "]" : "No items"; 
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            String text = value != null ? ItemRenderCache.get((Item) value).getSelectorText() : "No items";
+            return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
         }
     }
     
@@ -45,114 +58,123 @@ public class UpgradesPanel extends JPanel implements ShopObserver {
      * @param facade Shopping facade for operations
      * @param observable Observable for notifications
      * @param cmdHistory Command history for undo/redo
+     * @param operations Executor running upgrades off the EDT
      */
-    public UpgradesPanel(Player player, ShoppingFacade facade, ShopObservable observable, CommandHistory cmdHistory) {
+    public UpgradesPanel(Player player, ShoppingFacade facade, ShopObservable observable,
+                         CommandHistory cmdHistory, OperationExecutor operations) {
         this.player = player;
         this.facade = facade;
         this.observable = observable;
         this.cmdHistory = cmdHistory;
+        this.operations = operations;
         
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
         setBorder(new EmptyBorder(25, 25, 25, 25));
-        setBackground(new Color(35, 35, 40));
+        setBackground(Theme.PANEL_BACKGROUND);
         
         // Title
         JLabel titleLabel = new JLabel("ITEM UPGRADES");
-        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
-        titleLabel.setForeground(new Color(100, 220, 220));
+        titleLabel.setFont(Theme.BOLD_22);
+        titleLabel.setForeground(Theme.ACCENT_TEXT);
         titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
         // Item selector
         JLabel selectLabel = new JLabel("Select item to upgrade:");
-        selectLabel.setForeground(new Color(100, 220, 220));
-        selectLabel.setFont(new Font("Segoe UI", Font.BOLD, 15));
+        selectLabel.setForeground(Theme.ACCENT_TEXT);
+        selectLabel.setFont(Theme.BOLD_15);
         selectLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        itemSelector = new JComboBox<>();
+        itemModel = new InventoryItemModel(player.getInventory());
+        itemSelector = new JComboBox<>(itemModel);
+        itemSelector.setRenderer(new ItemRenderer());
         itemSelector.setMaximumSize(new Dimension(400, 30));
         itemSelector.setAlignmentX(Component.LEFT_ALIGNMENT);
-        itemSelector.setBackground(new Color(200, 200, 200));
+        itemSelector.setBackground(Theme.LIGHT_BACKGROUND);
         itemSelector.setForeground(Color.BLACK);
-        updateItemList();
         itemSelector.addActionListener(e -> updateUpgradeOptions());
         
         // Upgrade options
         JLabel upgradesLabel = new JLabel("Available upgrades:");
-        upgradesLabel.setForeground(new Color(0, 200, 200));
-        upgradesLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        upgradesLabel.setForeground(Theme.ACCENT);
+        upgradesLabel.setFont(Theme.HEADER_14);
         upgradesLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        attackBoostCB = new JCheckBox("Attack Boost (+15 ATK, 300 gold)");
-        attackBoostCB.setBackground(new Color(35, 35, 40));
-        attackBoostCB.setForeground(new Color(220, 220, 220));
-        attackBoostCB.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        attackBoostCB.setAlignmentX(Component.LEFT_ALIGNMENT);
-        attackBoostCB.addActionListener(e -> updateUpgradeOptions());
-        
-        defenseBoostCB = new JCheckBox("Defense Boost (+20 DEF, 400 gold)");
-        defenseBoostCB.setBackground(new Color(35, 35, 40));
-        defenseBoostCB.setForeground(new Color(220, 220, 220));
-        defenseBoostCB.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        defenseBoostCB.setAlignmentX(Component.LEFT_ALIGNMENT);
-        defenseBoostCB.addActionListener(e -> updateUpgradeOptions());
-        
-        healthBoostCB = new JCheckBox("Health Boost (+50 HP, 200 gold)");
-        healthBoostCB.setBackground(new Color(35, 35, 40));
-        healthBoostCB.setForeground(new Color(220, 220, 220));
-        healthBoostCB.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        healthBoostCB.setAlignmentX(Component.LEFT_ALIGNMENT);
-        healthBoostCB.addActionListener(e -> updateUpgradeOptions());
+        // One checkbox per upgrade in the catalog
+        UpgradeCatalog catalog = previews.getCatalog();
+        upgradeBoxes = new JCheckBox[catalog.size()];
+        for (int i = 0; i < catalog.size(); i++) {
+            String effect = catalog.isElemental(i)
+                ? "+" + catalog.getAmount(i) + " " + catalog.getStat(i)
+                : "+" + catalog.getAmount(i) + " " + catalog.getTag(i);
+            JCheckBox box = new JCheckBox(catalog.getLabel(i) + " (" + effect + ", "
+                                          + String.format("%.0f", catalog.getCost(i)) + " gold)");
+            box.setBackground(Theme.PANEL_BACKGROUND);
+            box.setForeground(Theme.LIGHT_TEXT);
+            box.setFont(Theme.PLAIN_14);
+            box.setAlignmentX(Component.LEFT_ALIGNMENT);
+            box.addActionListener(e -> updateUpgradeOptions());
+            upgradeBoxes[i] = box;
+        }
         
-        // Note: Elemental enchantments temporarily disabled
-        JLabel elementalLabel = new JLabel("(Elemental enchantments coming soon!)");
-        elementalLabel.setForeground(Color.GRAY);
-        elementalLabel.setFont(new Font("Arial", Font.ITALIC, 12));
+        JLabel elementalLabel = new JLabel("Elemental enchantments:");
+        elementalLabel.setForeground(Theme.ACCENT);
+        elementalLabel.setFont(Theme.HEADER_14);
         elementalLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        /*
-        elementalCombo = new JComboBox<>(new String[]{"None", "Fire", "Ice", "Lightning"});
-        elementalCombo.setMaximumSize(new Dimension(200, 30));
-        elementalCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
-        elementalCombo.setBackground(new Color(60, 60, 60));
-        elementalCombo.setForeground(Color.BLACK);
-        elementalCombo.addActionListener(e -> updateUpgradeOptions());
-        */
-        
         // Cost and upgrade button
         costLabel = new JLabel("Total cost: 0 gold");
-        costLabel.setForeground(new Color(100, 220, 220));
-        costLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        costLabel.setForeground(Theme.ACCENT_TEXT);
+        costLabel.setFont(Theme.BOLD_18);
         costLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
+        // Resulting item, looked up from the preview engine as options change
+        previewArea = new JTextArea();
+        previewArea.setForeground(Color.LIGHT_GRAY);
+        previewArea.setBackground(Theme.DARK_BACKGROUND);
+        previewArea.setFont(Theme.MONO_11);
+        previewArea.setEditable(false);
+        previewArea.setBorder(new EmptyBorder(6, 8, 6, 8));
+        previewArea.setMaximumSize(new Dimension(400, 140));
+        previewArea.setAlignmentX(Component.LEFT_ALIGNMENT);
+        
         upgradeButton = new JButton("UPGRADE");
-        upgradeButton.setBackground(new Color(0, 200, 200));
+        upgradeButton.setBackground(Theme.ACCENT);
         upgradeButton.setForeground(Color.BLACK);
-        upgradeButton.setFont(new Font("Segoe UI", Font.BOLD, 15));
+        upgradeButton.setFont(Theme.BOLD_15);
         upgradeButton.setFocusPainted(false);
-        upgradeButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        upgradeButton.setCursor(Theme.HAND_CURSOR);
         upgradeButton.setMaximumSize(new Dimension(220, 45));
         upgradeButton.setAlignmentX(Component.LEFT_ALIGNMENT);
-        upgradeButton.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(0, 180, 180), 2),
-            BorderFactory.createEmptyBorder(8, 20, 8, 20)
-        ));
+        upgradeButton.setBorder(Theme.UPGRADE_BUTTON_BORDER);
         
         // Add hover effect
         upgradeButton.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
                 if (upgradeButton.isEnabled()) {
-                    upgradeButton.setBackground(new Color(0, 220, 220));
+                    upgradeButton.setBackground(Theme.ACCENT_HOVER);
                 }
             }
             public void mouseExited(java.awt.event.MouseEvent evt) {
                 if (upgradeButton.isEnabled()) {
-                    upgradeButton.setBackground(new Color(0, 200, 200));
+                    upgradeButton.setBackground(Theme.ACCENT);
                 }
             }
         });
         
         upgradeButton.addActionListener(e -> onUpgradeClick());
         
+        upgradeAllButton = new JButton("UPGRADE ALL");
+        upgradeAllButton.setBackground(Theme.ACCENT);
+        upgradeAllButton.setForeground(Color.BLACK);
+        upgradeAllButton.setFont(Theme.BOLD_15);
+        upgradeAllButton.setFocusPainted(false);
+        upgradeAllButton.setCursor(Theme.HAND_CURSOR);
+        upgradeAllButton.setMaximumSize(new Dimension(220, 45));
+        upgradeAllButton.setAlignmentX(Component.LEFT_ALIGNMENT);
+        upgradeAllButton.setBorder(Theme.UPGRADE_BUTTON_BORDER);
+        upgradeAllButton.setToolTipText("Apply the ticked upgrades to every backpack item that can take them");
+        upgradeAllButton.addActionListener(e -> onUpgradeAllClick());
+        
         // Add all components
         add(titleLabel);
         add(Box.createVerticalStrut(20));
@@ -162,41 +184,52 @@ public class UpgradesPanel extends JPanel implements ShopObserver {
         add(Box.createVerticalStrut(20));
         add(upgradesLabel);
         add(Box.createVerticalStrut(10));
-        add(attackBoostCB);
-        add(Box.createVerticalStrut(5));
-        add(defenseBoostCB);
-        add(Box.createVerticalStrut(5));
-        add(healthBoostCB);
-        add(Box.createVerticalStrut(15));
+        addUpgradeBoxes(catalog.getBoostMask());
+        add(Box.createVerticalStrut(10));
         add(elementalLabel);
-        // add(elementalCombo); // Disabled for now
-        add(Box.createVerticalStrut(20));
+        add(Box.createVerticalStrut(10));
+        addUpgradeBoxes(catalog.getElementalMask());
+        add(Box.createVerticalStrut(15));
+        add(previewArea);
+        add(Box.createVerticalStrut(10));
         add(costLabel);
         add(Box.createVerticalStrut(10));
         add(upgradeButton);
+        add(Box.createVerticalStrut(10));
+        add(upgradeAllButton);
         add(Box.createVerticalGlue());
         
         updateUpgradeOptions();
     }
     
     /**
-     * Updates the item selector with current inventory.
+     * Adds the checkboxes of a group of upgrades.
+     * @param upgrades the upgrade mask to add
      */
-    private void updateItemList() {
-        itemSelector.removeAllItems();
-        
-        List<Item> backpackItems = player.getInventory().getBackpackItems();
-        List<Item> equippedItems = player.getInventory().getEquippedItems();
-        
-        for (Item item : backpackItems) {
-            itemSelector.addItem(new ItemWrapper(item));
-        }
-        for (Item item : equippedItems) {
-            itemSelector.addItem(new ItemWrapper(item));
+    private void addUpgradeBoxes(int upgrades) {
+        for (int i = 0; i < upgradeBoxes.length; i++) {
+            if ((upgrades & (1 << i)) != 0) {
+                add(upgradeBoxes[i]);
+                add(Box.createVerticalStrut(5));
+            }
         }
-        
-        if (itemSelector.getItemCount() == 0) {
-            itemSelector.addItem(new ItemWrapper(null));
+    }
+    
+    /**
+     * Enables only the enchantments that can join the current selection
+     * on the selected item, clearing any that no longer can.
+     * @param item the selected item, or null
+     */
+    private void updateElementBoxes(Item item) {
+        for (Element element : Element.values()) {
+            JCheckBox box = upgradeBoxes[element.getUpgrade()];
+            int bit = 1 << element.getUpgrade();
+            boolean allowed = item == null || previews.isAllowed(item, (getSelectedUpgrades() & ~bit) | bit);
+            if (!allowed) {
+                box.setSelected(false);
+            }
+            box.setEnabled(allowed);
+            box.setToolTipText(allowed ? null : "Conflicts with this item's or the selected enchantments");
         }
     }
     
@@ -204,78 +237,78 @@ public class UpgradesPanel extends JPanel implements ShopObserver {
      * Updates upgrade options and cost display.
      */
     private void updateUpgradeOptions() {
-        // Calculate total cost
+        Item selectedItem = itemModel.getSelectedItem();
+        updateElementBoxes(selectedItem);
+        int upgrades = getSelectedUpgrades();
+        
+        // Look up the result; cost and preview never build decorators
         double cost = 0;
-        if (attackBoostCB.isSelected()) cost += 300;
-        if (defenseBoostCB.isSelected()) cost += 400;
-        if (healthBoostCB.isSelected()) cost += 200;
-        // if (!elementalCombo.getSelectedItem().equals("None")) cost += 500; // Disabled
+        if (selectedItem != null) {
+            UpgradePreviewEngine.Preview preview = previews.preview(selectedItem, upgrades);
+            cost = preview.getUpgradeCost();
+            previewArea.setText(formatPreview(preview));
+        } else {
+            previewArea.setText("");
+        }
         
+        shownCost = cost;
         costLabel.setText("Total cost: " + String.format("%.0f", cost) + " gold");
+        updateButtonStates();
+    }
+    
+    /**
+     * Updates the upgrade buttons for the selection and cost shown.
+     */
+    private void updateButtonStates() {
+        boolean hasItem = itemModel.getSelectedItem() != null;
+        boolean hasUpgrades = getSelectedUpgrades() != 0;
         
-        // Update button state
-        ItemWrapper wrapper = (ItemWrapper) itemSelector.getSelectedItem();
-        boolean hasItem = wrapper != null && wrapper.item != null;
-        boolean hasUpgrades = attackBoostCB.isSelected() || defenseBoostCB.isSelected() || 
-                              healthBoostCB.isSelected(); // || !elementalCombo.getSelectedItem().equals("None");
-        
-        if (!hasItem) {
+        if (upgrading) {
+            upgradeButton.setEnabled(false);
+            upgradeButton.setText("UPGRADING...");
+            upgradeButton.setBackground(Theme.DISABLED);
+        } else if (!hasItem) {
             upgradeButton.setEnabled(false);
             upgradeButton.setText("NO ITEM SELECTED");
-            upgradeButton.setBackground(new Color(80, 80, 80));
+            upgradeButton.setBackground(Theme.DISABLED);
         } else if (!hasUpgrades) {
             upgradeButton.setEnabled(false);
             upgradeButton.setText("SELECT UPGRADES");
-            upgradeButton.setBackground(new Color(80, 80, 80));
-        } else if (cost > player.getGold()) {
+            upgradeButton.setBackground(Theme.DISABLED);
+        } else if (shownCost > player.getGold()) {
             upgradeButton.setEnabled(false);
             upgradeButton.setText("INSUFFICIENT GOLD");
-            upgradeButton.setBackground(new Color(150, 0, 0));
+            upgradeButton.setBackground(Theme.DANGER);
         } else {
             upgradeButton.setEnabled(true);
             upgradeButton.setText("UPGRADE");
-            upgradeButton.setBackground(new Color(0, 200, 200));
+            upgradeButton.setBackground(Theme.ACCENT);
         }
+        
+        boolean canUpgradeAll = !upgrading && hasUpgrades && player.getInventory().getBackpackSize() > 0;
+        upgradeAllButton.setEnabled(canUpgradeAll);
+        upgradeAllButton.setBackground(canUpgradeAll ? Theme.ACCENT : Theme.DISABLED);
     }
     
     /**
      * Handles upgrade button click.
      */
     private void onUpgradeClick() {
-        ItemWrapper wrapper = (ItemWrapper) itemSelector.getSelectedItem();
-        if (wrapper == null || wrapper.item == null) return;
-        
-        Item selectedItem = wrapper.item;
-        ItemDecorator currentDecorator = null;
-        double totalCost = 0;
-        
-        // Apply selected decorators (building chain)
-        if (attackBoostCB.isSelected()) {
-            if (currentDecorator == null) {
-                currentDecorator = new AttackBoostDecorator(selectedItem, 15);
-            } else {
-                currentDecorator = new AttackBoostDecorator(currentDecorator, 15);
-            }
-            totalCost += 300;
-        }
+        Item selectedItem = itemModel.getSelectedItem();
+        if (selectedItem == null) return;
         
-        if (defenseBoostCB.isSelected()) {
-            if (currentDecorator == null) {
-                currentDecorator = new DefenseBoostDecorator(selectedItem, 20);
-            } else {
-                currentDecorator = new DefenseBoostDecorator(currentDecorator, 20);
-            }
-            totalCost += 400;
+        int upgrades = getSelectedUpgrades();
+        if (!previews.isAllowed(selectedItem, upgrades)) {
+            JOptionPane.showMessageDialog(this,
+                "These enchantments cannot be combined on this item!",
+                "Conflicting Enchantments",
+                JOptionPane.WARNING_MESSAGE);
+            return;
         }
         
-        if (healthBoostCB.isSelected()) {
-            if (currentDecorator == null) {
-                currentDecorator = new HealthBoostDecorator(selectedItem, 50);
-            } else {
-                currentDecorator = new HealthBoostDecorator(currentDecorator, 50);
-            }
-            totalCost += 200;
-        }
+        // The chain is only built now that the upgrade is committed
+        ItemDecorator currentDecorator = previews.build(selectedItem, upgrades);
+        double totalCost = previews.preview(selectedItem, upgrades).getUpgradeCost();
         
         // No decorator selected
         if (currentDecorator == null) {
@@ -286,45 +319,205 @@ public class UpgradesPanel extends JPanel implements ShopObserver {
             return;
         }
         
-        // Verify gold
-        if (totalCost > player.getGold()) {
+        // Verify gold and execute the upgrade on the player's worker
+        UpgradeCommand cmd = new UpgradeCommand(player, selectedItem, currentDecorator, totalCost, observable);
+        double cost = totalCost;
+        upgrading = true;
+        updateUpgradeOptions();
+        
+        operations.submit(() -> {
+            if (cost > player.getGold()) {
+                return false;
+            }
+            cmdHistory.executeCommand(cmd);
+            return true;
+        }).whenComplete((upgraded, error) -> {
+            upgrading = false;
+            
+            if (error != null || !upgraded) {
+                updateUpgradeOptions();
+                JOptionPane.showMessageDialog(this,
+                    error != null ? "Upgrade failed: " + error.getMessage() : "Insufficient gold!",
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            // Reset selections
+            for (JCheckBox box : upgradeBoxes) {
+                box.setSelected(false);
+            }
+            
+            // Keep working on the item that was just upgraded
+            itemModel.sync();
+            itemModel.setSelectedItem(cmd.getUpgradedItem());
+            updateUpgradeOptions();
+            
             JOptionPane.showMessageDialog(this,
-                "Insufficient gold!",
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        // elementalCombo.setSelectedIndex(0); // Disabled
-        }
+                "Upgrade successful!\n" +
+                "Item upgraded: " + selectedItem.getName() + "\n" +
+                "Cost: " + String.format("%.0f", cost) + " gold",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+    
+    /**
+     * Handles the upgrade all button: plans the ticked upgrades for every
+     * backpack item that can take them, confirms the total, then runs the
+     * whole batch as one command on the player's worker.
+     */
+    private void onUpgradeAllClick() {
+        int upgrades = getSelectedUpgrades();
+        if (upgrades == 0) return;
         
-        // Execute upgrade command
-        UpgradeCommand cmd = new UpgradeCommand(player, selectedItem, currentDecorator, totalCost, observable);
-        cmdHistory.executeCommand(cmd);
+        BulkUpgradeCommand cmd = BulkUpgradeCommand.plan(player, player.getInventory().getBackpackItems(),
+                                                         upgrades, previews, observable);
+        if (cmd == null) {
+            JOptionPane.showMessageDialog(this,
+                "No backpack item can take these upgrades!",
+                "Nothing to Upgrade",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         
-        // Reset selections
-        attackBoostCB.setSelected(false);
-        defenseBoostCB.setSelected(false);
-        healthBoostCB.setSelected(false);
-        // elementalCombo.setSelectedIndex(0); // Disabled - not initialized
+        int choice = JOptionPane.showConfirmDialog(this,
+            "Upgrade " + cmd.getBaseItems().size() + " items for " +
+            String.format("%.0f", cmd.getTotalCost()) + " gold?",
+            "Upgrade All",
+            JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) {
+            return;
+        }
         
-        updateItemList();
+        upgrading = true;
         updateUpgradeOptions();
         
-        JOptionPane.showMessageDialog(this,
-            "Upgrade successful!\n" +
-            "Item upgraded: " + selectedItem.getName() + "\n" +
-            "Cost: " + String.format("%.0f", totalCost) + " gold",
-            "Success",
-            JOptionPane.INFORMATION_MESSAGE);
+        // Validate and execute together so nothing changes in between
+        operations.submit(() -> {
+            String problem = cmd.validate();
+            if (problem == null) {
+                cmdHistory.executeCommand(cmd);
+            }
+            return problem;
+        }).whenComplete((problem, error) -> {
+            upgrading = false;
+            
+            if (error != null || problem != null) {
+                updateUpgradeOptions();
+                JOptionPane.showMessageDialog(this,
+                    error != null ? "Upgrade failed: " + error.getMessage() : problem,
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            for (JCheckBox box : upgradeBoxes) {
+                box.setSelected(false);
+            }
+            itemModel.sync();
+            updateUpgradeOptions();
+            
+            JOptionPane.showMessageDialog(this,
+                "Upgrade successful!\n" +
+                "Items upgraded: " + cmd.getBaseItems().size() + "\n" +
+                "Cost: " + String.format("%.0f", cmd.getTotalCost()) + " gold",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+    
+    /**
+     * Returns the upgrades ticked in the checkboxes.
+     * @return the UpgradeCatalog upgrade mask
+     */
+    private int getSelectedUpgrades() {
+        int upgrades = 0;
+        for (int i = 0; i < upgradeBoxes.length; i++) {
+            if (upgradeBoxes[i].isSelected()) {
+                upgrades |= 1 << i;
+            }
+        }
+        return upgrades;
+    }
+    
+    /**
+     * Formats a preview as the resulting name, value and non-zero stats.
+     * @param preview the preview to show
+     * @return the preview text
+     */
+    private static String formatPreview(UpgradePreviewEngine.Preview preview) {
+        StringBuilder sb = new StringBuilder("Result: ").append(preview.getName())
+            .append("\nValue: ").append(String.format("%.0f", preview.getPrice())).append(" gold");
+        for (Map.Entry<String, Integer> stat : new TreeMap<>(preview.getStats()).entrySet()) {
+            if (stat.getValue() != 0) {
+                sb.append("\n+").append(stat.getValue()).append(" ").append(stat.getKey());
+            }
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public void refresh(int dirtyFlags) {
+        Item selectedBefore = itemModel.getSelectedItem();
+        if ((dirtyFlags & (RefreshScheduler.INVENTORY | RefreshScheduler.EQUIPMENT)) != 0) {
+            pendingDeltas.clear(); // The sync reads the inventory itself
+            itemModel.sync();
+        } else if ((dirtyFlags & RefreshScheduler.DELTAS) != 0 && !applyDeltas()) {
+            pendingDeltas.clear();
+            itemModel.sync();
+        }
+        
+        if ((dirtyFlags & RefreshScheduler.INVENTORY) != 0
+                || itemModel.getSelectedItem() != selectedBefore) {
+            updateUpgradeOptions();
+        } else if ((dirtyFlags & (RefreshScheduler.GOLD | RefreshScheduler.DELTAS)) != 0) {
+            updateButtonStates();
+        }
+    }
+    
+    /**
+     * Applies the queued backpack deltas to the item model.
+     * @return false if a delta did not fit the rows shown or the result
+     *         differs from the inventory; the model must be synced then
+     */
+    private boolean applyDeltas() {
+        BackpackDelta delta;
+        while ((delta = pendingDeltas.poll()) != null) {
+            if (!itemModel.applyBackpackDelta(delta)) {
+                return false;
+            }
+        }
+        // A delta can arrive after a sync already picked up its change
+        return itemModel.matchesInventory();
+    }
+    
+    @Override
+    public void onItemAdded(Item item, Player player, int slot) {
+        pendingDeltas.add(new BackpackDelta(item, slot, true));
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onItemRemoved(Item item, Player player, int slot) {
+        pendingDeltas.add(new BackpackDelta(item, slot, false));
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.DELTAS);
+    }
+    
+    @Override
+    public void onGoldDelta(Player player, double delta) {
+        // The cost shown stays valid; only affordability changes
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.GOLD);
     }
     
     @Override
     public void onInventoryChanged(Player player) {
-        updateItemList();
-        updateUpgradeOptions();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.INVENTORY);
     }
     
     @Override
     public void onPlayerGoldChanged(Player player) {
-        updateUpgradeOptions();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.GOLD);
     }
     
     @Override
@@ -334,12 +527,12 @@ public class UpgradesPanel extends JPanel implements ShopObserver {
     
     @Override
     public void onItemEquipped(Item item, Player player) {
-        updateItemList();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.EQUIPMENT);
     }
     
     @Override
     public void onItemUnequipped(Item item, Player player) {
-        updateItemList();
+        RefreshScheduler.getInstance().markDirty(this, RefreshScheduler.EQUIPMENT);
     }
 }
 
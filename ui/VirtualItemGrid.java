@@ -0,0 +1,177 @@
+package ui;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import model.Item;
+
+/**
+ * Scrollable grid of item cards that only creates cards for the rows in
+ * view.
+ *
+ * The grid reports the full height of the catalog to its scroll pane, but
+ * holds just enough cards to cover the viewport. When the view scrolls or
+ * resizes, the pooled cards are moved to the visible cells and rebound to
+ * the items there, so memory and layout cost follow the viewport size
+ * rather than the catalog size.
+ */
+public class VirtualItemGrid extends JPanel implements Scrollable {
+    private static final int COLUMNS = 4;
+    private static final int GAP = 15;
+    private static final int INSET = 15;
+    private static final int CARD_WIDTH = 260;
+    private static final int CARD_HEIGHT = 190;
+    
+    private final Function<Item, ItemCardPanel> cardFactory;
+    private final List<ItemCardPanel> pool = new ArrayList<>();
+    private final ChangeListener viewportListener = e -> layoutVisibleCards();
+    private JViewport viewport; // The viewport the listener is attached to, if any
+    private List<Item> items = Collections.emptyList();
+    private int boundCount;
+    
+    /**
+     * Creates an empty grid.
+     * @param cardFactory creates a new pooled card showing the given item
+     */
+    public VirtualItemGrid(Function<Item, ItemCardPanel> cardFactory) {
+        super(null);
+        this.cardFactory = cardFactory;
+    }
+    
+    /**
+     * Sets the items the grid scrolls over. The list is read by index on
+     * every layout, so the caller must call this again after changing it.
+     * @param items the items to show, in display order
+     */
+    public void setItems(List<Item> items) {
+        this.items = items;
+        revalidate();
+        layoutVisibleCards();
+        repaint();
+    }
+    
+    /**
+     * Re-checks the buy button of every card currently in view.
+     */
+    public void updateVisibleCards() {
+        for (int i = 0; i < boundCount; i++) {
+            pool.get(i).updateButtonState();
+        }
+    }
+    
+    /**
+     * Returns how many cards have been created for the pool.
+     * @return the pool size
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport) {
+            viewport = (JViewport) getParent();
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+    
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        super.removeNotify();
+    }
+    
+    @Override
+    public void doLayout() {
+        layoutVisibleCards();
+    }
+    
+    @Override
+    public Dimension getPreferredSize() {
+        int rows = (items.size() + COLUMNS - 1) / COLUMNS;
+        int width = 2 * INSET + COLUMNS * CARD_WIDTH + (COLUMNS - 1) * GAP;
+        int height = 2 * INSET + rows * CARD_HEIGHT + Math.max(0, rows - 1) * GAP;
+        return new Dimension(width, height);
+    }
+    
+    /**
+     * Places pooled cards on the cells that intersect the visible area and
+     * hides the rest. Cards are only rebound when their cell's item changed.
+     */
+    private void layoutVisibleCards() {
+        Rectangle view = getVisibleRect();
+        int cardWidth = Math.max(1, (getWidth() - 2 * INSET - (COLUMNS - 1) * GAP) / COLUMNS);
+        int rowStride = CARD_HEIGHT + GAP;
+        
+        int first = 0;
+        int needed = 0;
+        if (!view.isEmpty() && !items.isEmpty()) {
+            int firstRow = Math.max(0, (view.y - INSET) / rowStride);
+            int lastRow = Math.max(firstRow, (view.y + view.height - INSET) / rowStride);
+            first = firstRow * COLUMNS;
+            needed = Math.min((lastRow - firstRow + 1) * COLUMNS, items.size() - first);
+            needed = Math.max(0, needed);
+        }
+        
+        while (pool.size() < needed) {
+            ItemCardPanel card = cardFactory.apply(items.get(first + pool.size()));
+            pool.add(card);
+            add(card);
+        }
+        
+        for (int i = 0; i < pool.size(); i++) {
+            ItemCardPanel card = pool.get(i);
+            if (i >= needed) {
+                card.setVisible(false);
+                continue;
+            }
+            int index = first + i;
+            Item item = items.get(index);
+            if (card.getItem() != item) {
+                card.bind(item);
+            }
+            int x = INSET + (index % COLUMNS) * (cardWidth + GAP);
+            int y = INSET + (index / COLUMNS) * rowStride;
+            card.setBounds(x, y, cardWidth, CARD_HEIGHT);
+            card.setVisible(true);
+            card.validate();
+        }
+        boundCount = needed;
+    }
+    
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+    
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+    
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+    
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        // Cards stretch to fill the width, matching the old GridLayout
+        return getParent() instanceof JViewport
+            && getParent().getWidth() > 0
+            && getParent().getWidth() >= getPreferredSize().width;
+    }
+    
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}